@@ -63,12 +63,14 @@ import io.github.muntashirakon.AppManager.apk.splitapk.ApksMetadata;
 import io.github.muntashirakon.AppManager.fm.FmProvider;
 import io.github.muntashirakon.AppManager.logs.Log;
 import io.github.muntashirakon.AppManager.misc.VMRuntime;
+import io.github.muntashirakon.AppManager.progress.ProgressHandler;
 import io.github.muntashirakon.AppManager.self.filecache.FileCache;
 import io.github.muntashirakon.AppManager.settings.Prefs;
 import io.github.muntashirakon.AppManager.utils.ArrayUtils;
 import io.github.muntashirakon.AppManager.utils.ContextUtils;
 import io.github.muntashirakon.AppManager.utils.FileUtils;
 import io.github.muntashirakon.AppManager.utils.LangUtils;
+import io.github.muntashirakon.AppManager.utils.ZipUtils;
 import io.github.muntashirakon.io.IoUtils;
 import io.github.muntashirakon.io.Path;
 import io.github.muntashirakon.io.Paths;
@@ -110,31 +112,51 @@ public final class ApkFile implements AutoCloseable {
 
     @AnyThread
     static int createInstance(Uri apkUri, @Nullable String mimeType) throws ApkFileException {
-        synchronized (sApkFiles) {
-            int key = getUniqueKey();
-            ApkFile apkFile = new ApkFile(apkUri, mimeType, key);
-            sApkFiles.put(key, apkFile);
+        int key = reserveUniqueKey();
+        ApkFile apkFile = null;
+        try {
+            apkFile = new ApkFile(apkUri, mimeType, key);
             return key;
+        } finally {
+            putInstance(key, apkFile);
         }
     }
 
     @AnyThread
     static int createInstance(ApplicationInfo info) throws ApkFileException {
+        int key = reserveUniqueKey();
+        ApkFile apkFile = null;
+        try {
+            apkFile = new ApkFile(info, key);
+            return key;
+        } finally {
+            putInstance(key, apkFile);
+        }
+    }
+
+    /**
+     * Reserve a key so that multiple APK files can be parsed at the same time without holding the lock.
+     */
+    private static int reserveUniqueKey() {
         synchronized (sApkFiles) {
-            int key = getUniqueKey();
-            ApkFile apkFile = new ApkFile(info, key);
-            sApkFiles.put(key, apkFile);
+            int key;
+            do {
+                key = ThreadLocalRandom.current().nextInt();
+            } while (sApkFiles.containsKey(key));
+            sApkFiles.put(key, null);
             return key;
         }
     }
 
-    @GuardedBy("sApkFiles")
-    private static int getUniqueKey() {
-        int key;
-        do {
-            key = ThreadLocalRandom.current().nextInt();
-        } while (sApkFiles.containsKey(key));
-        return key;
+    private static void putInstance(int key, @Nullable ApkFile apkFile) {
+        synchronized (sApkFiles) {
+            if (apkFile != null) {
+                sApkFiles.put(key, apkFile);
+            } else {
+                // Failed to parse
+                sApkFiles.remove(key);
+            }
+        }
     }
 
     @IntDef(value = {
@@ -194,6 +216,10 @@ public final class ApkFile implements AutoCloseable {
     private ParcelFileDescriptor mFd;
     @Nullable
     private ZipFile mZipFile;
+    // Offsets of the data of the APK files stored in the bundle without compression, keyed by their entry names
+    @GuardedBy("this")
+    @Nullable
+    private HashMap<String, Long> mStoredDataOffsets;
     private boolean mClosed;
 
     private ApkFile(@NonNull Uri apkUri, @Nullable String mimeType, int sparseArrayKey) throws ApkFileException {
@@ -469,6 +495,34 @@ public final class ApkFile implements AutoCloseable {
         }
     }
 
+    /**
+     * Get the offset of the data of an APK file in the bundle if it is stored without compression.
+     *
+     * @return The offset, or {@code -1} if the entry is compressed or cannot be located
+     */
+    @WorkerThread
+    private synchronized long getStoredDataOffset(@NonNull ZipEntry zipEntry) {
+        if (mStoredDataOffsets == null) {
+            List<ZipEntry> zipEntries = new ArrayList<>(mEntries.size());
+            for (Entry entry : mEntries) {
+                if (entry.mZipEntry != null) {
+                    zipEntries.add(entry.mZipEntry);
+                }
+            }
+            mStoredDataOffsets = new HashMap<>(zipEntries.size());
+            try (FileInputStream is = new FileInputStream(mCacheFilePath)) {
+                long[] offsets = ZipUtils.getStoredDataOffsets(is.getChannel(), zipEntries);
+                for (int i = 0; i < offsets.length; ++i) {
+                    mStoredDataOffsets.put(zipEntries.get(i).getName(), offsets[i]);
+                }
+            } catch (IOException e) {
+                Log.w(TAG, "Could not locate the stored APK files in %s", e, mCacheFilePath);
+            }
+        }
+        Long offset = mStoredDataOffsets.get(zipEntry.getName());
+        return offset != null ? offset : -1;
+    }
+
     public boolean isClosed() {
         return mClosed;
     }
@@ -485,7 +539,9 @@ public final class ApkFile implements AutoCloseable {
             sInstanceCount.delete(mSparseArrayKey);
         }
         mClosed = true;
-        sApkFiles.remove(mSparseArrayKey);
+        synchronized (sApkFiles) {
+            sApkFiles.remove(mSparseArrayKey);
+        }
         for (Entry entry : mEntries) {
             entry.close();
         }
@@ -685,8 +741,12 @@ public final class ApkFile implements AutoCloseable {
          */
         @WorkerThread
         public long getFileSize(boolean signed) {
+            if (!signed) {
+                // No need to cache it
+                return getFileSize();
+            }
             try {
-                return (signed ? getSignedFile() : getRealCachedFile()).length();
+                return getSignedFile().length();
             } catch (IOException e) {
                 return -1;
             }
@@ -702,6 +762,30 @@ public final class ApkFile implements AutoCloseable {
             return signed ? getSignedInputStream() : getRealInputStream();
         }
 
+        /**
+         * Write the APK file to the given stream. Unless it has to be signed, the APK file is not cached: if it is
+         * stored in the bundle without compression, its bytes are transferred directly from the bundle, otherwise, it
+         * is inflated on the fly.
+         *
+         * @param totalSize Total size of all the APK files being written. Only used for handling progress.
+         */
+        @WorkerThread
+        public void writeTo(@NonNull OutputStream os, boolean signed, long totalSize,
+                            @Nullable ProgressHandler progressHandler) throws IOException {
+            if (!signed && mZipEntry != null && !Paths.exists(mCachedFile)) {
+                long offset = getStoredDataOffset(mZipEntry);
+                if (offset >= 0) {
+                    try (FileInputStream is = new FileInputStream(mCacheFilePath)) {
+                        FileUtils.copy(is.getChannel(), offset, mZipEntry.getSize(), os, totalSize, progressHandler);
+                    }
+                    return;
+                }
+            }
+            try (InputStream is = getInputStream(signed)) {
+                FileUtils.copy(is, os, totalSize, progressHandler);
+            }
+        }
+
         /**
          * Get signed APK file.
          *
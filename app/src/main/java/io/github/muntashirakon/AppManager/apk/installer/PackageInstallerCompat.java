@@ -657,7 +657,8 @@ public final class PackageInstallerCompat {
                 if (selectedSplitIds.contains(entry.id)) {
                     selectedEntries.add(entry);
                     try {
-                        totalSize += entry.getFile(options.isSignApkFiles()).length();
+                        // Unsigned APK files are streamed from the bundle without being cached
+                        totalSize += options.isSignApkFiles() ? entry.getFile(true).length() : entry.getFileSize();
                     } catch (IOException e) {
                         callFinish(STATUS_FAILURE_INVALID);
                         Log.e(TAG, "Install: Cannot retrieve the selected APK files.", e);
@@ -669,9 +670,8 @@ public final class PackageInstallerCompat {
             // Write apk files
             for (ApkFile.Entry entry : selectedEntries) {
                 long entrySize = entry.getFileSize(options.isSignApkFiles());
-                try (InputStream apkInputStream = entry.getInputStream(options.isSignApkFiles());
-                     OutputStream apkOutputStream = mSession.openWrite(entry.getFileName(), 0, entrySize)) {
-                    FileUtils.copy(apkInputStream, apkOutputStream, totalSize, progressHandler);
+                try (OutputStream apkOutputStream = mSession.openWrite(entry.getFileName(), 0, entrySize)) {
+                    entry.writeTo(apkOutputStream, options.isSignApkFiles(), totalSize, progressHandler);
                     mSession.fsync(apkOutputStream);
                     Log.d(TAG, "Install: copied entry %s", entry.name);
                 } catch (IOException e) {
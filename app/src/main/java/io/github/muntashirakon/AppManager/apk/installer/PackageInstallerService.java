@@ -22,18 +22,28 @@ import android.content.Context;
 import android.content.Intent;
 import android.os.Build;
 import android.os.PowerManager;
+import android.os.SystemClock;
 import android.os.UserHandleHidden;
 
+import androidx.annotation.AnyThread;
+import androidx.annotation.GuardedBy;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.UiThread;
+import androidx.annotation.WorkerThread;
 import androidx.core.app.NotificationCompat;
 import androidx.core.app.NotificationManagerCompat;
 import androidx.core.app.PendingIntentCompat;
 import androidx.core.app.ServiceCompat;
 
+import java.util.ArrayDeque;
 import java.util.List;
 import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import io.github.muntashirakon.AppManager.BuildConfig;
 import io.github.muntashirakon.AppManager.R;
@@ -54,6 +64,7 @@ import io.github.muntashirakon.AppManager.rules.compontents.ComponentUtils;
 import io.github.muntashirakon.AppManager.types.ForegroundService;
 import io.github.muntashirakon.AppManager.types.UserPackagePair;
 import io.github.muntashirakon.AppManager.utils.CpuUtils;
+import io.github.muntashirakon.AppManager.utils.MultithreadedExecutor;
 import io.github.muntashirakon.AppManager.utils.NotificationUtils;
 import io.github.muntashirakon.AppManager.utils.PackageUtils;
 import io.github.muntashirakon.AppManager.utils.ThreadUtils;
@@ -74,21 +85,53 @@ public class PackageInstallerService extends ForegroundService {
         super(TAG);
     }
 
+    private static class QueuedItem {
+        @Nullable
+        public final ApkQueueItem apkQueueItem;
+        @Nullable
+        public Future<ApkFile> apkFileFuture;
+        // Set when the preparation finishes so that it can be released if the service is destroyed
+        @Nullable
+        public ApkFile preparedApkFile;
+
+        QueuedItem(@Nullable ApkQueueItem apkQueueItem) {
+            this.apkQueueItem = apkQueueItem;
+        }
+    }
+
+    // At most this many items are prepared ahead of the one being installed
+    private static final int MAX_PREPARED_ITEMS = 4;
+
     @Nullable
     private OnInstallFinished mOnInstallFinished;
     private QueuedProgressHandler mProgressHandler;
     private NotificationInfo mNotificationInfo;
     private PowerManager.WakeLock mWakeLock;
+    // Items in the same order as they are handled, since the handler is FIFO
+    @GuardedBy("mQueuedItems")
+    private final Queue<QueuedItem> mQueuedItems = new ArrayDeque<>();
+    private ExecutorService mPreparer;
+    private int mPreparedItemLimit;
+    // Metrics of the current batch of installations
+    private long mBatchStartTime;
+    private int mBatchApkCount;
+    private long mBatchBytes;
 
     @Override
     public void onCreate() {
         super.onCreate();
         mWakeLock = CpuUtils.getPartialWakeLock("installer");
         mWakeLock.acquire();
+        mPreparedItemLimit = Math.min(MAX_PREPARED_ITEMS, MultithreadedExecutor.getThreadCount());
+        mPreparer = Executors.newFixedThreadPool(mPreparedItemLimit);
     }
 
     @Override
     public int onStartCommand(@Nullable Intent intent, int flags, int startId) {
+        synchronized (mQueuedItems) {
+            mQueuedItems.add(new QueuedItem(getQueueItem(intent)));
+        }
+        prepareNextItems();
         if (isWorking()) {
             return super.onStartCommand(intent, flags, startId);
         }
@@ -111,10 +154,28 @@ public class PackageInstallerService extends ForegroundService {
 
     @Override
     protected void onHandleIntent(@Nullable Intent intent) {
-        ApkQueueItem apkQueueItem = getQueueItem(intent);
+        QueuedItem queuedItem;
+        synchronized (mQueuedItems) {
+            queuedItem = Objects.requireNonNull(mQueuedItems.poll());
+        }
+        // Prepare the next items while this one is being installed
+        prepareNextItems();
+        try {
+            install(queuedItem);
+        } finally {
+            logBatchMetricsIfDone();
+        }
+    }
+
+    @WorkerThread
+    private void install(@NonNull QueuedItem queuedItem) {
+        ApkQueueItem apkQueueItem = queuedItem.apkQueueItem;
         if (apkQueueItem == null) {
             return;
         }
+        if (mBatchStartTime == 0) {
+            mBatchStartTime = SystemClock.elapsedRealtime();
+        }
         InstallerOptions options = apkQueueItem.getInstallerOptions() != null
                 ? apkQueueItem.getInstallerOptions()
                 : InstallerOptions.getDefault();
@@ -184,7 +245,7 @@ public class PackageInstallerService extends ForegroundService {
             ApkFile apkFile;
             try {
                 try {
-                    apkFile = apkSource.resolve();
+                    apkFile = getPreparedApkFile(queuedItem);
                 } catch (Throwable th) {
                     Log.w(TAG, "Could not get ApkFile", th);
                     OpHistoryManager.addHistoryItem(HISTORY_TYPE_INSTALLER, apkQueueItem, false);
@@ -192,7 +253,15 @@ public class PackageInstallerService extends ForegroundService {
                     finishInstallation(packageName != null ? packageName : "Unknown Package", STATUS_FAILURE_INVALID, apkQueueItem.getAppLabel(), null, null);
                     return;
                 }
+                long size = 0;
+                for (ApkFile.Entry entry : apkFile.getEntries()) {
+                    if (selectedSplitIds.contains(entry.id)) {
+                        size += entry.getFileSize();
+                    }
+                }
                 installer.install(apkFile, selectedSplitIds, options, mProgressHandler);
+                ++mBatchApkCount;
+                mBatchBytes += size;
             } finally {
                 // Delete the cached file
                 if (apkSource instanceof CachedApkSource) {
@@ -202,6 +271,110 @@ public class PackageInstallerService extends ForegroundService {
         }
     }
 
+    /**
+     * Start preparing the items that are next in the queue unless they are already being prepared.
+     */
+    @AnyThread
+    private void prepareNextItems() {
+        synchronized (mQueuedItems) {
+            if (mPreparer.isShutdown()) {
+                return;
+            }
+            int count = 0;
+            for (QueuedItem queuedItem : mQueuedItems) {
+                if (count++ == mPreparedItemLimit) {
+                    break;
+                }
+                if (queuedItem.apkFileFuture == null && queuedItem.apkQueueItem != null
+                        && !queuedItem.apkQueueItem.isInstallExisting()
+                        && queuedItem.apkQueueItem.getApkSource() != null) {
+                    ApkQueueItem apkQueueItem = queuedItem.apkQueueItem;
+                    queuedItem.apkFileFuture = mPreparer.submit(() -> prepareQueuedItem(queuedItem, apkQueueItem));
+                }
+            }
+        }
+    }
+
+    @WorkerThread
+    @NonNull
+    private ApkFile prepareQueuedItem(@NonNull QueuedItem queuedItem, @NonNull ApkQueueItem apkQueueItem)
+            throws Exception {
+        ApkFile apkFile = prepareApkFile(apkQueueItem);
+        synchronized (mQueuedItems) {
+            if (mPreparer.isShutdown()) {
+                // The service was destroyed while it was being prepared
+                apkFile.close();
+                throw new InterruptedException("Installer service destroyed.");
+            }
+            queuedItem.preparedApkFile = apkFile;
+        }
+        return apkFile;
+    }
+
+    @WorkerThread
+    @NonNull
+    private ApkFile getPreparedApkFile(@NonNull QueuedItem queuedItem) throws Exception {
+        Future<ApkFile> apkFileFuture;
+        synchronized (mQueuedItems) {
+            apkFileFuture = queuedItem.apkFileFuture;
+        }
+        if (apkFileFuture == null) {
+            return prepareApkFile(Objects.requireNonNull(queuedItem.apkQueueItem));
+        }
+        try {
+            return apkFileFuture.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof Exception ? (Exception) cause : e;
+        }
+    }
+
+    /**
+     * Parse the APK file and sign the selected APK files if requested, which can be done while another package is being
+     * installed.
+     */
+    @WorkerThread
+    @NonNull
+    private static ApkFile prepareApkFile(@NonNull ApkQueueItem apkQueueItem) throws Exception {
+        ApkFile apkFile = Objects.requireNonNull(apkQueueItem.getApkSource()).resolve();
+        InstallerOptions options = apkQueueItem.getInstallerOptions() != null
+                ? apkQueueItem.getInstallerOptions()
+                : InstallerOptions.getDefault();
+        if (options.isSignApkFiles()) {
+            List<String> selectedSplitIds = Objects.requireNonNull(apkQueueItem.getSelectedSplits());
+            try {
+                for (ApkFile.Entry entry : apkFile.getEntries()) {
+                    if (selectedSplitIds.contains(entry.id)) {
+                        // Signed and verified
+                        entry.getFile(true);
+                    }
+                }
+            } catch (Exception e) {
+                apkFile.close();
+                throw e;
+            }
+        }
+        return apkFile;
+    }
+
+    @WorkerThread
+    private void logBatchMetricsIfDone() {
+        synchronized (mQueuedItems) {
+            if (!mQueuedItems.isEmpty()) {
+                return;
+            }
+        }
+        long elapsedTime = SystemClock.elapsedRealtime() - mBatchStartTime;
+        if (mBatchApkCount > 0 && elapsedTime > 0) {
+            Log.i(TAG, "Installed %d packages (%d bytes) in %d ms: %.1f packages/min, %.2f MB/s", mBatchApkCount,
+                    mBatchBytes, elapsedTime, mBatchApkCount * 60_000f / elapsedTime,
+                    mBatchBytes / 1000f / elapsedTime);
+        }
+        mBatchStartTime = 0;
+        mBatchApkCount = 0;
+        mBatchBytes = 0;
+    }
+
     @Override
     protected void onQueued(@Nullable Intent intent) {
         ApkQueueItem apkQueueItem = getQueueItem(intent);
@@ -236,6 +409,17 @@ public class PackageInstallerService extends ForegroundService {
 
     @Override
     public void onDestroy() {
+        synchronized (mQueuedItems) {
+            // The items still being prepared release themselves once they see the shutdown
+            mPreparer.shutdownNow();
+            // Release the items that were prepared but never installed
+            for (QueuedItem queuedItem : mQueuedItems) {
+                if (queuedItem.preparedApkFile != null) {
+                    queuedItem.preparedApkFile.close();
+                }
+            }
+            mQueuedItems.clear();
+        }
         ServiceCompat.stopForeground(this, ServiceCompat.STOP_FOREGROUND_REMOVE);
         if (mProgressHandler != null) {
             mProgressHandler.onDetach(this);
@@ -8,15 +8,21 @@ import android.graphics.Bitmap;
 import android.os.UserHandleHidden;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.annotation.WorkerThread;
 
+import org.apache.commons.compress.utils.CountingOutputStream;
+
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
@@ -24,6 +30,7 @@ import java.util.zip.ZipOutputStream;
 import io.github.muntashirakon.AppManager.apk.ApkUtils;
 import io.github.muntashirakon.AppManager.utils.ContextUtils;
 import io.github.muntashirakon.AppManager.utils.DigestUtils;
+import io.github.muntashirakon.AppManager.utils.ThreadUtils;
 import io.github.muntashirakon.AppManager.utils.UIUtils;
 import io.github.muntashirakon.io.IoUtils;
 import io.github.muntashirakon.io.Path;
@@ -37,20 +44,33 @@ import io.github.muntashirakon.io.Paths;
  * meta.sai_v2.json contains the following properties: export_timestamp (long), split_apk (boolean),
  * label (string), meta_version (long), min_sdk (long), package (string), target_sdk (long),
  * version_code (long), version_name (string), backup_components [ size (long), type (string) ]
+ * <p>
+ * The APK and OBB files are already compressed, and therefore, they are stored as is. Like zipalign does, their data
+ * are aligned to page boundaries so that they can be mapped directly from the bundle.
  */
 public final class SplitApkExporter {
+    // Same as zipalign -p
+    private static final int PAGE_ALIGNMENT = 4096;
+    // Extra field used by zipalign to pad the local file headers
+    private static final int ALIGNMENT_EXTRA_FIELD_ID = 0xD935;
+    private static final int ALIGNMENT_EXTRA_FIELD_HEADER_SIZE = 6;
+    private static final int LOCAL_FILE_HEADER_SIZE = 30;
+
     @WorkerThread
     public static void saveApks(@NonNull PackageInfo packageInfo, @NonNull Path apksFile) throws IOException {
         try (OutputStream outputStream = apksFile.openOutputStream();
-             ZipOutputStream zipOutputStream = new ZipOutputStream(outputStream)) {
+             CountingOutputStream countingOutputStream = new CountingOutputStream(outputStream);
+             ZipOutputStream zipOutputStream = new ZipOutputStream(countingOutputStream)) {
             zipOutputStream.setMethod(ZipOutputStream.DEFLATED);
             zipOutputStream.setLevel(Deflater.BEST_COMPRESSION);
 
-            saveApkInternal(zipOutputStream, packageInfo);
+            saveApkInternal(zipOutputStream, countingOutputStream, packageInfo);
         }
     }
 
-    static void saveApkInternal(@NonNull ZipOutputStream zipOutputStream, @NonNull PackageInfo packageInfo) throws IOException {
+    static void saveApkInternal(@NonNull ZipOutputStream zipOutputStream,
+                                @NonNull CountingOutputStream countingOutputStream,
+                                @NonNull PackageInfo packageInfo) throws IOException {
         ApplicationInfo applicationInfo = packageInfo.applicationInfo;
         List<Path> apkFiles = getAllApkFiles(applicationInfo);
         Collections.sort(apkFiles);
@@ -65,32 +85,60 @@ public final class SplitApkExporter {
         bitmap.compress(Bitmap.CompressFormat.PNG, 100, pngOutputStream);
         addBytes(zipOutputStream, pngOutputStream.toByteArray(), ApksMetadata.ICON_FILE, apksMetadata.exportTimestamp);
 
-        // Add apk files
-        for (Path apkFile : apkFiles) {
-            addFile(zipOutputStream, apkFile, apkFile.getName(), apksMetadata.exportTimestamp);
-        }
-
         // Add OBB files if possible
+        List<Path> files = new ArrayList<>(apkFiles);
         Path obbDir = null;
         try {
             obbDir = ApkUtils.getObbDir(packageInfo.packageName, UserHandleHidden.getUserId(applicationInfo.uid));
         } catch (IOException ignore) {
         }
         if (obbDir != null) {
-            Path[] obbFiles = obbDir.listFiles();
-            for (Path obbFile : obbFiles) {
-                addFile(zipOutputStream, obbFile, obbFile.getName(), apksMetadata.exportTimestamp);
+            Collections.addAll(files, obbDir.listFiles());
+        }
+
+        // A stored entry needs its CRC before its data. Calculate them in the background so that a file is being read
+        // while the previous one is being written.
+        List<FutureTask<Long>> crcTasks = new ArrayList<>(files.size());
+        for (Path file : files) {
+            FutureTask<Long> crcTask = new FutureTask<>(() -> DigestUtils.calculateCrc32(file));
+            crcTasks.add(crcTask);
+            ThreadUtils.getBackgroundThreadExecutor().execute(crcTask);
+        }
+        try {
+            for (int i = 0; i < files.size(); ++i) {
+                Path file = files.get(i);
+                long crc = getCrc(crcTasks.get(i));
+                addStoredFile(zipOutputStream, countingOutputStream, file, file.getName(),
+                        apksMetadata.exportTimestamp, crc);
+            }
+        } finally {
+            for (FutureTask<Long> crcTask : crcTasks) {
+                crcTask.cancel(false);
             }
         }
     }
 
     static void addFile(@NonNull ZipOutputStream zipOutputStream, @NonNull Path filePath, @NonNull String name,
                                long timestamp) throws IOException {
+        addStoredFile(zipOutputStream, null, filePath, name, timestamp, DigestUtils.calculateCrc32(filePath));
+    }
+
+    /**
+     * Add the file without compression. If the number of bytes written so far is known, the data is page-aligned.
+     */
+    private static void addStoredFile(@NonNull ZipOutputStream zipOutputStream,
+                                      @Nullable CountingOutputStream countingOutputStream, @NonNull Path filePath,
+                                      @NonNull String name, long timestamp, long crc) throws IOException {
+        long size = filePath.length();
         ZipEntry zipEntry = new ZipEntry(name);
-        zipEntry.setMethod(ZipEntry.DEFLATED);
-        zipEntry.setSize(filePath.length());
-        zipEntry.setCrc(DigestUtils.calculateCrc32(filePath));
+        zipEntry.setMethod(ZipEntry.STORED);
+        zipEntry.setSize(size);
+        zipEntry.setCompressedSize(size);
+        zipEntry.setCrc(crc);
         zipEntry.setTime(timestamp);
+        if (countingOutputStream != null) {
+            zipEntry.setExtra(getAlignmentExtraField(countingOutputStream.getBytesWritten(), name));
+        }
         zipOutputStream.putNextEntry(zipEntry);
         try (InputStream apkInputStream = filePath.openInputStream()) {
             IoUtils.copy(apkInputStream, zipOutputStream);
@@ -110,6 +158,43 @@ public final class SplitApkExporter {
         zipOutputStream.closeEntry();
     }
 
+    /**
+     * Create the extra field that pads the local file header starting at the given offset so that the data that
+     * follows it begins at a page boundary.
+     */
+    @NonNull
+    private static byte[] getAlignmentExtraField(long headerOffset, @NonNull String name) {
+        long dataOffset = headerOffset + LOCAL_FILE_HEADER_SIZE + name.getBytes(StandardCharsets.UTF_8).length
+                + ALIGNMENT_EXTRA_FIELD_HEADER_SIZE;
+        int padding = (int) ((PAGE_ALIGNMENT - dataOffset % PAGE_ALIGNMENT) % PAGE_ALIGNMENT);
+        int dataSize = 2 + padding;
+        byte[] extra = new byte[ALIGNMENT_EXTRA_FIELD_HEADER_SIZE + padding];
+        extra[0] = (byte) ALIGNMENT_EXTRA_FIELD_ID;
+        extra[1] = (byte) (ALIGNMENT_EXTRA_FIELD_ID >> 8);
+        extra[2] = (byte) dataSize;
+        extra[3] = (byte) (dataSize >> 8);
+        extra[4] = (byte) PAGE_ALIGNMENT;
+        extra[5] = (byte) (PAGE_ALIGNMENT >> 8);
+        return extra;
+    }
+
+    private static long getCrc(@NonNull FutureTask<Long> crcTask) throws IOException {
+        // Calculate it here if it hasn't started yet so that a busy executor cannot stall the export
+        crcTask.run();
+        try {
+            return crcTask.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+    }
+
     @NonNull
     private static List<Path> getAllApkFiles(@NonNull ApplicationInfo applicationInfo) {
         List<Path> apkFiles = new ArrayList<>();
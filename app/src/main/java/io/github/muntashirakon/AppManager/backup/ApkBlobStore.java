@@ -0,0 +1,173 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package io.github.muntashirakon.AppManager.backup;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.UUID;
+
+import aosp.libcore.util.HexEncoding;
+import io.github.muntashirakon.AppManager.logs.Log;
+import io.github.muntashirakon.AppManager.settings.Prefs;
+import io.github.muntashirakon.AppManager.utils.DigestUtils;
+import io.github.muntashirakon.io.IoUtils;
+import io.github.muntashirakon.io.Path;
+
+/**
+ * A content-addressed store for the APK files of the backups, located at
+ * {@code {AppManagerDir}/backups/.blobs}. Each APK file is stored only once as {@code {sha256}.apk} regardless of the
+ * number of backups (of any app or user) containing it. The backups referencing a blob are tracked by empty files
+ * named after the backup UUIDs inside {@code {sha256}.refs}, and a blob is deleted along with its last reference.
+ * <p>
+ * The blobs are not encrypted, and therefore, the store must only be used for unencrypted backups.
+ */
+final class ApkBlobStore {
+    public static final String TAG = ApkBlobStore.class.getSimpleName();
+
+    static final String BLOB_DIRECTORY = ".blobs";
+
+    private static final String BLOB_EXT = ".apk";
+    private static final String REFS_EXT = ".refs";
+    private static final String TMP_EXT = ".tmp";
+
+    private static final Object sLock = new Object();
+
+    /**
+     * Add the given file to the store unless it already exists, and reference it from the given backup.
+     *
+     * @param file     The APK file to add
+     * @param backupId UUID of the backup referencing the file
+     * @return SHA-256 digest of the file, which is also the name of the blob
+     */
+    @WorkerThread
+    @NonNull
+    static String add(@NonNull Path file, @NonNull String backupId) throws IOException {
+        String digest;
+        try (InputStream is = file.openInputStream()) {
+            digest = DigestUtils.getHexDigest(DigestUtils.SHA_256, is);
+        }
+        synchronized (sLock) {
+            Path blobDir = getBlobDirectory();
+            if (!blobDir.hasFile(digest + BLOB_EXT)) {
+                copyBlob(file, blobDir, digest);
+            }
+            blobDir.findOrCreateDirectory(digest + REFS_EXT).findOrCreateFile(backupId, null);
+        }
+        return digest;
+    }
+
+    /**
+     * Remove the reference of the given backup to the blob, and delete the blob if it is no longer referenced by any
+     * backups.
+     */
+    @WorkerThread
+    static void release(@NonNull String digest, @NonNull String backupId) {
+        synchronized (sLock) {
+            Path blobDir;
+            try {
+                blobDir = getBlobDirectory();
+            } catch (IOException e) {
+                Log.w(TAG, "Could not release blob %s", e, digest);
+                return;
+            }
+            Path refsDir = null;
+            try {
+                refsDir = blobDir.findFile(digest + REFS_EXT);
+                refsDir.findFile(backupId).delete();
+            } catch (FileNotFoundException ignore) {
+            }
+            if (refsDir != null && refsDir.listFiles().length > 0) {
+                // Still in use
+                return;
+            }
+            Log.i(TAG, "Deleting unreferenced blob %s", digest);
+            try {
+                blobDir.findFile(digest + BLOB_EXT).delete();
+            } catch (FileNotFoundException ignore) {
+            }
+            if (refsDir != null) {
+                refsDir.delete();
+            }
+        }
+    }
+
+    @NonNull
+    static Path getBlob(@NonNull String digest) throws IOException {
+        return getBlobDirectory().findFile(digest + BLOB_EXT);
+    }
+
+    /**
+     * Copy the blob into the given file, verifying its contents on the way.
+     *
+     * @throws IOException If the blob does not exist or has been modified
+     */
+    @WorkerThread
+    static void extract(@NonNull String digest, @NonNull Path dest) throws IOException {
+        MessageDigest messageDigest = getMessageDigest();
+        try (InputStream is = getBlob(digest).openInputStream();
+             OutputStream os = new DigestOutputStream(dest.openOutputStream(), messageDigest)) {
+            IoUtils.copy(is, os);
+        }
+        String actualDigest = HexEncoding.encodeToString(messageDigest.digest(), false /* lowercase */);
+        if (!digest.equals(actualDigest)) {
+            throw new IOException("Blob " + digest + " is corrupted. Found: " + actualDigest);
+        }
+    }
+
+    /**
+     * Whether the blob exists and has not been modified.
+     */
+    @WorkerThread
+    static boolean verify(@NonNull String digest) {
+        try (InputStream is = getBlob(digest).openInputStream()) {
+            return digest.equals(DigestUtils.getHexDigest(DigestUtils.SHA_256, is));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static void copyBlob(@NonNull Path file, @NonNull Path blobDir, @NonNull String digest) throws IOException {
+        // Copy to a temporary file first so that an incomplete blob is never visible
+        Path tmpFile = blobDir.createNewFile("." + UUID.randomUUID() + TMP_EXT, null);
+        try {
+            MessageDigest messageDigest = getMessageDigest();
+            try (InputStream is = file.openInputStream();
+                 OutputStream os = new DigestOutputStream(tmpFile.openOutputStream(), messageDigest)) {
+                IoUtils.copy(is, os);
+            }
+            if (!digest.equals(HexEncoding.encodeToString(messageDigest.digest(), false /* lowercase */))) {
+                throw new IOException(file + " was modified while being copied.");
+            }
+            if (!tmpFile.renameTo(digest + BLOB_EXT)) {
+                throw new IOException("Could not rename " + tmpFile + " to " + digest + BLOB_EXT);
+            }
+        } catch (IOException e) {
+            tmpFile.delete();
+            throw e;
+        }
+    }
+
+    @NonNull
+    private static Path getBlobDirectory() throws IOException {
+        return Prefs.Storage.getAppManagerDirectory()
+                .findOrCreateDirectory(BackupItems.BACKUP_DIRECTORY)
+                .findOrCreateDirectory(BLOB_DIRECTORY);
+    }
+
+    @NonNull
+    private static MessageDigest getMessageDigest() throws IOException {
+        try {
+            return MessageDigest.getInstance(DigestUtils.SHA_256);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+    }
+}
@@ -41,6 +41,8 @@ public final class BackupFlags {
             BACKUP_MULTIPLE,
             BACKUP_RULES,
             BACKUP_NO_SIGNATURE_CHECK,
+            BACKUP_INCREMENTAL,
+            BACKUP_SHARED_APK_FILES,
     })
     @Retention(RetentionPolicy.SOURCE)
     public @interface BackupFlag {
@@ -63,14 +65,18 @@ public final class BackupFlags {
     public static final int BACKUP_EXTRAS = 1 << 10;
     public static final int BACKUP_CACHE = 1 << 11;
     public static final int BACKUP_ADB_DATA = 1 << 12;
+    public static final int BACKUP_INCREMENTAL = 1 << 13;
+    public static final int BACKUP_SHARED_APK_FILES = 1 << 14;
 
     private static final LinkedHashMap<Integer, Pair<Integer, Integer>> sBackupFlagsMap = new LinkedHashMap<Integer, Pair<Integer, Integer>>() {{
         put(BACKUP_APK_FILES, new Pair<>(R.string.backup_apk_files, R.string.backup_apk_files_description));
+        put(BACKUP_SHARED_APK_FILES, new Pair<>(R.string.backup_shared_apk_files, R.string.backup_shared_apk_files_description));
         put(BACKUP_INT_DATA, new Pair<>(R.string.internal_data, R.string.backup_internal_data_description));
         put(BACKUP_EXT_DATA, new Pair<>(R.string.external_data, R.string.backup_external_data_description));
         put(BACKUP_ADB_DATA, new Pair<>(R.string.adb_data, R.string.adb_data_description));
         put(BACKUP_EXT_OBB_MEDIA, new Pair<>(R.string.backup_obb_media, R.string.backup_obb_media_description));
         put(BACKUP_CACHE, new Pair<>(R.string.backup_cache, R.string.backup_cache_description));
+        put(BACKUP_INCREMENTAL, new Pair<>(R.string.backup_incremental, R.string.backup_incremental_description));
         put(BACKUP_EXTRAS, new Pair<>(R.string.backup_extras, R.string.backup_extras_description));
         put(BACKUP_RULES, new Pair<>(R.string.rules, R.string.backup_rules_description));
         put(BACKUP_MULTIPLE, new Pair<>(R.string.backup_multiple, R.string.backup_multiple_description));
@@ -92,6 +98,7 @@ public final class BackupFlags {
     public static List<Integer> getSupportedBackupFlagsAsArray() {
         List<Integer> backupFlags = new ArrayList<>();
         backupFlags.add(BACKUP_APK_FILES);
+        backupFlags.add(BACKUP_SHARED_APK_FILES);
         if (SelfPermissions.canWriteToDataData()) {
             backupFlags.add(BACKUP_INT_DATA);
         }
@@ -101,6 +108,7 @@ public final class BackupFlags {
         }
         backupFlags.add(BACKUP_EXT_OBB_MEDIA);
         backupFlags.add(BACKUP_CACHE);
+        backupFlags.add(BACKUP_INCREMENTAL);
         backupFlags.add(BACKUP_EXTRAS);
         backupFlags.add(BACKUP_RULES);
         backupFlags.add(BACKUP_MULTIPLE);
@@ -119,6 +127,9 @@ public final class BackupFlags {
         if ((flags & BACKUP_APK_FILES) != 0) {
             backupFlags.add(BACKUP_APK_FILES);
         }
+        if ((flags & BACKUP_SHARED_APK_FILES) != 0) {
+            backupFlags.add(BACKUP_SHARED_APK_FILES);
+        }
         if ((flags & BACKUP_INT_DATA) != 0) {
             backupFlags.add(BACKUP_INT_DATA);
         }
@@ -134,6 +145,9 @@ public final class BackupFlags {
         if ((flags & BACKUP_CACHE) != 0) {
             backupFlags.add(BACKUP_CACHE);
         }
+        if ((flags & BACKUP_INCREMENTAL) != 0) {
+            backupFlags.add(BACKUP_INCREMENTAL);
+        }
         if ((flags & BACKUP_EXTRAS) != 0) {
             backupFlags.add(BACKUP_EXTRAS);
         }
@@ -247,6 +261,14 @@ public final class BackupFlags {
         return (mFlags & BACKUP_CACHE) != 0;
     }
 
+    public boolean backupIncremental() {
+        return (mFlags & BACKUP_INCREMENTAL) != 0;
+    }
+
+    public boolean backupSharedApkFiles() {
+        return (mFlags & BACKUP_SHARED_APK_FILES) != 0;
+    }
+
     @SuppressWarnings("BooleanMethodIsAlwaysInverted")
     public boolean skipSignatureCheck() {
         return (mFlags & BACKUP_NO_SIGNATURE_CHECK) != 0;
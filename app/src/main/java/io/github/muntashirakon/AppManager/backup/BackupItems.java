@@ -14,14 +14,23 @@ import java.io.BufferedWriter;
 import java.io.Closeable;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
+import aosp.libcore.util.HexEncoding;
 import io.github.muntashirakon.AppManager.backup.struct.BackupMetadataV5;
 import io.github.muntashirakon.AppManager.crypto.Crypto;
 import io.github.muntashirakon.AppManager.crypto.DummyCrypto;
@@ -29,6 +38,8 @@ import io.github.muntashirakon.AppManager.db.entity.Backup;
 import io.github.muntashirakon.AppManager.logcat.helper.SaveLogHelper;
 import io.github.muntashirakon.AppManager.logs.Log;
 import io.github.muntashirakon.AppManager.settings.Prefs;
+import io.github.muntashirakon.AppManager.utils.DigestUtils;
+import io.github.muntashirakon.io.IoUtils;
 import io.github.muntashirakon.io.Path;
 import io.github.muntashirakon.io.PathReader;
 import io.github.muntashirakon.io.PathWriter;
@@ -122,6 +133,7 @@ public class BackupItems {
             }
             // Other backups can store multiple backups per folder
             backupItems.addAll(Arrays.stream(path.listFiles(Path::isDirectory))
+                    .filter(p -> !ApkBlobStore.BLOB_DIRECTORY.equals(p.getName()))
                     .map(BackupItem::new)
                     .collect(Collectors.toList()));
         }
@@ -183,6 +195,8 @@ public class BackupItems {
         private boolean mBackupMode;
         private boolean mBackupSuccess = false;
         private final List<Path> mTemporaryFiles = new ArrayList<>();
+        // APK blobs referenced during this backup, released if the backup fails
+        private final List<String> mAddedApkBlobs = new ArrayList<>();
         private Path mTempUnencyptedPath;
         @Nullable
         private List<BackupItem> mPreviousBackups;
@@ -237,6 +251,14 @@ public class BackupItems {
             mPreviousBackups = previousBackups;
         }
 
+        /**
+         * Backups that will be replaced by this backup once it is {@linkplain #commit() committed}.
+         */
+        @NonNull
+        public List<BackupItem> getPreviousBackups() {
+            return mPreviousBackups != null ? mPreviousBackups : Collections.emptyList();
+        }
+
         public String getRelativeDir() {
             if (isV5AndUp()) {
                 // {AppManagerDir}/backups/{UUID}/
@@ -307,6 +329,102 @@ public class BackupItems {
             }
         }
 
+        /**
+         * Open a split stream that writes the parts directly into the backup path, encrypting them and calculating
+         * their checksums as they are written.
+         *
+         * @return {@code null} if the current crypto or checksum algorithm does not support it, in which case the
+         * parts have to be written to {@link #getUnencryptedBackupPath()} and {@linkplain #encrypt(Path[]) encrypted}
+         * afterwards.
+         */
+        @Nullable
+        public BackupSplitOutputStream openSplitOutputStream(@NonNull String filePrefix, long splitSize,
+                                                             @NonNull @DigestUtils.Algorithm String checksumAlgo) {
+            synchronized (mCryptoGuard) {
+                if (mCrypto != null && !mCrypto.canEncryptOnTheFly()) {
+                    return null;
+                }
+                if (DigestUtils.CRC32.equals(checksumAlgo)) {
+                    // Not a MessageDigest
+                    return null;
+                }
+                return new BackupSplitOutputStream(getBackupPath(), filePrefix, splitSize, mCrypto,
+                        CryptoUtils.getExtension(mCryptoMode), checksumAlgo);
+            }
+        }
+
+        /**
+         * Copy the given files from another backup into this backup, decrypting them using the crypto of the other
+         * backup and encrypting them using the crypto of this backup if required.
+         *
+         * @param other        The backup the files belong to. Its crypto must already be set up.
+         * @param files        Files of the other backup
+         * @param checksumAlgo Algorithm used for calculating the checksums of the copied files
+         * @return A map of filename to checksum of the copied files
+         */
+        @NonNull
+        public Map<String, String> copyFrom(@NonNull BackupItem other, @NonNull Path[] files,
+                                            @NonNull @DigestUtils.Algorithm String checksumAlgo) throws IOException {
+            synchronized (mCryptoGuard) {
+                if (mCrypto != null && !mCrypto.canEncryptOnTheFly()) {
+                    throw new IOException(mCryptoMode + " does not support on-the-fly encryption.");
+                }
+                String otherExt = CryptoUtils.getExtension(other.mCryptoMode);
+                String ext = CryptoUtils.getExtension(mCryptoMode);
+                Map<String, String> checksums = new LinkedHashMap<>(files.length);
+                List<Path> outputFiles = new ArrayList<>(files.length);
+                try {
+                    for (Path file : files) {
+                        String filename = file.getName();
+                        String outputFilename = filename.substring(0, filename.length() - otherExt.length()) + ext;
+                        Path outputFile = getBackupPath().createNewFile(outputFilename, null);
+                        outputFiles.add(outputFile);
+                        Log.i(TAG, "Input: %s\nOutput: %s", file, outputFile);
+                        MessageDigest messageDigest = MessageDigest.getInstance(checksumAlgo);
+                        try (InputStream is = file.openInputStream();
+                             OutputStream os = new DigestOutputStream(outputFile.openOutputStream(), messageDigest)) {
+                            try (OutputStream eos = mCrypto != null ? mCrypto.getEncryptingStream(os) : os) {
+                                if (other.mCrypto != null) {
+                                    other.mCrypto.decrypt(is, eos);
+                                } else {
+                                    IoUtils.copy(is, eos);
+                                }
+                            }
+                        }
+                        checksums.put(outputFilename, HexEncoding.encodeToString(messageDigest.digest(), false /* lowercase */));
+                    }
+                    return checksums;
+                } catch (IOException | NoSuchAlgorithmException e) {
+                    // Do not leave incomplete files behind
+                    for (Path outputFile : outputFiles) {
+                        outputFile.delete();
+                    }
+                    throw e instanceof IOException ? (IOException) e : new IOException(e);
+                }
+            }
+        }
+
+        /**
+         * Add the given APK file to the {@linkplain ApkBlobStore shared APK store} and reference it from this backup.
+         *
+         * @return SHA-256 digest of the file
+         */
+        @NonNull
+        public String addApkBlob(@NonNull Path file) throws IOException {
+            if (!mBackupMode) {
+                throw new IllegalStateException("APK blobs can only be added in backup mode.");
+            }
+            synchronized (mCryptoGuard) {
+                if (mCrypto != null) {
+                    throw new IllegalStateException("APK blobs are not encrypted.");
+                }
+            }
+            // The final path is named after the backup UUID
+            String digest = ApkBlobStore.add(file, mBackupPath.getName());
+            mAddedApkBlobs.add(digest);
+            return digest;
+        }
+
         @NonNull
         public Path[] decrypt(@NonNull Path[] files) throws IOException {
             // Decrypt the files but do NOT delete the originals
@@ -493,6 +611,10 @@ public class BackupItems {
                 if (!mBackupSuccess) {
                     // Backup wasn't successful, delete the directory
                     mTempBackupPath.delete();
+                    for (String digest : mAddedApkBlobs) {
+                        ApkBlobStore.release(digest, mBackupPath.getName());
+                    }
+                    mAddedApkBlobs.clear();
                 }
             }
             for (Path file : mTemporaryFiles) {
@@ -520,12 +642,33 @@ public class BackupItems {
                         // Also deletes children
                         return parent.delete();
                     }
+                } else if (!mBackupMode) {
+                    // In backup mode, the blobs belong to the backup being created
+                    releaseApkBlobs();
                 }
                 return mBackupPath.delete();
             }
             return true;  // The backup path doesn't exist anyway
         }
 
+        private void releaseApkBlobs() {
+            try {
+                BackupMetadataV5.Info info = getInfo();
+                if (!info.flags.backupSharedApkFiles()) {
+                    // Avoid reading metadata (which might be encrypted) unnecessarily
+                    return;
+                }
+                String[] apkBlobs = getMetadata(info).metadata.apkBlobs;
+                if (apkBlobs != null) {
+                    for (String digest : apkBlobs) {
+                        ApkBlobStore.release(digest, mBackupPath.getName());
+                    }
+                }
+            } catch (IOException e) {
+                Log.w(TAG, "Could not release APK blobs of %s", e, mBackupPath);
+            }
+        }
+
         @NonNull
         private Path getFreezeFile() throws FileNotFoundException {
             return getBackupPath().findFile(FREEZE);
@@ -22,6 +22,7 @@ import android.graphics.Bitmap;
 import android.os.Build;
 import android.os.ParcelFileDescriptor;
 import android.os.RemoteException;
+import android.text.TextUtils;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -34,9 +35,11 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -83,6 +86,7 @@ import io.github.muntashirakon.AppManager.utils.Utils;
 import io.github.muntashirakon.io.IoUtils;
 import io.github.muntashirakon.io.Path;
 import io.github.muntashirakon.io.Paths;
+import io.github.muntashirakon.io.UidGidPair;
 
 @WorkerThread
 class BackupOp implements Closeable {
@@ -232,6 +236,11 @@ class BackupOp implements Closeable {
             tarType = TarUtils.TAR_GZIP;
         }
         String crypto = CryptoUtils.getMode();
+        if (!mBackupFlags.backupApkFiles() || !CryptoUtils.MODE_NO_ENCRYPTION.equals(crypto)
+                || MetadataManager.getCurrentBackupMetaVersion() < 5) {
+            // Shared APK files are stored unencrypted and tracked using backup UUIDs
+            mBackupFlags.removeFlag(BackupFlags.BACKUP_SHARED_APK_FILES);
+        }
         BackupCryptSetupHelper cryptoHelper = new BackupCryptSetupHelper(crypto, MetadataManager.getCurrentBackupMetaVersion());
         mBackupItem.setCrypto(cryptoHelper.crypto);
         BackupMetadataV5.Info backupInfo = new BackupMetadataV5.Info(backupTime, mBackupFlags,
@@ -322,34 +331,70 @@ class BackupOp implements Closeable {
                 throw new BackupException(mMetadata.metadata.apkName + " not found at " + sourceDir);
             }
         }
-        Path[] sourceFiles;
+        if (mBackupFlags.backupSharedApkFiles()) {
+            backupApkFilesToStore(sourceDir);
+            return;
+        }
         try {
-            sourceFiles = TarUtils.create(mMetadata.info.tarType, sourceDir, mBackupItem.getUnencryptedBackupPath(), sourceBackupFilePrefix,
-                    /* language=regexp */ new String[]{".*\\.apk"}, null, null, false).toArray(new Path[0]);
+            createTar(sourceDir, sourceBackupFilePrefix, /* language=regexp */ new String[]{".*\\.apk"}, null);
         } catch (Throwable th) {
             throw new BackupException("APK files backup is requested but no source directory has been backed up.", th);
         }
+    }
+
+    private void backupApkFilesToStore(@NonNull Path sourceDir) throws BackupException {
+        String[] splitConfigs = mMetadata.metadata.splitConfigs;
+        String[] apkBlobs = new String[splitConfigs.length + 1];
         try {
-            sourceFiles = mBackupItem.encrypt(sourceFiles);
+            // A lone APK file inside /data/app has no splits
+            Path baseApk = sourceDir.isDirectory() ? sourceDir.findFile(mMetadata.metadata.apkName) : sourceDir;
+            apkBlobs[0] = mBackupItem.addApkBlob(baseApk);
+            for (int i = 0; i < splitConfigs.length; ++i) {
+                apkBlobs[i + 1] = mBackupItem.addApkBlob(sourceDir.findFile(splitConfigs[i]));
+            }
         } catch (IOException e) {
-            throw new BackupException("Failed to encrypt " + Arrays.toString(sourceFiles), e);
-        }
-        for (Path file : sourceFiles) {
-            mChecksum.add(file.getName(), DigestUtils.getHexDigest(mMetadata.info.checksumAlgo, file));
+            throw new BackupException("Could not add APK files to the shared APK store.", e);
         }
+        mMetadata.metadata.apkBlobs = apkBlobs;
     }
 
     private void backupData() throws BackupException {
+        String[] dataDirDigests = null;
+        BackupMetadataV5 previousMetadata = null;
+        if (mBackupFlags.backupIncremental()) {
+            dataDirDigests = new String[mMetadata.metadata.dataDirs.length];
+            Arrays.fill(dataDirDigests, "");
+            previousMetadata = findPreviousMetadataForIncrementalBackup();
+        }
+        try {
+            backupData(dataDirDigests, previousMetadata);
+        } finally {
+            if (previousMetadata != null) {
+                // Remove decrypted temporary files and release crypto of the previous backup
+                previousMetadata.info.getBackupItem().cleanup();
+            }
+        }
+        mMetadata.metadata.dataDirDigests = dataDirDigests;
+    }
+
+    private void backupData(@Nullable String[] dataDirDigests, @Nullable BackupMetadataV5 previousMetadata)
+            throws BackupException {
         for (int i = 0; i < mMetadata.metadata.dataDirs.length; ++i) {
-            Path[] dataFiles;
             String backupDataDir = mMetadata.metadata.dataDirs[i];
-            if (backupDataDir.equals(BackupManager.DATA_BACKUP_SPECIAL_ADB)) {
-                // ADB backup
-                dataFiles = backupAdb(i);
-            } else {
+            if (!backupDataDir.equals(BackupManager.DATA_BACKUP_SPECIAL_ADB)) {
                 // Regular directory backup
-                dataFiles = backupDirectory(backupDataDir, i);
+                if (dataDirDigests != null) {
+                    dataDirDigests[i] = getDataDirDigest(backupDataDir);
+                    if (previousMetadata != null && reuseDataDirectory(previousMetadata, i, dataDirDigests[i])) {
+                        Log.i(TAG, "Reused unchanged data directory %s from the previous backup.", backupDataDir);
+                        continue;
+                    }
+                }
+                backupDirectory(backupDataDir, i);
+                continue;
             }
+            // ADB backup
+            Path[] dataFiles = backupAdb(i);
             try {
                 dataFiles = mBackupItem.encrypt(dataFiles);
             } catch (IOException e) {
@@ -361,20 +406,121 @@ class BackupOp implements Closeable {
         }
     }
 
-    @NonNull
-    private Path[] backupDirectory(@NonNull String dir, int index) throws BackupException {
+    private void backupDirectory(@NonNull String dir, int index) throws BackupException {
         String filePrefix = BackupUtils.getDataFilePrefix(index, getExt(mMetadata.info.tarType));
         try {
-            return TarUtils.create(mMetadata.info.tarType, Paths.get(dir),
-                            mBackupItem.getUnencryptedBackupPath(),
-                            filePrefix, null, null,
-                            BackupUtils.getExcludeDirs(!mBackupFlags.backupCache()), false)
-                    .toArray(new Path[0]);
+            createTar(Paths.get(dir), filePrefix, null, BackupUtils.getExcludeDirs(!mBackupFlags.backupCache()));
         } catch (Throwable th) {
             throw new BackupException("Failed to backup data directory at " + dir, th);
         }
     }
 
+    /**
+     * Find the backup to be replaced by this backup that can be used as the base of an incremental backup, i.e. it
+     * has data directory digests and uses the same compression method.
+     */
+    @Nullable
+    private BackupMetadataV5 findPreviousMetadataForIncrementalBackup() {
+        for (BackupItems.BackupItem previousBackup : mBackupItem.getPreviousBackups()) {
+            try {
+                BackupMetadataV5 metadata = previousBackup.getMetadata();
+                if (metadata.metadata.dataDirDigests != null
+                        && metadata.info.tarType.equals(mMetadata.info.tarType)) {
+                    return metadata;
+                }
+                previousBackup.cleanup();
+            } catch (IOException e) {
+                Log.w(TAG, "Could not read previous backup %s", e, previousBackup.getRelativeDir());
+                previousBackup.cleanup();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Calculate a digest of the files that would be archived from the given data directory. It covers the paths,
+     * types, sizes, modification times, modes and owners of the files, but not their contents.
+     */
+    @NonNull
+    private String getDataDirDigest(@NonNull String dir) {
+        Path source = Paths.get(dir);
+        Path basePath = source.isDirectory() ? source : source.getParent();
+        if (basePath == null) {
+            return "";
+        }
+        List<Path> files = Paths.getAll(basePath, source, null,
+                BackupUtils.getExcludeDirs(!mBackupFlags.backupCache()), false);
+        List<String> entries = new ArrayList<>(files.size());
+        for (Path file : files) {
+            UidGidPair owner = file.getUidGid();
+            entries.add(Paths.relativePath(file, basePath)
+                    + '\t' + (file.isSymbolicLink() ? 'l' : (file.isDirectory() ? 'd' : 'f'))
+                    + '\t' + file.length()
+                    + '\t' + file.lastModified()
+                    + '\t' + file.getMode()
+                    + '\t' + (owner != null ? owner.uid + ":" + owner.gid : ""));
+        }
+        // Listing order isn't guaranteed
+        Collections.sort(entries);
+        return DigestUtils.getHexDigest(DigestUtils.SHA_256, TextUtils.join("\n", entries).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Copy the archives of the data directory at the given index from the previous backup if the data directory
+     * has not changed since then.
+     *
+     * @return {@code true} if the archives were copied, {@code false} if the data directory has to be archived
+     */
+    private boolean reuseDataDirectory(@NonNull BackupMetadataV5 previousMetadata, int index, @NonNull String digest) {
+        String[] previousDataDirs = previousMetadata.metadata.dataDirs;
+        String[] previousDigests = Objects.requireNonNull(previousMetadata.metadata.dataDirDigests);
+        if (digest.isEmpty() || index >= previousDataDirs.length || index >= previousDigests.length
+                || !previousDataDirs[index].equals(mMetadata.metadata.dataDirs[index])
+                || !digest.equals(previousDigests[index])) {
+            return false;
+        }
+        BackupItems.BackupItem previousBackup = previousMetadata.info.getBackupItem();
+        Path[] dataFiles = previousBackup.getDataFiles(index);
+        if (dataFiles.length == 0) {
+            return false;
+        }
+        try {
+            Map<String, String> checksums = mBackupItem.copyFrom(previousBackup, dataFiles, mMetadata.info.checksumAlgo);
+            for (Map.Entry<String, String> entry : checksums.entrySet()) {
+                mChecksum.add(entry.getKey(), entry.getValue());
+            }
+            return true;
+        } catch (IOException e) {
+            Log.w(TAG, "Could not reuse data directory %s from the previous backup", e,
+                    mMetadata.metadata.dataDirs[index]);
+            return false;
+        }
+    }
+
+    /**
+     * Create tar parts of the source inside the backup, and add their checksums. If supported, the parts are
+     * compressed, encrypted and hashed in a single pass. Otherwise, the parts are encrypted and hashed after they are
+     * created.
+     */
+    private void createTar(@NonNull Path source, @NonNull String filePrefix, @Nullable String[] filters,
+                           @Nullable String[] exclude) throws IOException {
+        BackupSplitOutputStream sos = mBackupItem.openSplitOutputStream(filePrefix, TarUtils.DEFAULT_SPLIT_SIZE,
+                mMetadata.info.checksumAlgo);
+        if (sos != null) {
+            TarUtils.create(mMetadata.info.tarType, source, sos, filters, exclude, false);
+            for (Map.Entry<String, String> entry : sos.getChecksums().entrySet()) {
+                mChecksum.add(entry.getKey(), entry.getValue());
+            }
+            return;
+        }
+        Path[] files = TarUtils.create(mMetadata.info.tarType, source, mBackupItem.getUnencryptedBackupPath(),
+                filePrefix, filters, null, exclude, false).toArray(new Path[0]);
+        files = mBackupItem.encrypt(files);
+        for (Path file : files) {
+            mChecksum.add(file.getName(), DigestUtils.getHexDigest(mMetadata.info.checksumAlgo, file));
+        }
+    }
+
     @NonNull
     private Path[] backupAdb(int index) throws BackupException {
         try {
@@ -425,29 +571,19 @@ class BackupOp implements Closeable {
             throw new BackupException("There were some KeyStore items but they couldn't be cached before taking a backup.");
         }
         String keyStorePrefix = KEYSTORE_PREFIX + getExt(mMetadata.info.tarType);
-        Path[] backedUpKeyStoreFiles;
         try {
-            backedUpKeyStoreFiles = TarUtils.create(mMetadata.info.tarType, cachePath, mBackupItem.getUnencryptedBackupPath(), keyStorePrefix,
-                            keyStoreFilters.toArray(new String[0]), null, null, false)
-                    .toArray(new Path[0]);
+            createTar(cachePath, keyStorePrefix, keyStoreFilters.toArray(new String[0]), null);
         } catch (Throwable th) {
             throw new BackupException("Could not backup KeyStore item.", th);
-        }
-        // Remove cache
-        for (String name : cachedKeyStoreFileNames) {
-            try {
-                cachePath.findFile(name).delete();
-            } catch (FileNotFoundException ignore) {
+        } finally {
+            // Remove cache
+            for (String name : cachedKeyStoreFileNames) {
+                try {
+                    cachePath.findFile(name).delete();
+                } catch (FileNotFoundException ignore) {
+                }
             }
         }
-        try {
-            backedUpKeyStoreFiles = mBackupItem.encrypt(backedUpKeyStoreFiles);
-        } catch (IOException e) {
-            throw new BackupException("Failed to encrypt " + Arrays.toString(backedUpKeyStoreFiles), e);
-        }
-        for (Path file : backedUpKeyStoreFiles) {
-            mChecksum.add(file.getName(), DigestUtils.getHexDigest(mMetadata.info.checksumAlgo, file));
-        }
     }
 
     private void backupExtras() throws BackupException {
@@ -0,0 +1,110 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package io.github.muntashirakon.AppManager.backup;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import aosp.libcore.util.HexEncoding;
+import io.github.muntashirakon.AppManager.crypto.Crypto;
+import io.github.muntashirakon.AppManager.utils.DigestUtils;
+import io.github.muntashirakon.io.Path;
+import io.github.muntashirakon.io.SplitOutputStream;
+
+/**
+ * A {@link SplitOutputStream} that encrypts each part and calculates its checksum as it is written, thereby avoiding
+ * the need to re-read the parts for encryption and checksum calculation.
+ */
+public class BackupSplitOutputStream extends SplitOutputStream {
+    @Nullable
+    private final Crypto mCrypto;
+    @NonNull
+    private final String mExtension;
+    @NonNull
+    @DigestUtils.Algorithm
+    private final String mChecksumAlgo;
+    // Filename -> Checksum
+    private final Map<String, String> mChecksums = Collections.synchronizedMap(new LinkedHashMap<>());
+
+    /**
+     * @param crypto       Crypto to encrypt each part with, {@code null} if encryption is disabled. It must support
+     *                     {@linkplain Crypto#canEncryptOnTheFly() on-the-fly encryption}.
+     * @param extension    Extension of the encrypted parts, e.g. {@code .aes}
+     * @param checksumAlgo Algorithm used for calculating the checksums of the (encrypted) parts
+     */
+    BackupSplitOutputStream(@NonNull Path basePath, @NonNull String baseName, long maxBytesPerFile,
+                            @Nullable Crypto crypto, @NonNull String extension,
+                            @NonNull @DigestUtils.Algorithm String checksumAlgo) {
+        super(basePath, baseName, maxBytesPerFile);
+        if (crypto != null && !crypto.canEncryptOnTheFly()) {
+            throw new IllegalArgumentException(crypto.getModeName() + " does not support on-the-fly encryption.");
+        }
+        mCrypto = crypto;
+        mExtension = extension;
+        mChecksumAlgo = checksumAlgo;
+    }
+
+    /**
+     * Checksums of the parts that have been closed, i.e. all the parts once this stream is closed.
+     *
+     * @return A map of filename to checksum
+     */
+    @NonNull
+    public Map<String, String> getChecksums() {
+        synchronized (mChecksums) {
+            return new LinkedHashMap<>(mChecksums);
+        }
+    }
+
+    @NonNull
+    @Override
+    protected String getFileName(int index) {
+        return super.getFileName(index) + mExtension;
+    }
+
+    @WorkerThread
+    @NonNull
+    @Override
+    protected OutputStream openOutputStream(@NonNull Path file) throws IOException {
+        MessageDigest messageDigest;
+        try {
+            messageDigest = MessageDigest.getInstance(mChecksumAlgo);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        // Checksum is calculated over the encrypted data
+        OutputStream os = new DigestOutputStream(file.openOutputStream(), messageDigest);
+        if (mCrypto != null) {
+            os = mCrypto.getEncryptingStream(os);
+        }
+        return new FilterOutputStream(os) {
+            private boolean mClosed;
+
+            @Override
+            public void write(@NonNull byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (mClosed) {
+                    return;
+                }
+                mClosed = true;
+                super.close();
+                mChecksums.put(file.getName(), HexEncoding.encodeToString(messageDigest.digest(), false /* lowercase */));
+            }
+        };
+    }
+}
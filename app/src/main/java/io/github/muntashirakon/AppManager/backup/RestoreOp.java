@@ -275,8 +275,10 @@ class RestoreOp implements Closeable {
         if (!mBackupFlags.backupApkFiles()) {
             throw new BackupException("APK restore is requested but backup doesn't contain any source files.");
         }
-        Path[] backupSourceFiles = mBackupItem.getSourceFiles();
-        if (backupSourceFiles.length == 0) {
+        // APK files are either inside the backup or in the shared APK store
+        String[] apkBlobs = mBackupMetadata.apkBlobs;
+        Path[] backupSourceFiles = apkBlobs != null ? new Path[0] : mBackupItem.getSourceFiles();
+        if (apkBlobs == null && backupSourceFiles.length == 0) {
             // No source backup found
             throw new BackupException("Source restore is requested but there are no source files.");
         }
@@ -348,17 +350,33 @@ class RestoreOp implements Closeable {
             } catch (IOException e) {
                 throw new BackupException("Could not create staging files", e);
             }
-            // Decrypt sources
-            try {
-                backupSourceFiles = mBackupItem.decrypt(backupSourceFiles);
-            } catch (IOException e) {
-                throw new BackupException("Failed to decrypt " + Arrays.toString(backupSourceFiles), e);
-            }
-            // Extract apk files to the package staging directory
-            try {
-                TarUtils.extract(mBackupInfo.tarType, backupSourceFiles, packageStagingDirectory, allApkNames, null, null);
-            } catch (Throwable th) {
-                throw new BackupException("Failed to extract the apk file(s).", th);
+            if (apkBlobs != null) {
+                // Copy apk files from the shared APK store, verifying them on the way
+                if (apkBlobs.length != allApks.length) {
+                    throw new BackupException("Metadata contains " + apkBlobs.length + " APK blobs but "
+                            + allApks.length + " APK files are required.");
+                }
+                try {
+                    for (int i = 0; i < allApks.length; ++i) {
+                        ApkBlobStore.extract(apkBlobs[i], allApks[i]);
+                    }
+                } catch (IOException e) {
+                    deleteFiles(allApks);
+                    throw new BackupException("Failed to extract the apk file(s).", e);
+                }
+            } else {
+                // Decrypt sources
+                try {
+                    backupSourceFiles = mBackupItem.decrypt(backupSourceFiles);
+                } catch (IOException e) {
+                    throw new BackupException("Failed to decrypt " + Arrays.toString(backupSourceFiles), e);
+                }
+                // Extract apk files to the package staging directory
+                try {
+                    TarUtils.extract(mBackupInfo.tarType, backupSourceFiles, packageStagingDirectory, allApkNames, null, null);
+                } catch (Throwable th) {
+                    throw new BackupException("Failed to extract the apk file(s).", th);
+                }
             }
             // A normal update will do it now
             InstallerOptions options = InstallerOptions.getDefault();
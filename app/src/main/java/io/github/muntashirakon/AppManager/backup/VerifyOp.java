@@ -137,6 +137,17 @@ class VerifyOp implements Closeable {
     }
 
     private void verifyApkFiles() throws BackupException {
+        String[] apkBlobs = mBackupMetadata.apkBlobs;
+        if (apkBlobs != null) {
+            // APK files are in the shared APK store
+            for (String digest : apkBlobs) {
+                if (!ApkBlobStore.verify(digest)) {
+                    throw new BackupException("Could not verify APK files." +
+                            "\nBlob: " + digest);
+                }
+            }
+            return;
+        }
         Path[] backupSourceFiles = mBackupItem.getSourceFiles();
         if (backupSourceFiles.length == 0) {
             // No APK files found
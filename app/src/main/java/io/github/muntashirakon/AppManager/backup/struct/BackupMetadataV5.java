@@ -261,6 +261,20 @@ public class BackupMetadataV5 implements LocalizedString {
         public boolean keyStore;  // key_store
         @Nullable
         public String installer;  // installer
+        /**
+         * Digest of the file listing (paths, sizes, modification times, modes and owners) of each data directory at
+         * the time of backup, in the same order as {@link #dataDirs}. An empty string denotes no digest. Used by
+         * incremental backups to detect unchanged data directories.
+         */
+        @Nullable
+        public String[] dataDirDigests;  // data_dir_digests
+        /**
+         * SHA-256 digests of the base and split APK files stored in the shared APK store, in the order of
+         * {@link #apkName} followed by {@link #splitConfigs}. {@code null} if the APK files are stored inside the
+         * backup itself.
+         */
+        @Nullable
+        public String[] apkBlobs;  // apk_blobs
 
         public Metadata(@Nullable String backupName) {
             this.version = MetadataManager.getCurrentBackupMetaVersion();
@@ -287,6 +301,12 @@ public class BackupMetadataV5 implements LocalizedString {
             instructionSet = metadata.instructionSet;
             keyStore = metadata.keyStore;
             installer = metadata.installer;
+            if (metadata.dataDirDigests != null) {
+                dataDirDigests = metadata.dataDirDigests.clone();
+            }
+            if (metadata.apkBlobs != null) {
+                apkBlobs = metadata.apkBlobs.clone();
+            }
         }
 
         public Metadata(@NonNull JSONObject rootObject) throws JSONException {
@@ -305,6 +325,8 @@ public class BackupMetadataV5 implements LocalizedString {
             instructionSet = rootObject.getString("instruction_set");
             keyStore = rootObject.getBoolean("key_store");
             installer = JSONUtils.optString(rootObject, "installer");
+            dataDirDigests = JSONUtils.getArray(String.class, rootObject.optJSONArray("data_dir_digests"));
+            apkBlobs = JSONUtils.getArray(String.class, rootObject.optJSONArray("apk_blobs"));
         }
 
         @NonNull
@@ -326,6 +348,8 @@ public class BackupMetadataV5 implements LocalizedString {
             rootObject.put("instruction_set", instructionSet);
             rootObject.put("key_store", keyStore);
             rootObject.put("installer", installer);
+            rootObject.put("data_dir_digests", JSONUtils.getJSONArray(dataDirDigests));
+            rootObject.put("apk_blobs", JSONUtils.getJSONArray(apkBlobs));
             return rootObject;
         }
     }
@@ -293,23 +293,34 @@ public class BatchOpsManager {
 
     @NonNull
     private Result opBackupApk(@NonNull BatchOpsInfo info) {
-        List<UserPackagePair> failedPackages = new ArrayList<>();
+        List<UserPackagePair> failedPackages = Collections.synchronizedList(new ArrayList<>());
         int max = info.size();
         // Initial progress
         float lastProgress = mProgressHandler != null ? mProgressHandler.getLastProgress() : 0;
         Context context = ContextUtils.getContext();
-        UserPackagePair pair;
-        for (int i = 0; i < max; ++i) {
-            pair = info.getPair(i);
-            updateProgress(lastProgress, i + 1);
-            // Do operation
-            try {
-                ApkUtils.backupApk(context, pair.getPackageName(), pair.getUserId());
-            } catch (Exception e) {
-                failedPackages.add(pair);
-                log("====> op=BACKUP_APK, pkg=" + pair, e);
+        MultithreadedExecutor executor = MultithreadedExecutor.getNewInstance();
+        AtomicInteger counter = new AtomicInteger(0);
+        try {
+            for (int i = 0; i < max; ++i) {
+                UserPackagePair pair = info.getPair(i);
+                executor.submit(() -> {
+                    synchronized (counter) {
+                        counter.set(counter.get() + 1);
+                        updateProgress(lastProgress, counter.get());
+                    }
+                    // Do operation
+                    try {
+                        ApkUtils.backupApk(context, pair.getPackageName(), pair.getUserId());
+                    } catch (Exception e) {
+                        failedPackages.add(pair);
+                        log("====> op=BACKUP_APK, pkg=" + pair, e);
+                    }
+                });
             }
+        } catch (Throwable th) {
+            log("====> op=BACKUP_APK", th);
         }
+        executor.awaitCompletion();
         return new Result(failedPackages);
     }
 
@@ -58,6 +58,7 @@ import java.util.Objects;
 import java.util.Set;
 
 import dev.rikka.tools.refine.Refine;
+import io.github.muntashirakon.AppManager.ipc.LocalServices;
 import io.github.muntashirakon.AppManager.ipc.ProxyBinder;
 import io.github.muntashirakon.AppManager.logs.Log;
 import io.github.muntashirakon.AppManager.self.SelfPermissions;
@@ -421,6 +422,55 @@ public final class PackageManagerCompat {
         }
     }
 
+    /**
+     * Set the states of multiple components of the given user at once. Unlike calling
+     * {@link #setComponentEnabledSetting(ComponentName, int, int, int)} for each component, the system is called only
+     * once on Android 13 onwards, and the states are set in a single call to AMService otherwise. Either way, a package
+     * is notified only once.
+     *
+     * @param componentNames The components whose states have to be changed, none of which may be repeated
+     * @param newStates      The new state of each of the components
+     */
+    @SuppressWarnings("deprecation")
+    @RequiresPermission(value = Manifest.permission.CHANGE_COMPONENT_ENABLED_STATE)
+    public static void setComponentEnabledSettings(@NonNull List<ComponentName> componentNames,
+                                                   @NonNull @EnabledState int[] newStates,
+                                                   @EnabledFlags int flags,
+                                                   @UserIdInt int userId)
+            throws RemoteException {
+        if (componentNames.size() != newStates.length) {
+            throw new IllegalArgumentException("Each component must have a state");
+        }
+        if (componentNames.isEmpty()) {
+            return;
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
+            List<PackageManager.ComponentEnabledSetting> settings = new ArrayList<>(newStates.length);
+            for (int i = 0; i < newStates.length; ++i) {
+                settings.add(new PackageManager.ComponentEnabledSetting(componentNames.get(i), newStates[i], flags));
+            }
+            IPackageManager pm = getPackageManager();
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.UPSIDE_DOWN_CAKE) {
+                String callingPackage = SelfPermissions.getCallingPackage(Users.getSelfOrRemoteUid());
+                pm.setComponentEnabledSettings(settings, userId, callingPackage);
+            } else pm.setComponentEnabledSettings(settings, userId);
+        } else if (LocalServices.alive()) {
+            LocalServices.getAmService().setComponentEnabledSettings(componentNames, newStates, flags, userId);
+        } else {
+            IPackageManager pm = getPackageManager();
+            for (int i = 0; i < newStates.length; ++i) {
+                pm.setComponentEnabledSetting(componentNames.get(i), newStates[i], flags, userId);
+            }
+        }
+        if (userId != UserHandleHidden.myUserId()) {
+            Set<String> packageNames = new HashSet<>();
+            for (ComponentName componentName : componentNames) {
+                packageNames.add(componentName.getPackageName());
+            }
+            BroadcastUtils.sendPackageAltered(ContextUtils.getContext(), packageNames.toArray(new String[0]));
+        }
+    }
+
     @RequiresPermission(value = Manifest.permission.CHANGE_COMPONENT_ENABLED_STATE)
     public static void setApplicationEnabledSetting(String packageName, @EnabledState int newState,
                                                     @EnabledFlags int flags, @UserIdInt int userId)
@@ -139,6 +139,21 @@ public class AESCrypto implements Crypto {
         }
     }
 
+    @Override
+    public boolean canEncryptOnTheFly() {
+        return true;
+    }
+
+    @WorkerThread
+    @NonNull
+    @Override
+    public OutputStream getEncryptingStream(@NonNull OutputStream encryptedStream) {
+        // Init cipher
+        GCMModeCipher cipher = GCMBlockCipher.newInstance(AESEngine.newInstance());
+        cipher.init(true, getParams());
+        return new CipherOutputStream(encryptedStream, cipher);
+    }
+
     @WorkerThread
     @Override
     public void decrypt(@NonNull Path[] inputFiles, @NonNull Path[] outputFiles) throws IOException {
@@ -24,6 +24,22 @@ public interface Crypto extends Closeable {
     @WorkerThread
     void encrypt(@NonNull InputStream unencryptedStream, @NonNull OutputStream encryptedStream) throws IOException;
 
+    /**
+     * Whether the data can be encrypted as they are written using {@link #getEncryptingStream(OutputStream)}.
+     */
+    boolean canEncryptOnTheFly();
+
+    /**
+     * Wrap the given stream so that the data written to the returned stream are encrypted on the fly. The output is
+     * identical to that of {@link #encrypt(InputStream, OutputStream)}. The returned stream must be closed in order to
+     * finalise the encryption.
+     *
+     * @throws UnsupportedOperationException if {@link #canEncryptOnTheFly()} returns {@code false}
+     */
+    @WorkerThread
+    @NonNull
+    OutputStream getEncryptingStream(@NonNull OutputStream encryptedStream) throws IOException;
+
     @WorkerThread
     void decrypt(@NonNull Path[] inputFiles, @NonNull Path[] outputFiles) throws IOException;
 
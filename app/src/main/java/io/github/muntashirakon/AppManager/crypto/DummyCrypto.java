@@ -27,6 +27,18 @@ public class DummyCrypto implements Crypto {
         // Do nothing since both are the same stream
     }
 
+    @Override
+    public boolean canEncryptOnTheFly() {
+        return true;
+    }
+
+    @NonNull
+    @Override
+    public OutputStream getEncryptingStream(@NonNull OutputStream encryptedStream) {
+        // Same stream since there's no encryption
+        return encryptedStream;
+    }
+
     @Override
     public void decrypt(@NonNull Path[] inputFiles, @NonNull Path[] outputFiles) {
         // Do nothing since both are the same set of files
@@ -141,6 +141,18 @@ public class OpenPGPCrypto implements Crypto {
         handleStreams(intent, unencryptedStream, encryptedStream);
     }
 
+    @Override
+    public boolean canEncryptOnTheFly() {
+        // Encryption is delegated to the OpenPGP provider which has to be invoked for each file
+        return false;
+    }
+
+    @NonNull
+    @Override
+    public OutputStream getEncryptingStream(@NonNull OutputStream encryptedStream) {
+        throw new UnsupportedOperationException("OpenPGP does not support on-the-fly encryption");
+    }
+
     @WorkerThread
     private void handleFiles(Intent intent, @NonNull Path[] inputFiles, @NonNull Path[] outputFiles) throws IOException {
         mIsFileMode = true;
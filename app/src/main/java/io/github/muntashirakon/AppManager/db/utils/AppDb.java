@@ -20,9 +20,11 @@ import android.util.ArrayMap;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.WorkerThread;
+import androidx.core.content.pm.PackageInfoCompat;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.ListIterator;
@@ -60,6 +62,15 @@ public class AppDb {
 
     private static final Object sLock = new Object();
 
+    private static final int PACKAGE_INFO_FLAGS = GET_SIGNING_CERTIFICATES | PackageManager.GET_ACTIVITIES
+            | PackageManager.GET_RECEIVERS | PackageManager.GET_PROVIDERS | PackageManager.GET_SERVICES
+            | MATCH_DISABLED_COMPONENTS | MATCH_UNINSTALLED_PACKAGES | MATCH_STATIC_SHARED_AND_SDK_LIBRARIES;
+    // Flags that are sufficient for isUpToDate(App, PackageInfo)
+    private static final int FINGERPRINT_FLAGS = MATCH_DISABLED_COMPONENTS | MATCH_UNINSTALLED_PACKAGES
+            | MATCH_STATIC_SHARED_AND_SDK_LIBRARIES;
+    // Use bulk fetch if more than 1/4th of the packages have changed
+    private static final int BULK_FETCH_THRESHOLD_DIVISOR = 4;
+
     private final AppDao mAppDao;
     private final BackupDao mBackupDao;
 
@@ -251,7 +262,12 @@ public class AppDb {
     public void updateApplications(@NonNull Context context) {
         synchronized (sLock) {
             Map<String, Backup> backups = getBackups(false);
-            List<App> oldApps = new ArrayList<>(mAppDao.getAll());
+            List<App> allOldApps = mAppDao.getAll();
+            // Index existing apps by (package name, user ID) to avoid linear scans
+            Map<String, App> oldApps = new HashMap<>(allOldApps.size());
+            for (App app : allOldApps) {
+                oldApps.put(getAppKey(app.packageName, app.userId), app);
+            }
             List<App> modifiedApps = new ArrayList<>();
             Set<String> newApps = new HashSet<>();
             Set<String> updatedApps = new HashSet<>();
@@ -268,28 +284,52 @@ public class AppDb {
                     continue;
                 }
 
+                // Fetch only the fingerprints first, i.e. without components and signatures
                 List<PackageInfo> packageInfoList = PackageManagerCompat.getInstalledPackages(
-                        GET_SIGNING_CERTIFICATES | PackageManager.GET_ACTIVITIES
-                                | PackageManager.GET_RECEIVERS | PackageManager.GET_PROVIDERS
-                                | PackageManager.GET_SERVICES | MATCH_DISABLED_COMPONENTS
-                                | MATCH_UNINSTALLED_PACKAGES | MATCH_STATIC_SHARED_AND_SDK_LIBRARIES, userId);
+                        FINGERPRINT_FLAGS, userId);
+                List<String> changedPackages = new ArrayList<>();
 
                 for (PackageInfo packageInfo : packageInfoList) {
                     // Interrupt thread on request
                     if (ThreadUtils.isInterrupted()) return;
 
-                    int oldAppIndex = findIndexOfApp(oldApps, packageInfo.packageName, UserHandleHidden.getUserId(packageInfo.applicationInfo.uid));
-                    if (oldAppIndex >= 0) {
-                        // There's already existing app
-                        App oldApp = oldApps.remove(oldAppIndex);
-                        if (isUpToDate(oldApp, packageInfo)) {
-                            // Up-to-date app
-                            updatedApps.add(oldApp.packageName);
-                            modifiedApps.add(oldApp);
-                            backups.remove(packageInfo.packageName);
-                            oldApp.lastActionTime = System.currentTimeMillis();
-                            continue;
-                        }
+                    String key = getAppKey(packageInfo.packageName, UserHandleHidden.getUserId(packageInfo.applicationInfo.uid));
+                    App oldApp = oldApps.get(key);
+                    if (oldApp != null && isUpToDate(oldApp, packageInfo)) {
+                        // Up-to-date app
+                        oldApps.remove(key);
+                        updatedApps.add(oldApp.packageName);
+                        modifiedApps.add(oldApp);
+                        backups.remove(packageInfo.packageName);
+                        oldApp.lastActionTime = System.currentTimeMillis();
+                        continue;
+                    }
+                    changedPackages.add(packageInfo.packageName);
+                }
+
+                if (changedPackages.isEmpty()) {
+                    continue;
+                }
+                // Fetch full package info only for the new or altered packages
+                List<PackageInfo> changedPackageInfoList = getFullPackageInfo(changedPackages,
+                        packageInfoList.size(), userId);
+                if (changedPackageInfoList == null) {
+                    // Interrupted: the packages that weren't fetched must not be considered removed
+                    return;
+                }
+                for (PackageInfo packageInfo : changedPackageInfoList) {
+                    // Interrupt thread on request
+                    if (ThreadUtils.isInterrupted()) return;
+
+                    String key = getAppKey(packageInfo.packageName, UserHandleHidden.getUserId(packageInfo.applicationInfo.uid));
+                    App oldApp = oldApps.remove(key);
+                    if (oldApp != null && isUpToDate(oldApp, packageInfo)) {
+                        // Up-to-date app (only possible if it was altered between the two fetches)
+                        updatedApps.add(oldApp.packageName);
+                        modifiedApps.add(oldApp);
+                        backups.remove(packageInfo.packageName);
+                        oldApp.lastActionTime = System.currentTimeMillis();
+                        continue;
                     }
                     // New app
                     App app = App.fromPackageInfo(context, packageInfo);
@@ -308,28 +348,27 @@ public class AppDb {
                 // Interrupt thread on request
                 if (ThreadUtils.isInterrupted()) return;
 
-                int oldAppIndex = findIndexOfApp(oldApps, backup.packageName, backup.userId);
-                if (oldAppIndex >= 0) {
-                    // There's already existing app
-                    App oldApp = oldApps.remove(oldAppIndex);
-                    if (isUpToDate(oldApp, backup)) {
-                        // Up-to-date app
-                        updatedApps.add(oldApp.packageName);
-                        modifiedApps.add(oldApp);
-                        continue;
-                    }
+                App oldApp = oldApps.remove(getAppKey(backup.packageName, backup.userId));
+                if (oldApp != null && isUpToDate(oldApp, backup)) {
+                    // Up-to-date app
+                    updatedApps.add(oldApp.packageName);
+                    modifiedApps.add(oldApp);
+                    continue;
                 }
                 // New app
                 App app = App.fromBackup(backup);
                 newApps.add(app.packageName);
                 modifiedApps.add(app);
             }
+            // Interrupt thread on request, the remaining old apps are only known to be removed if nothing is skipped
+            if (ThreadUtils.isInterrupted()) return;
             // Add new data
-            mAppDao.delete(oldApps);
+            List<App> removedApps = new ArrayList<>(oldApps.values());
+            mAppDao.delete(removedApps);
             mAppDao.insert(modifiedApps);
-            if (!oldApps.isEmpty()) {
+            if (!removedApps.isEmpty()) {
                 // Delete broadcast
-                BroadcastUtils.sendDbPackageRemoved(context, getPackageNamesFromApps(oldApps));
+                BroadcastUtils.sendDbPackageRemoved(context, getPackageNamesFromApps(removedApps));
             }
             if (!newApps.isEmpty()) {
                 // New apps
@@ -343,6 +382,42 @@ public class AppDb {
 
     }
 
+    /**
+     * Fetch package info with all the flags required by {@link App#fromPackageInfo(Context, PackageInfo)}. If most of
+     * the packages have changed (e.g., on first run), a single bulk fetch is cheaper than querying them one by one.
+     *
+     * @return The package info of the packages that are still installed, or {@code null} if interrupted
+     */
+    @WorkerThread
+    @Nullable
+    private static List<PackageInfo> getFullPackageInfo(@NonNull List<String> packageNames, int totalCount,
+                                                        @UserIdInt int userId) {
+        if (packageNames.size() > totalCount / BULK_FETCH_THRESHOLD_DIVISOR) {
+            List<PackageInfo> allPackages = PackageManagerCompat.getInstalledPackages(PACKAGE_INFO_FLAGS, userId);
+            Set<String> packageNameSet = new HashSet<>(packageNames);
+            List<PackageInfo> packageInfoList = new ArrayList<>(packageNames.size());
+            for (PackageInfo packageInfo : allPackages) {
+                if (packageNameSet.contains(packageInfo.packageName)) {
+                    packageInfoList.add(packageInfo);
+                }
+            }
+            return packageInfoList;
+        }
+        List<PackageInfo> packageInfoList = new ArrayList<>(packageNames.size());
+        for (String packageName : packageNames) {
+            if (ThreadUtils.isInterrupted()) {
+                return null;
+            }
+            try {
+                packageInfoList.add(PackageManagerCompat.getPackageInfo(packageName, PACKAGE_INFO_FLAGS, userId));
+            } catch (RemoteException | PackageManager.NameNotFoundException | SecurityException e) {
+                // Package was uninstalled in the meantime
+                Log.w(TAG, "Could not retrieve package info for " + packageName + " and user " + userId);
+            }
+        }
+        return packageInfoList;
+    }
+
     @WorkerThread
     @NonNull
     public Map<String, Backup> getBackups(boolean loadBackups) {
@@ -424,6 +499,11 @@ public class AppDb {
         }
     }
 
+    @NonNull
+    private static String getAppKey(@NonNull String packageName, @UserIdInt int userId) {
+        return userId + "_" + packageName;
+    }
+
     private static int findIndexOfApp(@NonNull List<App> appList, @NonNull String packageName, @UserIdInt int userId) {
         for (int i = 0; i < appList.size(); ++i) {
             App app = appList.get(i);
@@ -451,6 +531,7 @@ public class AppDb {
         }
         // App was installed
         return currentApp.lastUpdateTime == installedPackageInfo.lastUpdateTime
+                && currentApp.versionCode == PackageInfoCompat.getLongVersionCode(installedPackageInfo)
                 && currentApp.flags == installedPackageInfo.applicationInfo.flags;
     }
 
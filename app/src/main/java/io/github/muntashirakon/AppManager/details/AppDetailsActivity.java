@@ -171,6 +171,15 @@ public class AppDetailsActivity extends BaseActivity {
         mViewPager.setAdapter(new AppDetailsFragmentPagerAdapter(this));
         new TabLayoutMediator(tabLayout, mViewPager, (tab, position) -> tab.setText(mTabTitleIds.getString(position)))
                 .attach();
+        mViewPager.registerOnPageChangeCallback(new ViewPager2.OnPageChangeCallback() {
+            @Override
+            public void onPageSelected(@AppDetailsFragment.Property int position) {
+                // Only loaded if the package has been changed since the tab was last loaded
+                if (model.isPackageExist()) {
+                    model.load(position);
+                }
+            }
+        });
         // Load package info
         (mPackageName != null
                 ? model.setPackage(mPackageName)
@@ -316,7 +325,8 @@ public class AppDetailsActivity extends BaseActivity {
     private void loadTabs() {
         @AppDetailsFragment.Property int id = mViewPager.getCurrentItem();
         Log.d("ADA - " + mTabTitleIds.getText(id), "isPackageChanged called");
-        for (int i = 0; i < mTabTitleIds.length(); ++i) model.load(i);
+        // Other tabs are loaded when they are selected
+        model.load(id);
     }
 
     // For tab layout
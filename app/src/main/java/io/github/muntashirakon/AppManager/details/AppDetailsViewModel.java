@@ -30,6 +30,7 @@ import android.os.Build;
 import android.os.RemoteException;
 import android.os.UserHandleHidden;
 import android.text.TextUtils;
+import android.util.SparseIntArray;
 
 import androidx.annotation.AnyThread;
 import androidx.annotation.GuardedBy;
@@ -117,15 +118,25 @@ public class AppDetailsViewModel extends AndroidViewModel {
     private final Object mBlockerLocker = new Object();
     private final ExecutorService mExecutor = Executors.newFixedThreadPool(4);
     private final CountDownLatch mPackageInfoWatcher = new CountDownLatch(1);
+    private final Object mPackageInfoLock = new Object();
+    // Version of the package info from which the items of each property were loaded
+    @GuardedBy("mLoadedVersions")
+    private final SparseIntArray mLoadedVersions = new SparseIntArray();
     private final MutableLiveData<PackageInfo> mPackageInfoLiveData = new MutableLiveData<>();
     private final MutableLiveData<Boolean> mTagsAlteredLiveData = new MutableLiveData<>();
     private final MutableLiveData<Integer> mFreezeTypeLiveData = new MutableLiveData<>();
     private final MutableLiveData<AppDetailsComponentItem> mComponentChangedLiveData = new MutableLiveData<>();
 
+    // The package info is fetched once with all the flags and shared by all the tabs. It is never modified and is only
+    // replaced when the package is changed.
     @Nullable
-    private PackageInfo mPackageInfo;
+    private volatile PackageInfo mPackageInfo;
     @Nullable
-    private PackageInfo mInstalledPackageInfo;
+    private volatile PackageInfo mInstalledPackageInfo;
+    // Incremented each time the package info is replaced
+    private volatile int mPackageInfoVersion = 0;
+    // Only incremented with mPackageInfoLock held, but read without it so that the UI thread is never blocked by a fetch
+    private final AtomicInteger mPackageInfoFetchCount = new AtomicInteger(0);
     @Nullable
     private String mPackageName;
     @GuardedBy("blockerLocker")
@@ -214,7 +225,7 @@ public class AppDetailsViewModel extends AndroidViewModel {
                 File cachedApkFile = mApkFile.getBaseEntry().getFile(false);
                 if (!cachedApkFile.canRead()) throw new Exception("Cannot read " + cachedApkFile);
                 mApkPath = cachedApkFile.getAbsolutePath();
-                setPackageInfo(false);
+                setPackageInfo(-1);
                 mPackageInfoLiveData.postValue(getPackageInfo());
             } catch (Throwable th) {
                 Log.e(TAG, "Could not fetch package info.", th);
@@ -235,7 +246,7 @@ public class AppDetailsViewModel extends AndroidViewModel {
                 Log.d(TAG, "Package name is being set");
                 setPackageName(packageName);
                 // TODO: 23/5/21 The app could be “data only”
-                setPackageInfo(false);
+                setPackageInfo(-1);
                 PackageInfo pi = getPackageInfo();
                 if (pi == null) throw new ApkFile.ApkFileException("Package not installed.");
                 mApkSource = ApkSource.getApkSource(pi.applicationInfo);
@@ -946,55 +957,80 @@ public class AppDetailsViewModel extends AndroidViewModel {
         return (MutableLiveData<List<AppDetailsItem<?>>>) liveData;
     }
 
+    /**
+     * Load the items of the given property unless they were already loaded from the current package info.
+     */
     @AnyThread
     public void load(@AppDetailsFragment.Property int property) {
         mExecutor.submit(() -> {
+            if (getPackageInfoInternal() == null) {
+                return;
+            }
+            int version = mPackageInfoVersion;
+            synchronized (mLoadedVersions) {
+                if (mLoadedVersions.get(property, -1) == version) {
+                    // Up-to-date
+                    return;
+                }
+            }
             Optional.ofNullable(mReceiver).ifPresent(PackageIntentReceiver::pauseWatcher);
-            switch (property) {
-                case AppDetailsFragment.ACTIVITIES:
-                    loadActivities();
-                    break;
-                case AppDetailsFragment.SERVICES:
-                    loadServices();
-                    break;
-                case AppDetailsFragment.RECEIVERS:
-                    loadReceivers();
-                    break;
-                case AppDetailsFragment.PROVIDERS:
-                    loadProviders();
-                    break;
-                case AppDetailsFragment.APP_OPS:
-                    loadAppOps();
-                    break;
-                case AppDetailsFragment.USES_PERMISSIONS:
-                    loadUsesPermissions();
-                    break;
-                case AppDetailsFragment.PERMISSIONS:
-                    loadPermissions();
-                    break;
-                case AppDetailsFragment.FEATURES:
-                    loadFeatures();
-                    break;
-                case AppDetailsFragment.CONFIGURATIONS:
-                    loadConfigurations();
-                    break;
-                case AppDetailsFragment.SIGNATURES:
-                    loadSignatures();
-                    break;
-                case AppDetailsFragment.SHARED_LIBRARIES:
-                    loadSharedLibraries();
-                    break;
-                case AppDetailsFragment.OVERLAYS:
-                    loadOverlays();
-                    break;
-                case AppDetailsFragment.APP_INFO:
-                    loadAppInfo();
-                    break;
+            try {
+                loadProperty(property);
+                // Only a successful load is up-to-date, a failed one has to be retried
+                synchronized (mLoadedVersions) {
+                    mLoadedVersions.put(property, version);
+                }
+            } finally {
+                Optional.ofNullable(mReceiver).ifPresent(PackageIntentReceiver::resumeWatcher);
             }
-            Optional.ofNullable(mReceiver).ifPresent(PackageIntentReceiver::resumeWatcher);
         });
     }
 
+    @WorkerThread
+    private void loadProperty(@AppDetailsFragment.Property int property) {
+        switch (property) {
+            case AppDetailsFragment.ACTIVITIES:
+                loadActivities();
+                break;
+            case AppDetailsFragment.SERVICES:
+                loadServices();
+                break;
+            case AppDetailsFragment.RECEIVERS:
+                loadReceivers();
+                break;
+            case AppDetailsFragment.PROVIDERS:
+                loadProviders();
+                break;
+            case AppDetailsFragment.APP_OPS:
+                loadAppOps();
+                break;
+            case AppDetailsFragment.USES_PERMISSIONS:
+                loadUsesPermissions();
+                break;
+            case AppDetailsFragment.PERMISSIONS:
+                loadPermissions();
+                break;
+            case AppDetailsFragment.FEATURES:
+                loadFeatures();
+                break;
+            case AppDetailsFragment.CONFIGURATIONS:
+                loadConfigurations();
+                break;
+            case AppDetailsFragment.SIGNATURES:
+                loadSignatures();
+                break;
+            case AppDetailsFragment.SHARED_LIBRARIES:
+                loadSharedLibraries();
+                break;
+            case AppDetailsFragment.OVERLAYS:
+                loadOverlays();
+                break;
+            case AppDetailsFragment.APP_INFO:
+                loadAppInfo();
+                break;
+        }
+    }
+
 
     private final MutableLiveData<Boolean> mIsPackageExistLiveData = new MutableLiveData<>();
     private boolean mIsPackageExist = true;
@@ -1024,14 +1060,21 @@ public class AppDetailsViewModel extends AndroidViewModel {
 
     @AnyThread
     public void triggerPackageChange() {
-        mExecutor.submit(this::setPackageChanged);
+        // A reload requested before the task runs is satisfied by any fetch made in the meantime
+        int fetchCount = getPackageInfoFetchCount();
+        mExecutor.submit(() -> setPackageChanged(fetchCount));
     }
 
     @WorkerThread
-    @GuardedBy("blockerLocker")
     public void setPackageChanged() {
+        setPackageChanged(getPackageInfoFetchCount());
+    }
+
+    @WorkerThread
+    @GuardedBy("blockerLocker")
+    private void setPackageChanged(int fetchCount) {
         // TODO: 16/3/23 Synchronization is needed somewhere
-        setPackageInfo(true);
+        setPackageInfo(fetchCount);
         if (mExternalApk || mExecutor.isShutdown() || mExecutor.isTerminated()) return;
         mExecutor.submit(() -> {
             synchronized (mBlockerLocker) {
@@ -1086,55 +1129,82 @@ public class AppDetailsViewModel extends AndroidViewModel {
         });
     }
 
-    @SuppressLint("WrongConstant")
+    @AnyThread
+    private int getPackageInfoFetchCount() {
+        return mPackageInfoFetchCount.get();
+    }
+
+    /**
+     * @param fetchCount The fetch count when the reload was requested, or {@code -1} to fetch only if not fetched yet
+     */
     @WorkerThread
-    private void setPackageInfo(boolean reload) {
+    private void setPackageInfo(int fetchCount) {
         // Package name cannot be null
         if (mPackageName == null) return;
         // Wait for component blocker to appear
         synchronized (mBlockerLocker) {
             waitForBlockerOrExit();
         }
-        if (!reload && mPackageInfo != null) return;
+        synchronized (mPackageInfoLock) {
+            if (fetchCount < 0 ? mPackageInfo != null : fetchCount != mPackageInfoFetchCount.get()) {
+                // Already fetched after it was requested
+                return;
+            }
+            mPackageInfoFetchCount.incrementAndGet();
+            fetchPackageInfo();
+        }
+    }
+
+    @SuppressLint("WrongConstant")
+    @WorkerThread
+    @GuardedBy("mPackageInfoLock")
+    private void fetchPackageInfo() {
+        PackageInfo installedPackageInfo;
+        PackageInfo packageInfo;
         try {
             try {
-                mInstalledPackageInfo = PackageManagerCompat.getPackageInfo(mPackageName, PackageManager.GET_META_DATA
+                installedPackageInfo = PackageManagerCompat.getPackageInfo(mPackageName, PackageManager.GET_META_DATA
                                 | PackageManager.GET_PERMISSIONS | PackageManager.GET_ACTIVITIES | MATCH_DISABLED_COMPONENTS
                                 | PackageManager.GET_RECEIVERS | PackageManager.GET_PROVIDERS | MATCH_UNINSTALLED_PACKAGES
                                 | PackageManager.GET_SERVICES | PackageManager.GET_CONFIGURATIONS | GET_SIGNING_CERTIFICATES
                                 | PackageManager.GET_SHARED_LIBRARY_FILES | PackageManager.GET_URI_PERMISSION_PATTERNS
                                 | PackageManagerCompat.MATCH_STATIC_SHARED_AND_SDK_LIBRARIES,
                         mUserId);
-                if (!ApplicationInfoCompat.isInstalled(mInstalledPackageInfo.applicationInfo)) {
+                if (!ApplicationInfoCompat.isInstalled(installedPackageInfo.applicationInfo)) {
                     throw new ApkFile.ApkFileException("App not installed. It only has data.");
                 }
             } catch (Throwable e) {
                 Log.e(TAG, e);
-                mInstalledPackageInfo = null;
+                installedPackageInfo = null;
             }
             if (mExternalApk) {
                 // Do not get signatures via Android framework as it will simply return NULL without any clarifications.
                 // All signatures are fetched using PackageUtils where a fallback method is used in case the PackageInfo
                 // didn't load any signature. So, we should be safe from any harm.
-                mPackageInfo = mPackageManager.getPackageArchiveInfo(mApkPath, PackageManager.GET_PERMISSIONS
+                packageInfo = mPackageManager.getPackageArchiveInfo(mApkPath, PackageManager.GET_PERMISSIONS
                         | PackageManager.GET_ACTIVITIES | PackageManager.GET_RECEIVERS | PackageManager.GET_PROVIDERS
                         | PackageManager.GET_SERVICES | MATCH_DISABLED_COMPONENTS | PackageManager.GET_CONFIGURATIONS
                         | PackageManager.GET_SHARED_LIBRARY_FILES | PackageManager.GET_URI_PERMISSION_PATTERNS
                         | PackageManager.GET_META_DATA);
-                if (mPackageInfo == null) {
+                if (packageInfo == null) {
                     throw new PackageManager.NameNotFoundException("Package cannot be parsed");
                 }
-                if (mInstalledPackageInfo == null) {
+                if (installedPackageInfo == null) {
                     Log.d(TAG, "%s not installed for user %d", mPackageName, mUserId);
                 }
-                mPackageInfo.applicationInfo.sourceDir = mApkPath;
-                mPackageInfo.applicationInfo.publicSourceDir = mApkPath;
+                packageInfo.applicationInfo.sourceDir = mApkPath;
+                packageInfo.applicationInfo.publicSourceDir = mApkPath;
             } else {
-                mPackageInfo = mInstalledPackageInfo;
-                if (mPackageInfo == null) {
+                packageInfo = installedPackageInfo;
+                if (packageInfo == null) {
+                    mInstalledPackageInfo = null;
+                    mPackageInfo = null;
                     throw new PackageManager.NameNotFoundException("Package not installed");
                 }
             }
+            mInstalledPackageInfo = installedPackageInfo;
+            mPackageInfo = packageInfo;
+            ++mPackageInfoVersion;
             mIsPackageExistLiveData.postValue(mIsPackageExist = true);
         } catch (PackageManager.NameNotFoundException e) {
             Log.e(TAG, e);
@@ -0,0 +1,226 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package io.github.muntashirakon.AppManager.dex;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.UTFDataFormatException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import io.github.muntashirakon.AppManager.utils.ZipUtils;
+
+/**
+ * Read the names of the classes defined in a dex file directly from its {@code class_defs}, {@code type_ids} and
+ * {@code string_ids} sections without loading the dex file. This is a lot faster and uses a fraction of the memory
+ * compared to {@link DexClasses}, but only the class names are available.
+ */
+public final class DexClassNameReader {
+    private static final Pattern DEX_ENTRY_NAME = Pattern.compile("classes\\d*\\.dex");
+
+    // Header offsets
+    private static final int ENDIAN_TAG_OFFSET = 0x28;
+    private static final int STRING_IDS_SIZE_OFFSET = 0x38;
+    private static final int TYPE_IDS_SIZE_OFFSET = 0x40;
+    private static final int CLASS_DEFS_SIZE_OFFSET = 0x60;
+    private static final int HEADER_SIZE = 0x70;
+    private static final int ENDIAN_CONSTANT = 0x12345678;
+    private static final int CLASS_DEF_ITEM_SIZE = 0x20;
+
+    /**
+     * Read the names of all the classes in all the {@code classes*.dex} files in an APK file. Each dex file is read
+     * in parallel, and therefore, the consumer must be thread-safe. Uncompressed dex files are memory-mapped.
+     *
+     * @param apkFile  The APK file
+     * @param consumer Receives the fully qualified name of each class as soon as it is read. Names are not
+     *                 deduplicated across dex files.
+     * @throws IOException If the APK file or any of the dex files could not be read
+     */
+    @WorkerThread
+    public static void forEachClassName(@NonNull File apkFile, @NonNull Consumer<String> consumer) throws IOException {
+        try (ZipFile zipFile = new ZipFile(apkFile);
+             RandomAccessFile raf = new RandomAccessFile(apkFile, "r")) {
+            FileChannel channel = raf.getChannel();
+            List<ZipEntry> dexEntries = new ArrayList<>();
+            for (ZipEntry entry : Collections.list(zipFile.entries())) {
+                if (DEX_ENTRY_NAME.matcher(entry.getName()).matches()) {
+                    dexEntries.add(entry);
+                }
+            }
+            if (dexEntries.isEmpty()) {
+                throw new IOException("No dex files found in " + apkFile);
+            }
+            long[] storedDataOffsets = ZipUtils.getStoredDataOffsets(channel, dexEntries);
+            AtomicReference<IOException> error = new AtomicReference<>();
+            IntStream.range(0, dexEntries.size()).parallel().forEach(i -> {
+                if (error.get() != null) {
+                    return;
+                }
+                try {
+                    ByteBuffer dex;
+                    if (storedDataOffsets[i] >= 0) {
+                        dex = channel.map(FileChannel.MapMode.READ_ONLY, storedDataOffsets[i],
+                                dexEntries.get(i).getSize());
+                    } else {
+                        dex = readFully(zipFile, dexEntries.get(i));
+                    }
+                    DexClassNameReader reader = new DexClassNameReader(dex);
+                    for (int j = 0; j < reader.getClassCount(); ++j) {
+                        consumer.accept(reader.getClassName(j));
+                    }
+                } catch (IOException | RuntimeException e) {
+                    error.compareAndSet(null, e instanceof IOException ? (IOException) e
+                            : new IOException("Could not read " + dexEntries.get(i).getName(), e));
+                }
+            });
+            if (error.get() != null) {
+                throw error.get();
+            }
+        }
+    }
+
+    @NonNull
+    private final ByteBuffer mDex;
+    private final int mStringIdsSize;
+    private final int mStringIdsOffset;
+    private final int mTypeIdsSize;
+    private final int mTypeIdsOffset;
+    private final int mClassDefsSize;
+    private final int mClassDefsOffset;
+    // Reused for decoding descriptors
+    @NonNull
+    private char[] mChars = new char[128];
+
+    public DexClassNameReader(@NonNull ByteBuffer dex) throws IOException {
+        mDex = dex.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        if (mDex.limit() < HEADER_SIZE || mDex.get(0) != 'd' || mDex.get(1) != 'e' || mDex.get(2) != 'x'
+                || mDex.get(3) != '\n') {
+            throw new IOException("Not a dex file.");
+        }
+        if (mDex.getInt(ENDIAN_TAG_OFFSET) != ENDIAN_CONSTANT) {
+            throw new IOException("Unsupported endianness.");
+        }
+        mStringIdsSize = mDex.getInt(STRING_IDS_SIZE_OFFSET);
+        mStringIdsOffset = mDex.getInt(STRING_IDS_SIZE_OFFSET + 4);
+        mTypeIdsSize = mDex.getInt(TYPE_IDS_SIZE_OFFSET);
+        mTypeIdsOffset = mDex.getInt(TYPE_IDS_SIZE_OFFSET + 4);
+        mClassDefsSize = mDex.getInt(CLASS_DEFS_SIZE_OFFSET);
+        mClassDefsOffset = mDex.getInt(CLASS_DEFS_SIZE_OFFSET + 4);
+        checkSection(mStringIdsOffset, mStringIdsSize, 4);
+        checkSection(mTypeIdsOffset, mTypeIdsSize, 4);
+        checkSection(mClassDefsOffset, mClassDefsSize, CLASS_DEF_ITEM_SIZE);
+    }
+
+    public int getClassCount() {
+        return mClassDefsSize;
+    }
+
+    /**
+     * Get the fully qualified name of the class at the given index of {@code class_defs}, e.g. {@code com.example.A$B}
+     */
+    @NonNull
+    public String getClassName(int index) throws IOException {
+        if (index < 0 || index >= mClassDefsSize) {
+            throw new IndexOutOfBoundsException("Invalid class index " + index);
+        }
+        int typeIdx = mDex.getInt(mClassDefsOffset + index * CLASS_DEF_ITEM_SIZE);
+        if (typeIdx < 0 || typeIdx >= mTypeIdsSize) {
+            throw new IOException("Invalid type index " + typeIdx);
+        }
+        int stringIdx = mDex.getInt(mTypeIdsOffset + typeIdx * 4);
+        if (stringIdx < 0 || stringIdx >= mStringIdsSize) {
+            throw new IOException("Invalid string index " + stringIdx);
+        }
+        return descriptorToClassName(mDex.getInt(mStringIdsOffset + stringIdx * 4));
+    }
+
+    /**
+     * Decode a MUTF-8 type descriptor at the given offset of the string data, converting it to a class name on the
+     * fly, i.e. {@code Lcom/example/A;} becomes {@code com.example.A}.
+     */
+    @NonNull
+    private String descriptorToClassName(int offset) throws IOException {
+        int limit = mDex.limit();
+        if (offset < 0 || offset >= limit) {
+            throw new IOException("Invalid string data offset " + offset);
+        }
+        // Skip utf16_size (uleb128)
+        int pos = offset;
+        while (pos < limit && (mDex.get(pos) & 0x80) != 0) {
+            ++pos;
+        }
+        ++pos;
+        int length = 0;
+        boolean isClass = pos < limit && mDex.get(pos) == 'L';
+        if (isClass) {
+            ++pos;
+        }
+        while (pos < limit) {
+            int b = mDex.get(pos++) & 0xFF;
+            if (b == 0) {
+                break;
+            }
+            char c;
+            if (b < 0x80) {
+                c = (char) b;
+            } else if ((b & 0xE0) == 0xC0 && pos < limit) {
+                c = (char) (((b & 0x1F) << 6) | (mDex.get(pos++) & 0x3F));
+            } else if ((b & 0xF0) == 0xE0 && pos + 1 < limit) {
+                c = (char) (((b & 0x0F) << 12) | ((mDex.get(pos++) & 0x3F) << 6) | (mDex.get(pos++) & 0x3F));
+            } else {
+                throw new UTFDataFormatException("Invalid MUTF-8 string at " + offset);
+            }
+            if (length == mChars.length) {
+                char[] chars = new char[length * 2];
+                System.arraycopy(mChars, 0, chars, 0, length);
+                mChars = chars;
+            }
+            mChars[length++] = c == '/' && isClass ? '.' : c;
+        }
+        if (isClass && length > 0 && mChars[length - 1] == ';') {
+            --length;
+        }
+        return new String(mChars, 0, length);
+    }
+
+    private void checkSection(int offset, int count, int itemSize) throws IOException {
+        if (count < 0 || (count > 0 && (offset < 0 || (long) offset + (long) count * itemSize > mDex.limit()))) {
+            throw new IOException("Invalid section at " + offset);
+        }
+    }
+
+    @NonNull
+    private static ByteBuffer readFully(@NonNull ZipFile zipFile, @NonNull ZipEntry entry) throws IOException {
+        long size = entry.getSize();
+        if (size < 0 || size > Integer.MAX_VALUE) {
+            throw new IOException("Invalid size of " + entry.getName());
+        }
+        byte[] bytes = new byte[(int) size];
+        try (InputStream is = zipFile.getInputStream(entry)) {
+            int read = 0;
+            while (read < bytes.length) {
+                int count = is.read(bytes, read, bytes.length - read);
+                if (count < 0) {
+                    throw new IOException("Unexpected end of " + entry.getName());
+                }
+                read += count;
+            }
+        }
+        return ByteBuffer.wrap(bytes);
+    }
+}
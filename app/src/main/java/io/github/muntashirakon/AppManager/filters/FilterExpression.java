@@ -0,0 +1,274 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package io.github.muntashirakon.AppManager.filters;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
+import androidx.collection.ArrayMap;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import io.github.muntashirakon.AppManager.filters.options.FilterOption;
+
+/**
+ * A filter expression compiled into a tree of predicates. The expression is parsed only once using the same rules as
+ * {@link AbsExpressionEvaluator}. The operands of each {@code &} and {@code |} are then sorted by the cost of their
+ * filter options so that the cheaper ones are tested first and can short-circuit the expensive ones.
+ * <p>
+ * Once compiled, the expression is immutable and can be tested from multiple threads as long as each thread uses its
+ * own {@link FilterOption.TestResult}.
+ */
+final class FilterExpression {
+    // Surrounds the index of an already compiled parenthesised expression. It must not be removed by String#trim().
+    private static final char GROUP_MARKER = '\uE000';
+
+    private static final Node TRUE = new ConstantNode(true);
+    private static final Node FALSE = new ConstantNode(false);
+
+    @NonNull
+    public static FilterExpression compile(@NonNull String expr, @NonNull ArrayMap<Integer, FilterOption> filterOptions) {
+        List<Node> groups = new ArrayList<>();
+        // Process parentheses first
+        while (expr.contains("(")) {
+            int start = expr.lastIndexOf('(');
+            int end = expr.indexOf(')', start);
+            if (end == -1) {
+                // Expected ')'
+                return new FilterExpression(FALSE);
+            }
+            groups.add(compileOrExpr(expr.substring(start + 1, end), groups, filterOptions));
+            expr = expr.substring(0, start) + GROUP_MARKER + (groups.size() - 1) + GROUP_MARKER
+                    + expr.substring(end + 1);
+        }
+        return new FilterExpression(compileOrExpr(expr, groups, filterOptions));
+    }
+
+    @NonNull
+    private final Node mRoot;
+
+    private FilterExpression(@NonNull Node root) {
+        mRoot = root;
+    }
+
+    public boolean test(@NonNull IFilterableAppInfo info, @NonNull FilterOption.TestResult result) {
+        return mRoot.test(info, result);
+    }
+
+    @VisibleForTesting
+    @NonNull
+    @Override
+    public String toString() {
+        return mRoot.toString();
+    }
+
+    @NonNull
+    private static Node compileOrExpr(@NonNull String expr, @NonNull List<Node> groups,
+                                      @NonNull ArrayMap<Integer, FilterOption> filterOptions) {
+        List<Node> nodes = new ArrayList<>();
+        for (String part : expr.split(" \\| ")) {
+            Node node = compileAndExpr(part, groups, filterOptions);
+            if (node == TRUE) {
+                return TRUE;
+            }
+            if (node != FALSE) {
+                nodes.add(node);
+            }
+        }
+        if (nodes.isEmpty()) {
+            return FALSE;
+        }
+        return nodes.size() == 1 ? nodes.get(0) : new OrNode(nodes);
+    }
+
+    @NonNull
+    private static Node compileAndExpr(@NonNull String expr, @NonNull List<Node> groups,
+                                       @NonNull ArrayMap<Integer, FilterOption> filterOptions) {
+        List<Node> nodes = new ArrayList<>();
+        for (String andPart : expr.split(" & ")) {
+            Node node = compileOperand(andPart.trim(), groups, filterOptions);
+            if (node == FALSE) {
+                return FALSE;
+            }
+            if (node != TRUE) {
+                nodes.add(node);
+            }
+        }
+        if (nodes.isEmpty()) {
+            return TRUE;
+        }
+        return nodes.size() == 1 ? nodes.get(0) : new AndNode(nodes);
+    }
+
+    @NonNull
+    private static Node compileOperand(@NonNull String operand, @NonNull List<Node> groups,
+                                       @NonNull ArrayMap<Integer, FilterOption> filterOptions) {
+        if (operand.equals("true")) {
+            return TRUE;
+        }
+        if (operand.equals("false")) {
+            return FALSE;
+        }
+        int length = operand.length();
+        if (length > 2 && operand.charAt(0) == GROUP_MARKER && operand.charAt(length - 1) == GROUP_MARKER
+                && operand.indexOf(GROUP_MARKER, 1) == length - 1) {
+            return groups.get(Integer.parseInt(operand.substring(1, length - 1)));
+        }
+        // Extract ID
+        int idx = operand.lastIndexOf('_');
+        int intId;
+        try {
+            if (idx >= 0 && length > (idx + 1)) {
+                intId = Integer.parseInt(operand.substring(idx + 1));
+            } else intId = 0;
+        } catch (NumberFormatException e) {
+            return FALSE;
+        }
+        FilterOption option = filterOptions.get(intId);
+        if (option == null) {
+            return FALSE;
+        }
+        return new OptionNode(option);
+    }
+
+    private abstract static class Node {
+        @FilterOption.Cost
+        public abstract int getCost();
+
+        public abstract boolean test(@NonNull IFilterableAppInfo info, @NonNull FilterOption.TestResult result);
+    }
+
+    private static class ConstantNode extends Node {
+        private final boolean mValue;
+
+        ConstantNode(boolean value) {
+            mValue = value;
+        }
+
+        @Override
+        public int getCost() {
+            return FilterOption.COST_FIELDS;
+        }
+
+        @Override
+        public boolean test(@NonNull IFilterableAppInfo info, @NonNull FilterOption.TestResult result) {
+            return mValue;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return Boolean.toString(mValue);
+        }
+    }
+
+    private static class OptionNode extends Node {
+        @NonNull
+        private final FilterOption mOption;
+        @FilterOption.Cost
+        private final int mCost;
+
+        OptionNode(@NonNull FilterOption option) {
+            mOption = option;
+            mCost = option.getCost();
+        }
+
+        @Override
+        public int getCost() {
+            return mCost;
+        }
+
+        @Override
+        public boolean test(@NonNull IFilterableAppInfo info, @NonNull FilterOption.TestResult result) {
+            return mOption.test(info, result).isMatched();
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return mOption.getFullId();
+        }
+    }
+
+    private abstract static class CompoundNode extends Node {
+        @NonNull
+        protected final Node[] mNodes;
+        @FilterOption.Cost
+        private final int mCost;
+
+        CompoundNode(@NonNull List<Node> nodes) {
+            // Cheapest first, otherwise retain the order in the expression
+            Collections.sort(nodes, (o1, o2) -> Integer.compare(o1.getCost(), o2.getCost()));
+            mNodes = nodes.toArray(new Node[0]);
+            int cost = FilterOption.COST_FIELDS;
+            for (Node node : mNodes) {
+                cost = Math.max(cost, node.getCost());
+            }
+            mCost = cost;
+        }
+
+        @Override
+        public int getCost() {
+            return mCost;
+        }
+
+        @NonNull
+        protected String toString(@NonNull String operator) {
+            StringBuilder sb = new StringBuilder("(");
+            for (int i = 0; i < mNodes.length; ++i) {
+                if (i > 0) {
+                    sb.append(operator);
+                }
+                sb.append(mNodes[i]);
+            }
+            return sb.append(")").toString();
+        }
+    }
+
+    private static class AndNode extends CompoundNode {
+        AndNode(@NonNull List<Node> nodes) {
+            super(nodes);
+        }
+
+        @Override
+        public boolean test(@NonNull IFilterableAppInfo info, @NonNull FilterOption.TestResult result) {
+            for (Node node : mNodes) {
+                if (!node.test(info, result)) {
+                    // No need to evaluate any further
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return toString(" & ");
+        }
+    }
+
+    private static class OrNode extends CompoundNode {
+        OrNode(@NonNull List<Node> nodes) {
+            super(nodes);
+        }
+
+        @Override
+        public boolean test(@NonNull IFilterableAppInfo info, @NonNull FilterOption.TestResult result) {
+            for (Node node : mNodes) {
+                if (node.test(info, result)) {
+                    // No need to evaluate any further
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return toString(" | ");
+        }
+    }
+}
@@ -18,6 +18,7 @@ import org.json.JSONObject;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.stream.IntStream;
 
 import io.github.muntashirakon.AppManager.filters.options.DataUsageOption;
 import io.github.muntashirakon.AppManager.filters.options.FilterOption;
@@ -29,46 +30,6 @@ import io.github.muntashirakon.AppManager.history.JsonDeserializer;
 import io.github.muntashirakon.util.ParcelUtils;
 
 public class FilterItem implements IJsonSerializer, Parcelable {
-    private static class ExprEvaluator extends AbsExpressionEvaluator {
-        private final ArrayMap<Integer, FilterOption> mFilterOptions;
-        @Nullable
-        private IFilterableAppInfo mInfo;
-        @Nullable
-        private FilterOption.TestResult mResult;
-
-        public ExprEvaluator(ArrayMap<Integer, FilterOption> filterOptions) {
-            mFilterOptions = filterOptions;
-        }
-
-        public void setInfo(@Nullable IFilterableAppInfo info) {
-            mInfo = info;
-            mResult = new FilterOption.TestResult();
-        }
-
-        @Nullable
-        public FilterOption.TestResult getResult() {
-            return mResult;
-        }
-
-        @Override
-        protected boolean evalId(@NonNull String id) {
-            if (mResult == null) {
-                mResult = new FilterOption.TestResult();
-            }
-            // Extract ID
-            int idx = id.lastIndexOf('_');
-            int intId;
-            if (idx >= 0 && id.length() > (idx + 1)) {
-                intId = Integer.parseInt(id.substring(idx + 1));
-            } else intId = 0;
-            FilterOption option = mFilterOptions.get(intId);
-            if (option == null || mInfo == null) {
-                return false;
-            }
-            return option.test(mInfo, mResult).isMatched();
-        }
-    }
-
     @NonNull
     private String mName;
     private final ArrayMap<Integer, FilterOption> mFilterOptions;
@@ -79,6 +40,9 @@ public class FilterItem implements IJsonSerializer, Parcelable {
     // Counters for special cases
     private int mTimesUsageInfoUsed = 0;
     private int mTimesRunningOptionUsed = 0;
+    // Compiled from mExpr and mFilterOptions on demand
+    @Nullable
+    private FilterExpression mCompiledExpr;
 
     public FilterItem() {
         this("Untitled");
@@ -106,6 +70,7 @@ public class FilterItem implements IJsonSerializer, Parcelable {
     public void setExpr(@NonNull String expr) {
         mExpr = expr;
         mCustomExpr = true;
+        mCompiledExpr = null;
     }
 
     public int addFilterOption(@NonNull FilterOption filterOption) {
@@ -118,6 +83,7 @@ public class FilterItem implements IJsonSerializer, Parcelable {
             } else mExpr += " & " + id;
         }
         incrementUsage(filterOption, true);
+        mCompiledExpr = null;
         if (mFilterOptions.put(filterOption.id, filterOption) == null) {
             return mFilterOptions.indexOfKey(filterOption.id);
         }
@@ -148,6 +114,7 @@ public class FilterItem implements IJsonSerializer, Parcelable {
         }
         incrementUsage(oldFilterOption, false);
         incrementUsage(filterOption, true);
+        mCompiledExpr = null;
     }
 
     public boolean removeFilterOptionAt(int i) {
@@ -172,6 +139,7 @@ public class FilterItem implements IJsonSerializer, Parcelable {
             mExpr = sb.toString();
         }
         incrementUsage(filterOption, false);
+        mCompiledExpr = null;
         return true;
     }
 
@@ -197,33 +165,43 @@ public class FilterItem implements IJsonSerializer, Parcelable {
     }
 
     public <T extends IFilterableAppInfo> List<FilteredItemInfo<T>> getFilteredList(@NonNull List<T> allFilterableAppInfo) {
+        FilterExpression expr = getCompiledExpr();
+        // Apps are tested in parallel, but the order of the list is retained
+        FilterOption.TestResult[] results = new FilterOption.TestResult[allFilterableAppInfo.size()];
+        IntStream.range(0, results.length).parallel().forEach(i -> {
+            FilterOption.TestResult result = new FilterOption.TestResult();
+            if (expr.test(allFilterableAppInfo.get(i), result)) {
+                results[i] = result;
+            }
+        });
         List<FilteredItemInfo<T>> filteredFilterableAppInfo = new ArrayList<>();
-        ExprEvaluator evaluator = new ExprEvaluator(mFilterOptions);
-        String expr = TextUtils.isEmpty(mExpr) ? "true" : mExpr;
-        for (T info : allFilterableAppInfo) {
-            evaluator.setInfo(info);
-            boolean eval = evaluator.evaluate(expr);
-            FilterOption.TestResult result = Objects.requireNonNull(evaluator.getResult());
-            if (eval) {
-                filteredFilterableAppInfo.add(new FilteredItemInfo<>(info, result));
+        for (int i = 0; i < results.length; ++i) {
+            if (results[i] != null) {
+                filteredFilterableAppInfo.add(new FilteredItemInfo<>(allFilterableAppInfo.get(i), results[i]));
             }
         }
         return filteredFilterableAppInfo;
     }
 
     public <T extends IFilterableAppInfo> List<T> getFilteredAppInfoList(@NonNull List<T> allFilterableAppInfo) {
-        List<T> filteredFilterableAppInfo = new ArrayList<>();
-        ExprEvaluator evaluator = new ExprEvaluator(mFilterOptions);
-        String expr = TextUtils.isEmpty(mExpr) ? "true" : mExpr;
-        for (T info : allFilterableAppInfo) {
-            evaluator.setInfo(info);
-            if (evaluator.evaluate(expr)) {
-                filteredFilterableAppInfo.add(info);
-            }
+        List<FilteredItemInfo<T>> filteredItems = getFilteredList(allFilterableAppInfo);
+        List<T> filteredFilterableAppInfo = new ArrayList<>(filteredItems.size());
+        for (FilteredItemInfo<T> filteredItem : filteredItems) {
+            filteredFilterableAppInfo.add(filteredItem.info);
         }
         return filteredFilterableAppInfo;
     }
 
+    @NonNull
+    private FilterExpression getCompiledExpr() {
+        FilterExpression compiledExpr = mCompiledExpr;
+        if (compiledExpr == null) {
+            compiledExpr = FilterExpression.compile(TextUtils.isEmpty(mExpr) ? "true" : mExpr, mFilterOptions);
+            mCompiledExpr = compiledExpr;
+        }
+        return compiledExpr;
+    }
+
     private void incrementUsage(FilterOption filterOption, boolean increment) {
         boolean requireCountUpdate;
         if (filterOption instanceof DataUsageOption) {
@@ -42,6 +42,10 @@ public class AppTypeOption extends FilterOption {
     public static final int APP_TYPE_SHORT_CODE = 1 << 21;
     public static final int APP_TYPE_OVERLAY = 1 << 22;
 
+    // These require querying system services
+    private static final int APP_TYPES_SYSTEM_SERVICES = APP_TYPE_SENSORS | APP_TYPE_BATTERY_OPT_ENABLED
+            | APP_TYPE_SSAID | APP_TYPE_KEYSTORE | APP_TYPE_WITH_RULES;
+
     private final Map<String, Integer> mKeysWithType = new LinkedHashMap<String, Integer>() {{
         put(KEY_ALL, TYPE_NONE);
         put("with_flags", TYPE_INT_FLAGS);
@@ -112,6 +116,11 @@ public class AppTypeOption extends FilterOption {
         }
     }
 
+    @Override
+    public int getCost() {
+        return (intValue & APP_TYPES_SYSTEM_SERVICES) != 0 ? COST_SYSTEM_SERVICES : COST_FIELDS;
+    }
+
     @NonNull
     @Override
     public CharSequence toLocalizedString(@NonNull Context context) {
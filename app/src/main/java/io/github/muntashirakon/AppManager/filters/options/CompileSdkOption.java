@@ -54,6 +54,11 @@ public class CompileSdkOption extends FilterOption {
         }
     }
 
+    @Override
+    public int getCost() {
+        return COST_FIELDS;
+    }
+
     @NonNull
     @Override
     public CharSequence toLocalizedString(@NonNull Context context) {
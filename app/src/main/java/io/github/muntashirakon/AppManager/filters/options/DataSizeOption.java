@@ -49,6 +49,11 @@ public class DataSizeOption extends FilterOption {
         }
     }
 
+    @Override
+    public int getCost() {
+        return COST_SYSTEM_SERVICES;
+    }
+
     @NonNull
     @Override
     public CharSequence toLocalizedString(@NonNull Context context) {
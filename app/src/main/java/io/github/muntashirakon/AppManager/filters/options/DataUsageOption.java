@@ -50,6 +50,11 @@ public class DataUsageOption extends FilterOption {
         }
     }
 
+    @Override
+    public int getCost() {
+        return COST_SYSTEM_SERVICES;
+    }
+
     @NonNull
     @Override
     public CharSequence toLocalizedString(@NonNull Context context) {
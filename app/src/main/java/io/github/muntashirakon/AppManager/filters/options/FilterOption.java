@@ -55,6 +55,33 @@ public abstract class FilterOption implements LocalizedString, Parcelable {
     public @interface KeyType {
     }
 
+    /**
+     * Only uses the fields of the package, e.g. flags, SDK versions and timestamps
+     */
+    public static final int COST_FIELDS = 0;
+    /**
+     * Matches strings, e.g. package name, label or version name
+     */
+    public static final int COST_STRINGS = 1;
+    /**
+     * Requires additional package info, e.g. components, permissions, signatures or backups
+     */
+    public static final int COST_PACKAGE_INFO = 2;
+    /**
+     * Requires querying system services, e.g. usage stats, storage stats or running processes
+     */
+    public static final int COST_SYSTEM_SERVICES = 3;
+
+    @IntDef(value = {
+            COST_FIELDS,
+            COST_STRINGS,
+            COST_PACKAGE_INFO,
+            COST_SYSTEM_SERVICES,
+    })
+    @Retention(RetentionPolicy.SOURCE)
+    public @interface Cost {
+    }
+
     public static final String KEY_ALL = "all";
 
     /**
@@ -148,6 +175,15 @@ public abstract class FilterOption implements LocalizedString, Parcelable {
     @NonNull
     public abstract TestResult test(@NonNull IFilterableAppInfo info, @NonNull TestResult result);
 
+    /**
+     * Estimated cost of {@link #test(IFilterableAppInfo, TestResult)}, used for evaluating the cheaper options of an
+     * expression first.
+     */
+    @Cost
+    public int getCost() {
+        return COST_PACKAGE_INFO;
+    }
+
     @NonNull
     @Override
     public String toString() {
@@ -53,6 +53,11 @@ public class InstalledOption extends FilterOption {
         }
     }
 
+    @Override
+    public int getCost() {
+        return COST_FIELDS;
+    }
+
     @NonNull
     @Override
     public CharSequence toLocalizedString(@NonNull Context context) {
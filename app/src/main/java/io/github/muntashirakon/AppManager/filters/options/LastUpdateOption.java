@@ -47,6 +47,11 @@ public class LastUpdateOption extends FilterOption {
         }
     }
 
+    @Override
+    public int getCost() {
+        return COST_FIELDS;
+    }
+
     @NonNull
     @Override
     public CharSequence toLocalizedString(@NonNull Context context) {
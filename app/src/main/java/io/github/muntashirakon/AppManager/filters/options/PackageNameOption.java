@@ -71,6 +71,11 @@ public class PackageNameOption extends FilterOption {
         }
     }
 
+    @Override
+    public int getCost() {
+        return COST_STRINGS;
+    }
+
     @NonNull
     @Override
     public CharSequence toLocalizedString(@NonNull Context context) {
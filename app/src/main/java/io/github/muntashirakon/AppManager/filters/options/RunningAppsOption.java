@@ -44,6 +44,11 @@ public class RunningAppsOption extends FilterOption {
         }
     }
 
+    @Override
+    public int getCost() {
+        return COST_SYSTEM_SERVICES;
+    }
+
     @NonNull
     @Override
     public CharSequence toLocalizedString(@NonNull Context context) {
@@ -48,6 +48,11 @@ public class TargetSdkOption extends FilterOption {
         }
     }
 
+    @Override
+    public int getCost() {
+        return COST_FIELDS;
+    }
+
     @NonNull
     @Override
     public CharSequence toLocalizedString(@NonNull Context context) {
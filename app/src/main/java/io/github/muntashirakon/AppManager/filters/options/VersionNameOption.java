@@ -58,6 +58,11 @@ public class VersionNameOption extends FilterOption {
         }
     }
 
+    @Override
+    public int getCost() {
+        return COST_STRINGS;
+    }
+
     @NonNull
     @Override
     public CharSequence toLocalizedString(@NonNull Context context) {
@@ -31,6 +31,13 @@ public class FmItem implements Comparable<FmItem> {
     private PathAttributes mAttributes;
     @Nullable
     private String mName;
+    // Fetched lazily when the attributes are not yet available, e.g. while sorting
+    @Nullable
+    private Long mLastModified;
+    @Nullable
+    private Long mSize;
+    @Nullable
+    private String mType;
     private int mChildCount = UNRESOLVED;
     private boolean mCached = false;
 
@@ -69,14 +76,28 @@ public class FmItem implements Comparable<FmItem> {
         if (mAttributes != null) {
             return mAttributes.lastModified;
         }
-        return path.lastModified();
+        if (mLastModified == null) {
+            mLastModified = path.lastModified();
+        }
+        return mLastModified;
     }
 
     public long getSize() {
         if (mAttributes != null) {
             return mAttributes.size;
         }
-        return path.length();
+        if (mSize == null) {
+            mSize = path.length();
+        }
+        return mSize;
+    }
+
+    @NonNull
+    public String getType() {
+        if (mType == null) {
+            mType = path.getType();
+        }
+        return mType;
     }
 
     public int getChildCount() {
@@ -0,0 +1,87 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package io.github.muntashirakon.AppManager.fm;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Filters and sorts {@link FmItem}s while they are being loaded. The items are collected in batches, and each batch is
+ * sorted and merged with the items sorted so far, which are then published. The first batch is small so that the first
+ * screen is displayed right away, and each batch after that is twice as large as the previous one. This keeps the
+ * number of partial lists low and the total cost of merging in O(n log n).
+ */
+class FmItemsCollector {
+    static final int FIRST_BATCH_SIZE = 64;
+
+    @NonNull
+    private final Predicate<FmItem> mFilter;
+    @NonNull
+    private final Comparator<FmItem> mComparator;
+    @NonNull
+    private final Consumer<List<FmItem>> mPartialListConsumer;
+    @NonNull
+    private List<FmItem> mBatch = new ArrayList<>(FIRST_BATCH_SIZE);
+    @NonNull
+    private List<FmItem> mSortedItems = Collections.emptyList();
+    private int mBatchSize = FIRST_BATCH_SIZE;
+
+    /**
+     * @param partialListConsumer Receives the sorted items collected so far. The lists are never modified afterwards.
+     */
+    public FmItemsCollector(@NonNull Predicate<FmItem> filter, @NonNull Comparator<FmItem> comparator,
+                            @NonNull Consumer<List<FmItem>> partialListConsumer) {
+        mFilter = filter;
+        mComparator = comparator;
+        mPartialListConsumer = partialListConsumer;
+    }
+
+    public void add(@NonNull FmItem fmItem) {
+        if (!mFilter.test(fmItem)) {
+            return;
+        }
+        mBatch.add(fmItem);
+        if (mBatch.size() >= mBatchSize) {
+            mergeBatch();
+            mBatchSize *= 2;
+            mBatch = new ArrayList<>(mBatchSize);
+            mPartialListConsumer.accept(mSortedItems);
+        }
+    }
+
+    /**
+     * @return All the filtered items in sorted order
+     */
+    @NonNull
+    public List<FmItem> finish() {
+        mergeBatch();
+        mBatch = new ArrayList<>();
+        return mSortedItems;
+    }
+
+    private void mergeBatch() {
+        if (mBatch.isEmpty()) {
+            return;
+        }
+        Collections.sort(mBatch, mComparator);
+        List<FmItem> mergedItems = new ArrayList<>(mSortedItems.size() + mBatch.size());
+        int i = 0, j = 0;
+        while (i < mSortedItems.size() && j < mBatch.size()) {
+            // Items in the same position retain their loading order
+            if (mComparator.compare(mBatch.get(j), mSortedItems.get(i)) < 0) {
+                mergedItems.add(mBatch.get(j++));
+            } else {
+                mergedItems.add(mSortedItems.get(i++));
+            }
+        }
+        mergedItems.addAll(mSortedItems.subList(i, mSortedItems.size()));
+        mergedItems.addAll(mBatch.subList(j, mBatch.size()));
+        mSortedItems = mergedItems;
+    }
+}
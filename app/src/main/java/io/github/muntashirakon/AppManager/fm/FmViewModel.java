@@ -26,6 +26,7 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -34,6 +35,8 @@ import java.util.List;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
 
 import io.github.muntashirakon.AppManager.R;
 import io.github.muntashirakon.AppManager.dex.DexUtils;
@@ -86,6 +89,10 @@ public class FmViewModel extends AndroidViewModel implements ListOptions.ListOpt
     private Future<?> mFmFileSystemLoaderResult;
     private final Set<Integer> mVfsIdSet = new HashSet<>();
     private final FileCache mFileCache = new FileCache();
+    // Incremented whenever the filter or the sort order changes
+    private final AtomicInteger mListOptionsVersion = new AtomicInteger();
+    // Makes checking the list options version and posting the items atomic
+    private final Object mFmItemsPostLock = new Object();
 
     public FmViewModel(@NonNull Application application) {
         super(application);
@@ -115,6 +122,7 @@ public class FmViewModel extends AndroidViewModel implements ListOptions.ListOpt
     public void setSortBy(@FmListOptions.SortOrder int sortBy) {
         mSortBy = sortBy;
         Prefs.FileManager.setSortOrder(sortBy);
+        mListOptionsVersion.incrementAndGet();
         ThreadUtils.postOnBackgroundThread(this::filterAndSort);
     }
 
@@ -128,6 +136,7 @@ public class FmViewModel extends AndroidViewModel implements ListOptions.ListOpt
     public void setReverseSort(boolean reverseSort) {
         mReverseSort = reverseSort;
         Prefs.FileManager.setReverseSort(reverseSort);
+        mListOptionsVersion.incrementAndGet();
         ThreadUtils.postOnBackgroundThread(this::filterAndSort);
     }
 
@@ -146,11 +155,13 @@ public class FmViewModel extends AndroidViewModel implements ListOptions.ListOpt
         if (selected) mSelectedOptions |= option;
         else mSelectedOptions &= ~option;
         Prefs.FileManager.setOptions(mSelectedOptions);
+        mListOptionsVersion.incrementAndGet();
         ThreadUtils.postOnBackgroundThread(this::filterAndSort);
     }
 
     public void setQueryString(@Nullable String queryString) {
         mQueryString = queryString;
+        mListOptionsVersion.incrementAndGet();
         ThreadUtils.postOnBackgroundThread(this::filterAndSort);
     }
 
@@ -321,6 +332,14 @@ public class FmViewModel extends AndroidViewModel implements ListOptions.ListOpt
             boolean isSaf = ContentResolver.SCHEME_CONTENT.equals(mCurrentUri.getScheme());
             FolderShortInfo folderShortInfo = new FolderShortInfo();
             int folderCount = 0;
+            int listOptionsVersion = mListOptionsVersion.get();
+            FmItemsCollector collector = new FmItemsCollector(getFilter(), getComparator(), partialList -> {
+                synchronized (mFmItemsPostLock) {
+                    if (listOptionsVersion == mListOptionsVersion.get()) {
+                        mFmItemsLiveData.postValue(partialList);
+                    }
+                }
+            });
             synchronized (mFmItems) {
                 mFmItems.clear();
                 if (isSaf) {
@@ -349,6 +368,7 @@ public class FmViewModel extends AndroidViewModel implements ListOptions.ListOpt
                             PathAttributes attributes = Paths.getAttributesFromSafTreeCursor(documentUri, c);
                             FmItem fmItem = new FmItem(child, attributes);
                             mFmItems.add(fmItem);
+                            collector.add(fmItem);
                             if (fmItem.isDirectory) {
                                 ++folderCount;
                             }
@@ -372,6 +392,7 @@ public class FmViewModel extends AndroidViewModel implements ListOptions.ListOpt
                     for (Path child : children) {
                         FmItem fmItem = new FmItem(child);
                         mFmItems.add(fmItem);
+                        collector.add(fmItem);
                         if (fmItem.isDirectory) {
                             ++folderCount;
                         }
@@ -392,11 +413,20 @@ public class FmViewModel extends AndroidViewModel implements ListOptions.ListOpt
             }
             // Send folder info for the first time
             mFolderShortInfoLiveData.postValue(folderShortInfo);
-            // Run filter and sorting options for fmItems
-            s = System.currentTimeMillis();
-            filterAndSort();
-            e = System.currentTimeMillis();
-            Log.d(TAG, "Time to sort files: %d ms", e - s);
+            if (listOptionsVersion == mListOptionsVersion.get()) {
+                // The remaining items only need to be merged
+                s = System.currentTimeMillis();
+                List<FmItem> fmItems = collector.finish();
+                e = System.currentTimeMillis();
+                Log.d(TAG, "Time to sort the remaining files: %d ms", e - s);
+                if (!postFmItems(fmItems, listOptionsVersion)) {
+                    // List options have changed while sorting
+                    filterAndSort();
+                }
+            } else {
+                // List options have changed during loading
+                filterAndSort();
+            }
             synchronized (mSizeLock) {
                 // Calculate size and send folder info again
                 folderShortInfo.size = Paths.size(path);
@@ -482,72 +512,102 @@ public class FmViewModel extends AndroidViewModel implements ListOptions.ListOpt
     }
 
     private void filterAndSort() {
-        boolean displayDotFiles = (mSelectedOptions & FmListOptions.OPTIONS_DISPLAY_DOT_FILES) != 0;
-        boolean foldersOnTop = (mSelectedOptions & FmListOptions.OPTIONS_FOLDERS_FIRST) != 0;
-
-        List<FmItem> filteredList;
+        // Read before the list options so that a list made with outdated options is never posted
+        int listOptionsVersion = mListOptionsVersion.get();
+        Predicate<FmItem> filter = getFilter();
+        List<FmItem> filteredList = new ArrayList<>();
         synchronized (mFmItems) {
-            if (!TextUtils.isEmpty(mQueryString)) {
-                filteredList = AdvancedSearchView.matches(mQueryString, mFmItems, FmItem::getName,
-                        AdvancedSearchView.SEARCH_TYPE_CONTAINS);
-            } else filteredList = new ArrayList<>(mFmItems);
+            for (FmItem fmItem : mFmItems) {
+                if (filter.test(fmItem)) {
+                    filteredList.add(fmItem);
+                }
+            }
         }
         if (ThreadUtils.isInterrupted()) {
             return;
         }
-        if (!displayDotFiles) {
-            Iterator<FmItem> iterator = filteredList.listIterator();
-            while (iterator.hasNext()) {
-                FmItem fmItem = iterator.next();
-                if (fmItem.getName().startsWith(".")) {
-                    iterator.remove();
-                }
-            }
-        }
+        Collections.sort(filteredList, getComparator());
         if (ThreadUtils.isInterrupted()) {
             return;
         }
-        // Sort by name first
-        Collections.sort(filteredList, (o1, o2) -> AlphanumComparator.compareStringIgnoreCase(o1.getName(), o2.getName()));
-        if (mSortBy == FmListOptions.SORT_BY_NAME) {
-            if (mReverseSort) {
-                Collections.reverse(filteredList);
+        postFmItems(filteredList, listOptionsVersion);
+    }
+
+    /**
+     * Post the items unless the list options have changed since they were filtered and sorted.
+     *
+     * @return {@code true} if posted
+     */
+    private boolean postFmItems(@NonNull List<FmItem> fmItems, int listOptionsVersion) {
+        synchronized (mFmItemsPostLock) {
+            if (listOptionsVersion != mListOptionsVersion.get()) {
+                return false;
             }
-        } else {
-            // Other sorting options
-            int inverse = mReverseSort ? -1 : 1;
-            Collections.sort(filteredList, (o1, o2) -> {
-                Path p1 = o1.path;
-                Path p2 = o2.path;
-                if (mSortBy == FmListOptions.SORT_BY_LAST_MODIFIED) {
-                    return -Long.compare(o1.getLastModified(), o2.getLastModified()) * inverse;
-                }
-                if (mSortBy == FmListOptions.SORT_BY_SIZE) {
-                    return -Long.compare(o1.getSize(), o2.getSize()) * inverse;
+            if (mScrollToFilename != null) {
+                for (int i = 0; i < fmItems.size(); ++i) {
+                    if (mScrollToFilename.equals(fmItems.get(i).getName())) {
+                        setScrollPosition(mCurrentUri, i);
+                        break;
+                    }
                 }
-                if (mSortBy == FmListOptions.SORT_BY_TYPE) {
-                    return p1.getType().compareToIgnoreCase(p2.getType()) * inverse;
+                mScrollToFilename = null;
+            }
+            mFmItemsLiveData.postValue(fmItems);
+            return true;
+        }
+    }
+
+    @NonNull
+    private Predicate<FmItem> getFilter() {
+        boolean displayDotFiles = (mSelectedOptions & FmListOptions.OPTIONS_DISPLAY_DOT_FILES) != 0;
+        String queryString = mQueryString;
+        boolean hasQuery = !TextUtils.isEmpty(queryString);
+        return fmItem -> {
+            if (!displayDotFiles && fmItem.getName().startsWith(".")) {
+                return false;
+            }
+            return !hasQuery || AdvancedSearchView.matches(queryString, fmItem.getName(),
+                    AdvancedSearchView.SEARCH_TYPE_CONTAINS);
+        };
+    }
+
+    /**
+     * Items are sorted by name, then by the selected sort order and then folders are moved to the top if needed.
+     */
+    @NonNull
+    private Comparator<FmItem> getComparator() {
+        boolean foldersOnTop = (mSelectedOptions & FmListOptions.OPTIONS_FOLDERS_FIRST) != 0;
+        int inverse = mReverseSort ? -1 : 1;
+        Comparator<FmItem> comparator = (o1, o2) -> AlphanumComparator.compareStringIgnoreCase(o1.getName(), o2.getName());
+        switch (mSortBy) {
+            case FmListOptions.SORT_BY_NAME:
+                if (mReverseSort) {
+                    comparator = comparator.reversed();
                 }
-                return 0;
-            });
+                break;
+            case FmListOptions.SORT_BY_LAST_MODIFIED: {
+                Comparator<FmItem> lastModifiedComparator = (o1, o2) ->
+                        -Long.compare(o1.getLastModified(), o2.getLastModified()) * inverse;
+                comparator = lastModifiedComparator.thenComparing(comparator);
+                break;
+            }
+            case FmListOptions.SORT_BY_SIZE: {
+                Comparator<FmItem> sizeComparator = (o1, o2) -> -Long.compare(o1.getSize(), o2.getSize()) * inverse;
+                comparator = sizeComparator.thenComparing(comparator);
+                break;
+            }
+            case FmListOptions.SORT_BY_TYPE: {
+                Comparator<FmItem> typeComparator = (o1, o2) -> o1.getType().compareToIgnoreCase(o2.getType()) * inverse;
+                comparator = typeComparator.thenComparing(comparator);
+                break;
+            }
         }
         if (foldersOnTop) {
             // Folders should be on top
-            Collections.sort(filteredList, (o1, o2) -> -Boolean.compare(o1.isDirectory, o2.isDirectory));
-        }
-        if (ThreadUtils.isInterrupted()) {
-            return;
-        }
-        if (mScrollToFilename != null) {
-            for (int i = 0; i < filteredList.size(); ++i) {
-                if (mScrollToFilename.equals(filteredList.get(i).getName())) {
-                    setScrollPosition(mCurrentUri, i);
-                    break;
-                }
-            }
-            mScrollToFilename = null;
+            Comparator<FmItem> folderComparator = (o1, o2) -> -Boolean.compare(o1.isDirectory, o2.isDirectory);
+            comparator = folderComparator.thenComparing(comparator);
         }
-        mFmItemsLiveData.postValue(filteredList);
+        return comparator;
     }
 
     @WorkerThread
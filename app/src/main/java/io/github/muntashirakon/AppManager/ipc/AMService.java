@@ -2,7 +2,9 @@
 
 package io.github.muntashirakon.AppManager.ipc;
 
+import android.content.ComponentName;
 import android.content.Intent;
+import android.content.pm.IPackageManager;
 import android.os.Binder;
 import android.os.IBinder;
 import android.os.Parcel;
@@ -16,12 +18,14 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import java.io.File;
+import java.util.List;
 
 import aosp.android.content.pm.ParceledListSlice;
 import io.github.muntashirakon.AppManager.IAMService;
 import io.github.muntashirakon.AppManager.IRemoteProcess;
 import io.github.muntashirakon.AppManager.IRemoteShell;
 import io.github.muntashirakon.AppManager.ipc.ps.ProcessEntry;
+import io.github.muntashirakon.AppManager.ipc.ps.ProcessSample;
 import io.github.muntashirakon.AppManager.ipc.ps.Ps;
 import io.github.muntashirakon.AppManager.server.common.IRootServiceManager;
 import io.github.muntashirakon.compat.os.ParcelCompat2;
@@ -55,6 +59,36 @@ public class AMService extends RootService {
             return new ParceledListSlice<>(ps.getProcesses());
         }
 
+        @Override
+        public ParceledListSlice<ProcessEntry> getProcesses(int[] pids) {
+            Ps ps = new Ps();
+            ps.loadProcesses(pids);
+            return new ParceledListSlice<>(ps.getProcesses());
+        }
+
+        @Override
+        public ParceledListSlice<ProcessSample> sampleProcesses() {
+            return new ParceledListSlice<>(new Ps().sampleProcesses());
+        }
+
+        /**
+         * Set the states of all the components in a single transaction when
+         * {@link android.content.pm.PackageManager#setComponentEnabledSettings(List)} isn't available. It stops at the
+         * first component that could not be set.
+         */
+        @SuppressWarnings("deprecation")
+        @Override
+        public void setComponentEnabledSettings(List<ComponentName> componentNames, int[] newStates, int flags,
+                                                int userId) throws RemoteException {
+            if (componentNames.size() != newStates.length) {
+                throw new IllegalArgumentException("Each component must have a state");
+            }
+            IPackageManager pm = IPackageManager.Stub.asInterface(ServiceManager.getService("package"));
+            for (int i = 0; i < newStates.length; ++i) {
+                pm.setComponentEnabledSetting(componentNames.get(i), newStates[i], flags, userId);
+            }
+        }
+
         @Override
         public int getUid() {
             return android.os.Process.myUid();
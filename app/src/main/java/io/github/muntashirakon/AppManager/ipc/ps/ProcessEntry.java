@@ -41,6 +41,33 @@ public class ProcessEntry implements Parcelable {
     ProcessEntry() {
     }
 
+    ProcessEntry(@NonNull ProcessEntry processEntry) {
+        pid = processEntry.pid;
+        ppid = processEntry.ppid;
+        priority = processEntry.priority;
+        niceness = processEntry.niceness;
+        instructionPointer = processEntry.instructionPointer;
+        virtualMemorySize = processEntry.virtualMemorySize;
+        residentSetSize = processEntry.residentSetSize;
+        sharedMemory = processEntry.sharedMemory;
+        processGroupId = processEntry.processGroupId;
+        majorPageFaults = processEntry.majorPageFaults;
+        minorPageFaults = processEntry.minorPageFaults;
+        realTimePriority = processEntry.realTimePriority;
+        schedulingPolicy = processEntry.schedulingPolicy;
+        cpu = processEntry.cpu;
+        threadCount = processEntry.threadCount;
+        tty = processEntry.tty;
+        seLinuxPolicy = processEntry.seLinuxPolicy;
+        name = processEntry.name;
+        users = processEntry.users;
+        cpuTimeConsumed = processEntry.cpuTimeConsumed;
+        cCpuTimeConsumed = processEntry.cCpuTimeConsumed;
+        elapsedTime = processEntry.elapsedTime;
+        processState = processEntry.processState;
+        processStatePlus = processEntry.processStatePlus;
+    }
+
     protected ProcessEntry(@NonNull Parcel in) {
         pid = in.readInt();
         ppid = in.readInt();
@@ -0,0 +1,104 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package io.github.muntashirakon.AppManager.ipc.ps;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+import androidx.annotation.NonNull;
+
+import java.util.Objects;
+
+import io.github.muntashirakon.proc.ProcStat;
+
+/**
+ * The frequently changing attributes of a process, all of which can be read from /proc/$PID/stat.
+ */
+public class ProcessSample implements Parcelable {
+    public final int pid;
+    /**
+     * Start time of the process in clock ticks since boot. Along with the PID, it identifies a process.
+     */
+    public final long startTime;
+    /**
+     * CPU time consumed in user and kernel modes in clock ticks
+     */
+    public final long cpuTime;
+    public final long residentSetSize;
+    public final long virtualMemorySize;
+    @NonNull
+    public final String processState;
+
+    ProcessSample(@NonNull ProcStat procStat) {
+        pid = procStat.getInteger(ProcStat.STAT_PID);
+        startTime = procStat.getLong(ProcStat.STAT_START_TIME);
+        cpuTime = procStat.getLong(ProcStat.STAT_UTIME) + procStat.getLong(ProcStat.STAT_STIME);
+        residentSetSize = procStat.getLong(ProcStat.STAT_RSS);
+        virtualMemorySize = procStat.getLong(ProcStat.STAT_VSIZE);
+        processState = procStat.getString(ProcStat.STAT_STATE);
+    }
+
+    protected ProcessSample(@NonNull Parcel in) {
+        pid = in.readInt();
+        startTime = in.readLong();
+        cpuTime = in.readLong();
+        residentSetSize = in.readLong();
+        virtualMemorySize = in.readLong();
+        processState = Objects.requireNonNull(in.readString());
+    }
+
+    public static final Creator<ProcessSample> CREATOR = new Creator<ProcessSample>() {
+        @Override
+        @NonNull
+        public ProcessSample createFromParcel(Parcel in) {
+            return new ProcessSample(in);
+        }
+
+        @Override
+        @NonNull
+        public ProcessSample[] newArray(int size) {
+            return new ProcessSample[size];
+        }
+    };
+
+    /**
+     * Whether the attributes, except for the CPU time, are the same as in the other sample.
+     */
+    public boolean isMemoryAndStateSame(@NonNull ProcessSample sample) {
+        return residentSetSize == sample.residentSetSize
+                && virtualMemorySize == sample.virtualMemorySize
+                && processState.equals(sample.processState);
+    }
+
+    /**
+     * Create a copy of the process entry with the attributes of this sample.
+     *
+     * @param clockTicks Clock ticks per second
+     * @param uptime     Uptime in seconds
+     */
+    @NonNull
+    public ProcessEntry updateProcessEntry(@NonNull ProcessEntry processEntry, long clockTicks, long uptime) {
+        ProcessEntry newProcessEntry = new ProcessEntry(processEntry);
+        newProcessEntry.residentSetSize = residentSetSize;
+        newProcessEntry.virtualMemorySize = virtualMemorySize;
+        newProcessEntry.cpuTimeConsumed = cpuTime / clockTicks;
+        newProcessEntry.elapsedTime = uptime - startTime / clockTicks;
+        newProcessEntry.processState = processState;
+        return newProcessEntry;
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    @Override
+    public void writeToParcel(@NonNull Parcel dest, int flags) {
+        dest.writeInt(pid);
+        dest.writeLong(startTime);
+        dest.writeLong(cpuTime);
+        dest.writeLong(residentSetSize);
+        dest.writeLong(virtualMemorySize);
+        dest.writeString(processState);
+    }
+}
@@ -58,6 +58,15 @@ public final class Ps {
     @WorkerThread
     @GuardedBy("processEntries")
     public void loadProcesses() {
+        loadProcesses(mProcFs.getPids());
+    }
+
+    /**
+     * Load only the given processes. Processes that no longer exist are skipped.
+     */
+    @WorkerThread
+    @GuardedBy("processEntries")
+    public void loadProcesses(@NonNull int[] pids) {
         synchronized (mProcessEntries) {
             mProcessEntries.clear();
             mUptime = mProcFs.getUptime() / 1000;
@@ -65,7 +74,7 @@ public final class Ps {
                 mClockTicks = CpuUtils.getClockTicksPerSecond();
             } else mClockTicks = 100; // To prevent error due to native library
             // Get process info for each PID
-            for (int pid : mProcFs.getPids()) {
+            for (int pid : pids) {
                 ProcItem procItem = new ProcItem();
                 ProcStat procStat = mProcFs.getStat(pid);
                 ProcMemStat procMemStat = mProcFs.getMemStat(pid);
@@ -93,6 +102,24 @@ public final class Ps {
         }
     }
 
+    /**
+     * Read only /proc/$PID/stat of each process, which is enough to follow the CPU and the memory usage of the
+     * processes that have already been loaded.
+     */
+    @WorkerThread
+    @NonNull
+    public ArrayList<ProcessSample> sampleProcesses() {
+        int[] pids = mProcFs.getPids();
+        ArrayList<ProcessSample> processSamples = new ArrayList<>(pids.length);
+        for (int pid : pids) {
+            ProcStat procStat = mProcFs.getStat(pid);
+            if (procStat != null) {
+                processSamples.add(new ProcessSample(procStat));
+            }
+        }
+        return processSamples;
+    }
+
     @NonNull
     private ProcessEntry newProcess(@NonNull ProcItem procItem) {
         ProcessEntry processEntry = new ProcessEntry();
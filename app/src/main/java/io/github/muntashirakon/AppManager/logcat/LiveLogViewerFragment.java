@@ -115,8 +115,10 @@ public class LiveLogViewerFragment extends AbsLogViewerFragment implements LogVi
     @Override
     public void onNewLogsAvailable(@NonNull List<LogLine> logLines) {
         mActivity.hideProgressBar();
-        for (LogLine logLine : logLines) {
-            mLogListAdapter.addWithFilter(logLine, mSearchCriteria, true);
+        for (int i = 0, size = logLines.size(); i < size; ++i) {
+            LogLine logLine = logLines.get(i);
+            // Only the last line needs to schedule an update
+            mLogListAdapter.addWithFilter(logLine, mSearchCriteria, i == size - 1);
             mActivity.addToAutocompleteSuggestions(logLine);
         }
 
@@ -124,8 +126,9 @@ public class LiveLogViewerFragment extends AbsLogViewerFragment implements LogVi
         int maxNumLogLines = Prefs.LogViewer.getDisplayLimit();
 
         // Check to see if the list needs to be truncated to avoid OutOfMemoryError
-        ++mLogCounter;
-        if (mLogCounter % UPDATE_CHECK_INTERVAL == 0 && mLogListAdapter.getRealSize() > maxNumLogLines) {
+        mLogCounter += logLines.size();
+        if (mLogCounter >= UPDATE_CHECK_INTERVAL && mLogListAdapter.getRealSize() > maxNumLogLines) {
+            mLogCounter = 0;
             int numItemsToRemove = mLogListAdapter.getRealSize() - maxNumLogLines;
             mLogListAdapter.removeFirst(numItemsToRemove);
             Log.d(TAG, "Truncating %d lines from log list to avoid out of memory errors", numItemsToRemove);
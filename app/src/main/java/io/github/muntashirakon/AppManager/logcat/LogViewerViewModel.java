@@ -6,6 +6,7 @@ import android.app.Application;
 import android.net.Uri;
 
 import androidx.annotation.AnyThread;
+import androidx.annotation.GuardedBy;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.UiThread;
@@ -23,8 +24,8 @@ import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.Objects;
 import java.util.regex.Pattern;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
@@ -37,6 +38,7 @@ import io.github.muntashirakon.AppManager.logcat.helper.SaveLogHelper;
 import io.github.muntashirakon.AppManager.logcat.reader.LogcatReader;
 import io.github.muntashirakon.AppManager.logcat.reader.LogcatReaderLoader;
 import io.github.muntashirakon.AppManager.logcat.struct.LogLine;
+import io.github.muntashirakon.AppManager.logcat.struct.LogLineBuffer;
 import io.github.muntashirakon.AppManager.logcat.struct.SavedLog;
 import io.github.muntashirakon.AppManager.logcat.struct.SendLogDetails;
 import io.github.muntashirakon.AppManager.logs.Log;
@@ -53,6 +55,8 @@ import io.github.muntashirakon.io.Paths;
 public class LogViewerViewModel extends AndroidViewModel {
     public static final String TAG = LogViewerViewModel.class.getSimpleName();
 
+    private static final long LOG_BATCH_INTERVAL_MS = 100;
+
     public interface LogLinesAvailableInterface {
         @UiThread
         void onNewLogsAvailable(@NonNull List<LogLine> logLines);
@@ -128,10 +132,11 @@ public class LogViewerViewModel extends AndroidViewModel {
             try {
                 mReader = LogcatReaderLoader.create(true).loadReader();
 
-                int maxLines = Prefs.LogViewer.getDisplayLimit();
+                int maxLines = Math.max(Prefs.LogViewer.getDisplayLimit(), 1);
 
                 String line;
-                LinkedList<LogLine> initialLines = new LinkedList<>();
+                LogLineBuffer initialLines = new LogLineBuffer(maxLines);
+                LogLinesPublisher publisher = new LogLinesPublisher(maxLines, logLinesAvailableInterface);
                 while ((line = mReader.readLine()) != null && !ThreadUtils.isInterrupted()) {
                     if (mPaused) {
                         synchronized (mLock) {
@@ -148,17 +153,13 @@ public class LogViewerViewModel extends AndroidViewModel {
                     } else if (!mReader.readyToRecord()) {
                         // "ready to record" in this case means all the initial lines have been flushed from the reader
                         initialLines.add(logLine);
-                        if (initialLines.size() > maxLines) {
-                            initialLines.removeFirst();
-                        }
                     } else if (!initialLines.isEmpty()) {
                         // flush all the initial lines we've loaded
                         initialLines.add(logLine);
-                        sendNewLogs(initialLines, logLinesAvailableInterface);
-                        initialLines.clear();
+                        sendNewLogs(initialLines.drain(), logLinesAvailableInterface);
                     } else {
-                        // just proceed as normal
-                        sendNewLogs(Collections.singletonList(logLine), logLinesAvailableInterface);
+                        // just proceed as normal, but deliver the lines in batches
+                        publisher.publish(logLine);
                     }
                 }
             } catch (Exception e) {
@@ -202,6 +203,51 @@ public class LogViewerViewModel extends AndroidViewModel {
         }
     }
 
+    /**
+     * Delivers the live log lines to the UI in batches instead of one at a time. Lines that arrive while a batch is
+     * pending are kept in a ring buffer of the display limit, as the older lines would be truncated by the UI anyway.
+     */
+    private static class LogLinesPublisher {
+        @Nullable
+        private final WeakReference<LogLinesAvailableInterface> mLogLinesAvailableInterface;
+        @GuardedBy("mPendingLines")
+        private final LogLineBuffer mPendingLines;
+        @GuardedBy("mPendingLines")
+        private boolean mDeliveryScheduled;
+
+        LogLinesPublisher(int capacity, @Nullable WeakReference<LogLinesAvailableInterface> logLinesAvailableInterface) {
+            mPendingLines = new LogLineBuffer(capacity);
+            mLogLinesAvailableInterface = logLinesAvailableInterface;
+        }
+
+        @WorkerThread
+        void publish(@NonNull LogLine logLine) {
+            if (mLogLinesAvailableInterface == null) {
+                return;
+            }
+            synchronized (mPendingLines) {
+                mPendingLines.add(logLine);
+                if (!mDeliveryScheduled) {
+                    mDeliveryScheduled = true;
+                    ThreadUtils.postOnMainThreadDelayed(this::deliver, LOG_BATCH_INTERVAL_MS);
+                }
+            }
+        }
+
+        @UiThread
+        private void deliver() {
+            List<LogLine> logLines;
+            synchronized (mPendingLines) {
+                logLines = mPendingLines.drain();
+                mDeliveryScheduled = false;
+            }
+            LogLinesAvailableInterface i = Objects.requireNonNull(mLogLinesAvailableInterface).get();
+            if (i != null && !logLines.isEmpty()) {
+                i.onNewLogsAvailable(logLines);
+            }
+        }
+    }
+
     @AnyThread
     public void pauseLogcat() {
         mExecutor.submit(() -> {
@@ -272,14 +318,20 @@ public class LogViewerViewModel extends AndroidViewModel {
             SavedLog savedLog;
             savedLog = SaveLogHelper.openLog(filename, maxLines);
             List<String> lines = savedLog.getLogLines();
-            List<LogLine> logLines = new ArrayList<>();
+            List<LogLine> logLines = new ArrayList<>(lines.size());
+            int lastProgress = -1;
             for (int lineNumber = 0, linesSize = lines.size(); lineNumber < linesSize; lineNumber++) {
                 String line = lines.get(lineNumber);
                 LogLine logLine = LogLine.newLogLine(line, !mCollapsedMode, mFilterPattern);
                 if (logLine != null) {
                     logLines.add(logLine);
                 }
-                mLoadingProgressLiveData.postValue(lineNumber * 100 / linesSize);
+                int progress = lineNumber * 100 / linesSize;
+                if (progress != lastProgress) {
+                    // Post only when changed
+                    mLoadingProgressLiveData.postValue(progress);
+                    lastProgress = progress;
+                }
             }
             sendNewLogs(logLines, logLinesAvailableInterface);
             if (savedLog.isTruncated()) {
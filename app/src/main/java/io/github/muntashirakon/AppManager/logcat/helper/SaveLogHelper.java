@@ -9,6 +9,7 @@ import android.text.TextUtils;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
 
 import org.jetbrains.annotations.Contract;
 
@@ -17,6 +18,9 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.text.DateFormat;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
@@ -34,6 +38,7 @@ import io.github.muntashirakon.AppManager.logs.Log;
 import io.github.muntashirakon.AppManager.self.filecache.FileCache;
 import io.github.muntashirakon.AppManager.settings.Prefs;
 import io.github.muntashirakon.AppManager.utils.UIUtils;
+import io.github.muntashirakon.io.FileSystemManager;
 import io.github.muntashirakon.io.Path;
 import io.github.muntashirakon.io.Paths;
 
@@ -46,6 +51,7 @@ public class SaveLogHelper {
     public static final String DMESG_FILENAME = "dmesg.txt";
     public static final String SAVED_LOGS_DIR = "saved_logs";
     private static final int BUFFER = 0x1000; // 4K
+    private static final int BACKWARD_SCAN_BUFFER = 0x10000; // 64K
 
     @Nullable
     public static Path saveTemporaryFile(String extension, CharSequence text, Collection<String> lines) {
@@ -108,6 +114,22 @@ public class SaveLogHelper {
     @NonNull
     public static SavedLog openLog(@NonNull Uri fileUri, int maxLines) {
         Path logFile = Paths.get(fileUri);
+        // Only the last lines are needed: locate them from the end of the file instead of reading the whole file
+        try (FileChannel channel = logFile.openFileChannel(FileSystemManager.MODE_READ_ONLY)) {
+            long start = findStartOfLastLines(channel, maxLines);
+            channel.position(start);
+            List<String> logLines = new ArrayList<>();
+            try (BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(
+                    Channels.newInputStream(channel)), BUFFER)) {
+                String line;
+                while ((line = bufferedReader.readLine()) != null) {
+                    logLines.add(line);
+                }
+            }
+            return new SavedLog(logLines, start > 0);
+        } catch (IOException | UnsupportedOperationException e) {
+            Log.w(TAG, "Could not open %s for random access, reading sequentially.", e, logFile);
+        }
         LinkedList<String> logLines = new LinkedList<>();
         boolean truncated = false;
         try (BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(logFile.openInputStream()), BUFFER)) {
@@ -124,6 +146,49 @@ public class SaveLogHelper {
         return new SavedLog(logLines, truncated);
     }
 
+    /**
+     * Find the offset of the first of the last {@code maxLines} lines by scanning the file backwards.
+     *
+     * @return The offset, or {@code 0} if the file does not have more than {@code maxLines} lines
+     */
+    @VisibleForTesting
+    static long findStartOfLastLines(@NonNull FileChannel channel, int maxLines) throws IOException {
+        long end = channel.size();
+        if (end == 0 || maxLines <= 0) {
+            return end;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(BACKWARD_SCAN_BUFFER);
+        int newLines = 0;
+        // The final line terminator does not begin a new line
+        boolean skipLast = true;
+        while (end > 0) {
+            int count = (int) Math.min(buffer.capacity(), end);
+            long position = end - count;
+            buffer.clear().limit(count);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    throw new IOException("Unexpected end of file");
+                }
+            }
+            byte[] bytes = buffer.array();
+            for (int i = count - 1; i >= 0; --i) {
+                if (bytes[i] != '\n') {
+                    skipLast = false;
+                    continue;
+                }
+                if (skipLast) {
+                    skipLast = false;
+                    continue;
+                }
+                if (++newLines == maxLines) {
+                    return position + i + 1;
+                }
+            }
+            end = position;
+        }
+        return 0;
+    }
+
     public static synchronized boolean saveLog(CharSequence logString, String filename) {
         try {
             saveLog(null, logString, filename);
@@ -11,7 +11,6 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import java.util.Objects;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import io.github.muntashirakon.AppManager.compat.PackageManagerCompat;
@@ -27,68 +26,58 @@ public class LogLine {
 
     public static final int LOG_FATAL = 15;
 
-    /**
-     * %s %5d %5d %c %-8s:
-     * %s %s%5d %5d %c %-8s: (Android 7+)
-     *
-     * @see LogcatHelper#getLogcatArgs(int, boolean)
-     */
-    private static final Pattern LOG_PATTERN = Pattern.compile(
-            // Timestamp
-            "(\\d{2}-\\d{2}\\s\\d{2}:\\d{2}:\\d{2}\\.\\d{3})\\s+" +
-                    // UID PID
-                    "(.+\\d+)\\s+" +
-                    // TID
-                    "(\\d+)\\s+" +
-                    // Log level
-                    "([ADEIVWF])\\s+" +
-                    // Tag
-                    "(.+?)" +
-                    // Message
-                    ": (.*)");
-    /**
-     * This is the old pattern used prior to v4.0.0. Format: {timestamp} {level}/{tag}(\s{pid}): message
-     */
-    private static final Pattern LOG_PATTERN_LEGACY = Pattern.compile(
-            // Timestamp
-            "(\\d{2}-\\d{2}\\s\\d{2}:\\d{2}:\\d{2}\\.\\d{3})\\s+" +
-                    // Log level
-                    "([ADEIVWF])/" +
-                    // Tag
-                    "([^(].+)" +
-                    // PID with optional * prefixed number seen on ZTE blade (Android 4.4)
-                    "\\(\\s*(\\d+)(?:\\*\\s*\\d+)?\\)" +
-                    // Message
-                    ": (.*)");
+    private static final ThreadLocal<LogLineParser> sParser = new ThreadLocal<LogLineParser>() {
+        @Override
+        protected LogLineParser initialValue() {
+            return new LogLineParser();
+        }
+    };
     private static final String BEGIN = "--------- beginning of ";
 
     public static boolean omitSensitiveInfo = false;
 
+    /**
+     * Parse a line of logcat output in the threadtime (with optional UID) or the legacy format.
+     *
+     * @param filterPattern Tags to be excluded. Excluded lines are discarded before creating any {@link LogLine}.
+     * @return {@code null} if the line is excluded or denotes the beginning of a buffer
+     * @see LogcatHelper#getLogcatArgs(int, boolean)
+     */
     @Nullable
     public static LogLine newLogLine(@NonNull String originalLine, boolean expanded, @Nullable Pattern filterPattern) {
-        LogLine logLine = new LogLine(originalLine);
-        logLine.setExpanded(expanded);
-
-        if (matchPattern(originalLine, logLine)) {
-            if (filterPattern != null && filterPattern.matcher(logLine.getTagName()).matches()) {
+        LogLineParser parser = Objects.requireNonNull(sParser.get());
+        if (parser.parse(originalLine)) {
+            String tag = parser.getTag();
+            if (filterPattern != null && filterPattern.matcher(tag).matches()) {
                 return null;
             }
-            return logLine;
-        }
-        if (matchPatternLegacy(originalLine, logLine)) {
-            if (filterPattern != null && filterPattern.matcher(logLine.getTagName()).matches()) {
-                return null;
+            LogLine logLine = new LogLine(originalLine);
+            logLine.setExpanded(expanded);
+            logLine.setTimestamp(parser.getTimestamp());
+            String owner = parser.getUidOwner();
+            if (owner != null) {
+                int uid = Owners.parseUid(owner);
+                logLine.setUidOwner(owner);
+                logLine.setUid(uid);
+                // Set package name
+                logLine.setPackageName(retrievePackageName(uid));
             }
+            logLine.setPid(parser.getPid());
+            logLine.setTid(parser.getTid());
+            logLine.setLogLevel(convertCharToLogLevel(parser.getLevel()));
+            logLine.setTag(tag);
+            logLine.setLogOutput(parser.getMessage());
             return logLine;
         }
         if (originalLine.startsWith(BEGIN)) {
             Log.d(TAG, "Started buffer: " + originalLine.substring(BEGIN.length()));
             return null;
-        } else {
-            Log.w(TAG, "Line doesn't match pattern: " + originalLine);
-            logLine.setLogOutput(originalLine);
-            logLine.setLogLevel(-1);
         }
+        Log.w(TAG, "Line doesn't match pattern: " + originalLine);
+        LogLine logLine = new LogLine(originalLine);
+        logLine.setExpanded(expanded);
+        logLine.setLogOutput(originalLine);
+        logLine.setLogLevel(-1);
         return logLine;
     }
 
@@ -268,53 +257,6 @@ public class LogLine {
         return mOriginalLine;
     }
 
-    private static boolean matchPatternLegacy(@NonNull String originalLine, @NonNull LogLine logLine) {
-        Matcher matcher = LOG_PATTERN_LEGACY.matcher(originalLine);
-        if (!matcher.matches()) {
-            return false;
-        }
-        // Group 1: Timestamp
-        logLine.setTimestamp(Objects.requireNonNull(matcher.group(1)));
-        // Group 2: Log level
-        logLine.setLogLevel(convertCharToLogLevel(Objects.requireNonNull(matcher.group(2)).charAt(0)));
-        // Group 3: Tag
-        logLine.setTag(Objects.requireNonNull(matcher.group(3)).trim());
-        // Group 4: PID
-        logLine.setPid(Integer.parseInt(matcher.group(4)));
-        // Group 5: Message
-        logLine.setLogOutput(Objects.requireNonNull(matcher.group(5)));
-        return true;
-    }
-
-    private static boolean matchPattern(@NonNull String originalLine, @NonNull LogLine logLine) {
-        Matcher matcher = LOG_PATTERN.matcher(originalLine);
-        if (!matcher.matches()) {
-            return false;
-        }
-        // Group 1: Timestamp
-        logLine.setTimestamp(Objects.requireNonNull(matcher.group(1)));
-        // Group 2: UID PID
-        String[] uidPid = Objects.requireNonNull(matcher.group(2)).split("\\s+", 2);
-        if (uidPid.length == 2) {
-            String owner = uidPid[0];
-            int uid = Owners.parseUid(owner);
-            logLine.setUidOwner(owner);
-            logLine.setUid(uid);
-            // Set package name
-            logLine.setPackageName(retrievePackageName(uid));
-        }
-        logLine.setPid(Integer.parseInt(uidPid[uidPid.length == 2 ? 1 : 0]));
-        // Group 3: TID
-        logLine.setTid(Integer.parseInt(matcher.group(3)));
-        // Group 4: Log level
-        logLine.setLogLevel(convertCharToLogLevel(Objects.requireNonNull(matcher.group(4)).charAt(0)));
-        // Group 5: Tag
-        logLine.setTag(Objects.requireNonNull(matcher.group(5)).trim());
-        // Group 6: Message
-        logLine.setLogOutput(Objects.requireNonNull(matcher.group(6)));
-        return true;
-    }
-
     private static final LruCache<Integer, String> sUidPackageNameCache = new LruCache<>(300);
 
     @Nullable
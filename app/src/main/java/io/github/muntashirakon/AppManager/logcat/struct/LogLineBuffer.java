@@ -0,0 +1,77 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package io.github.muntashirakon.AppManager.logcat.struct;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A fixed-capacity ring buffer of log lines. Once full, adding a line overwrites the oldest one. This is not
+ * thread-safe.
+ */
+public class LogLineBuffer {
+    @NonNull
+    private final LogLine[] mLines;
+    // Index of the oldest line
+    private int mHead;
+    private int mSize;
+
+    public LogLineBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Invalid capacity " + capacity);
+        }
+        mLines = new LogLine[capacity];
+    }
+
+    public int getCapacity() {
+        return mLines.length;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    /**
+     * Add a line to the end of the buffer.
+     *
+     * @return {@code true} if the oldest line had to be dropped to make room for the new line
+     */
+    public boolean add(@NonNull LogLine logLine) {
+        if (mSize < mLines.length) {
+            mLines[(mHead + mSize) % mLines.length] = logLine;
+            ++mSize;
+            return false;
+        }
+        mLines[mHead] = logLine;
+        mHead = (mHead + 1) % mLines.length;
+        return true;
+    }
+
+    /**
+     * Remove all the lines from the buffer.
+     *
+     * @return The removed lines, oldest first
+     */
+    @NonNull
+    public List<LogLine> drain() {
+        List<LogLine> lines = new ArrayList<>(mSize);
+        for (int i = 0; i < mSize; ++i) {
+            lines.add(mLines[(mHead + i) % mLines.length]);
+        }
+        clear();
+        return lines;
+    }
+
+    public void clear() {
+        Arrays.fill(mLines, null);
+        mHead = 0;
+        mSize = 0;
+    }
+}
@@ -0,0 +1,278 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package io.github.muntashirakon.AppManager.logcat.struct;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * A single-pass parser for logcat lines. It records the positions of the fields instead of creating intermediate
+ * strings, so that a line can be discarded (e.g. by its tag) before a {@link LogLine} is built. An instance can be
+ * reused for any number of lines but is not thread-safe.
+ * <p>
+ * Supported formats (equivalent to the regular expressions used previously):
+ * <ul>
+ *     <li>{@code threadtime} with optional UID: {@code {timestamp} [{uid}] {pid} {tid} {level} {tag}: {message}}
+ *     <li>Legacy (prior to v4.0.0): {@code {timestamp} {level}/{tag}({pid}[*{n}]): {message}}
+ * </ul>
+ */
+final class LogLineParser {
+    // MM-DD HH:MM:SS.mmm
+    private static final int TIMESTAMP_LENGTH = 18;
+
+    // Positions of the tokens preceding the tag in the threadtime format
+    private final int[] mTokenStarts = new int[4];
+    private final int[] mTokenEnds = new int[4];
+
+    private String mLine;
+    private boolean mLegacy;
+    private int mUidStart;
+    private int mUidEnd;
+    private int mPid;
+    private int mTid;
+    private char mLevel;
+    private int mTagStart;
+    private int mTagEnd;
+    private int mMessageStart;
+
+    /**
+     * Parse a line in any of the supported formats.
+     *
+     * @return {@code true} if the line could be parsed, in which case the fields can be retrieved using the getters.
+     */
+    public boolean parse(@NonNull String line) {
+        mLine = line;
+        mUidStart = mUidEnd = -1;
+        mPid = mTid = -1;
+        if (!isTimestamp(line)) {
+            return false;
+        }
+        int pos = skipWhitespaces(line, TIMESTAMP_LENGTH);
+        if (pos == TIMESTAMP_LENGTH) {
+            // At least one whitespace is required
+            return false;
+        }
+        mLegacy = false;
+        if (parseThreadTime(line, pos)) {
+            return true;
+        }
+        mUidStart = mUidEnd = -1;
+        mPid = mTid = -1;
+        mLegacy = true;
+        return parseLegacy(line, pos);
+    }
+
+    public boolean isLegacy() {
+        return mLegacy;
+    }
+
+    @NonNull
+    public String getTimestamp() {
+        return mLine.substring(0, TIMESTAMP_LENGTH);
+    }
+
+    @Nullable
+    public String getUidOwner() {
+        return mUidStart >= 0 ? mLine.substring(mUidStart, mUidEnd) : null;
+    }
+
+    public int getPid() {
+        return mPid;
+    }
+
+    public int getTid() {
+        return mTid;
+    }
+
+    public char getLevel() {
+        return mLevel;
+    }
+
+    @NonNull
+    public String getTag() {
+        return mLine.substring(mTagStart, mTagEnd).trim();
+    }
+
+    @NonNull
+    public String getMessage() {
+        return mLine.substring(mMessageStart);
+    }
+
+    private boolean parseThreadTime(@NonNull String line, int pos) {
+        int length = line.length();
+        // Up to four tokens precede the tag: [uid] pid tid level
+        int tokenCount = 0;
+        int levelIndex = -1;
+        while (tokenCount < mTokenStarts.length && pos < length) {
+            int end = pos;
+            while (end < length && !isWhitespace(line.charAt(end))) {
+                ++end;
+            }
+            mTokenStarts[tokenCount] = pos;
+            mTokenEnds[tokenCount] = end;
+            ++tokenCount;
+            if (tokenCount >= 3 && end - pos == 1 && isLevel(line.charAt(pos))
+                    && isDigits(line, mTokenStarts[tokenCount - 3], mTokenEnds[tokenCount - 3])
+                    && isDigits(line, mTokenStarts[tokenCount - 2], mTokenEnds[tokenCount - 2])) {
+                levelIndex = tokenCount - 1;
+                break;
+            }
+            pos = skipWhitespaces(line, end);
+        }
+        if (levelIndex < 0) {
+            return false;
+        }
+        int pidIndex = levelIndex - 2;
+        if (pidIndex == 1) {
+            // UID is the first token
+            mUidStart = mTokenStarts[0];
+            mUidEnd = mTokenEnds[0];
+        }
+        mPid = parseInt(line, mTokenStarts[pidIndex], mTokenEnds[pidIndex]);
+        mTid = parseInt(line, mTokenStarts[pidIndex + 1], mTokenEnds[pidIndex + 1]);
+        int levelPos = mTokenStarts[levelIndex];
+        mLevel = line.charAt(levelPos);
+        // At least a whitespace after the level followed by a tag of at least one character
+        if (levelPos + 1 >= length || !isWhitespace(line.charAt(levelPos + 1))) {
+            return false;
+        }
+        int separator = line.indexOf(": ", levelPos + 3);
+        if (separator < 0) {
+            return false;
+        }
+        mTagStart = levelPos + 2;
+        mTagEnd = separator;
+        mMessageStart = separator + 2;
+        return true;
+    }
+
+    private boolean parseLegacy(@NonNull String line, int pos) {
+        int length = line.length();
+        // {level}/
+        if (pos + 1 >= length || !isLevel(line.charAt(pos)) || line.charAt(pos + 1) != '/') {
+            return false;
+        }
+        mLevel = line.charAt(pos);
+        int tagStart = pos + 2;
+        // Tag must have at least two characters and cannot start with a parenthesis
+        if (tagStart >= length || line.charAt(tagStart) == '(') {
+            return false;
+        }
+        // The tag is greedy, i.e. the last matching PID is used
+        int open = line.lastIndexOf('(');
+        while (open >= tagStart + 2) {
+            int messageStart = matchLegacyPid(line, open);
+            if (messageStart >= 0) {
+                mTagStart = tagStart;
+                mTagEnd = open;
+                mMessageStart = messageStart;
+                return true;
+            }
+            open = line.lastIndexOf('(', open - 1);
+        }
+        return false;
+    }
+
+    /**
+     * Match {@code (\s*\d+(?:\*\s*\d+)?): } at the given position.
+     *
+     * @return Start of the message if matched, {@code -1} otherwise
+     */
+    private int matchLegacyPid(@NonNull String line, int open) {
+        int length = line.length();
+        int pos = skipWhitespaces(line, open + 1);
+        int pidStart = pos;
+        pos = skipDigits(line, pos);
+        if (pos == pidStart) {
+            return -1;
+        }
+        int pidEnd = pos;
+        if (pos < length && line.charAt(pos) == '*') {
+            // Optional number seen on ZTE blade (Android 4.4)
+            int numStart = skipWhitespaces(line, pos + 1);
+            int numEnd = skipDigits(line, numStart);
+            if (numEnd == numStart) {
+                return -1;
+            }
+            pos = numEnd;
+        }
+        if (!line.startsWith("): ", pos)) {
+            return -1;
+        }
+        mPid = parseInt(line, pidStart, pidEnd);
+        return pos + 3;
+    }
+
+    private static boolean isTimestamp(@NonNull String line) {
+        if (line.length() < TIMESTAMP_LENGTH) {
+            return false;
+        }
+        // MM-DD HH:MM:SS.mmm
+        return isDigits(line, 0, 2) && line.charAt(2) == '-' && isDigits(line, 3, 5)
+                && isWhitespace(line.charAt(5))
+                && isDigits(line, 6, 8) && line.charAt(8) == ':' && isDigits(line, 9, 11)
+                && line.charAt(11) == ':' && isDigits(line, 12, 14) && line.charAt(14) == '.'
+                && isDigits(line, 15, 18);
+    }
+
+    private static boolean isLevel(char c) {
+        switch (c) {
+            case 'A':
+            case 'D':
+            case 'E':
+            case 'I':
+            case 'V':
+            case 'W':
+            case 'F':
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    // Same as \s in java.util.regex
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
+    }
+
+    // Same as \d in java.util.regex
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isDigits(@NonNull String line, int start, int end) {
+        if (start >= end) {
+            return false;
+        }
+        for (int i = start; i < end; ++i) {
+            if (!isDigit(line.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int skipWhitespaces(@NonNull String line, int pos) {
+        int length = line.length();
+        while (pos < length && isWhitespace(line.charAt(pos))) {
+            ++pos;
+        }
+        return pos;
+    }
+
+    private static int skipDigits(@NonNull String line, int pos) {
+        int length = line.length();
+        while (pos < length && isDigit(line.charAt(pos))) {
+            ++pos;
+        }
+        return pos;
+    }
+
+    private static int parseInt(@NonNull String line, int start, int end) {
+        int value = 0;
+        for (int i = start; i < end; ++i) {
+            value = value * 10 + (line.charAt(i) - '0');
+        }
+        return value;
+    }
+}
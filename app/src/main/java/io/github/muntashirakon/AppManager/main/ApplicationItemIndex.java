@@ -0,0 +1,92 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package io.github.muntashirakon.AppManager.main;
+
+import androidx.annotation.NonNull;
+
+import java.text.CollationKey;
+import java.text.Collator;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Locale;
+
+import io.github.muntashirakon.AppManager.misc.AdvancedSearchView;
+import io.github.muntashirakon.AppManager.utils.Utils;
+
+/**
+ * Search and sort keys of the {@link ApplicationItem}s, computed once per item instead of once per comparison or
+ * per keystroke. Items are looked up by identity because an altered app always gets a new item, which must not reuse
+ * the keys of the old one. This class is not thread-safe.
+ */
+final class ApplicationItemIndex {
+    private static class Keys {
+        @NonNull
+        public final String packageName;
+        @NonNull
+        public final String label;
+        @NonNull
+        public final String labelInitials;
+        @NonNull
+        public final CollationKey labelCollationKey;
+
+        Keys(@NonNull ApplicationItem item, @NonNull Collator collator) {
+            packageName = item.packageName.toLowerCase(Locale.ROOT);
+            label = item.label.toLowerCase(Locale.ROOT);
+            labelInitials = Utils.getFirstLettersInLowerCase(Utils.camelCaseToSpaceSeparatedString(item.label));
+            labelCollationKey = collator.getCollationKey(item.label);
+        }
+    }
+
+    private final Collator mCollator = Collator.getInstance();
+    @NonNull
+    private IdentityHashMap<ApplicationItem, Keys> mKeys = new IdentityHashMap<>();
+
+    /**
+     * Drop the keys of the items that are no longer in the list.
+     */
+    public void retainAll(@NonNull Collection<ApplicationItem> items) {
+        IdentityHashMap<ApplicationItem, Keys> keys = new IdentityHashMap<>(items.size());
+        for (ApplicationItem item : items) {
+            Keys itemKeys = mKeys.get(item);
+            if (itemKeys != null) {
+                keys.put(item, itemKeys);
+            }
+        }
+        mKeys = keys;
+    }
+
+    @NonNull
+    public CollationKey getLabelCollationKey(@NonNull ApplicationItem item) {
+        return getKeys(item).labelCollationKey;
+    }
+
+    /**
+     * Same as matching the lower-case package name and label of the item using
+     * {@link AdvancedSearchView#matches(String, String, int)}, except that {@link AdvancedSearchView#SEARCH_TYPE_CONTAINS}
+     * also matches the initials of the label.
+     *
+     * @param query Lower-case query
+     * @param type  Any search type but {@link AdvancedSearchView#SEARCH_TYPE_REGEX}
+     */
+    public boolean matches(@NonNull ApplicationItem item, @NonNull String query, @AdvancedSearchView.SearchType int type) {
+        Keys keys = getKeys(item);
+        if (AdvancedSearchView.matches(query, keys.packageName, type)) {
+            return true;
+        }
+        if (type == AdvancedSearchView.SEARCH_TYPE_CONTAINS) {
+            // Same as Utils#containsOrHasInitials
+            return keys.label.contains(query) || keys.labelInitials.contains(query);
+        }
+        return AdvancedSearchView.matches(query, keys.label, type);
+    }
+
+    @NonNull
+    private Keys getKeys(@NonNull ApplicationItem item) {
+        Keys keys = mKeys.get(item);
+        if (keys == null) {
+            keys = new Keys(item, mCollator);
+            mKeys.put(item, keys);
+        }
+        return keys;
+    }
+}
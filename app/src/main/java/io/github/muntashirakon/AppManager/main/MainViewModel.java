@@ -28,7 +28,6 @@ import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.nio.charset.StandardCharsets;
-import java.text.Collator;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -76,7 +75,6 @@ import io.github.muntashirakon.AppManager.utils.ExUtils;
 import io.github.muntashirakon.AppManager.utils.MultithreadedExecutor;
 import io.github.muntashirakon.AppManager.utils.PackageUtils;
 import io.github.muntashirakon.AppManager.utils.ThreadUtils;
-import io.github.muntashirakon.AppManager.utils.Utils;
 import io.github.muntashirakon.io.Path;
 
 public class MainViewModel extends AndroidViewModel implements ListOptions.ListOptionActions {
@@ -115,6 +113,8 @@ public class MainViewModel extends AndroidViewModel implements ListOptions.ListO
     @NonNull
     private final MutableLiveData<List<ApplicationItem>> mApplicationItemsLiveData = new MutableLiveData<>();
     private final List<ApplicationItem> mApplicationItems = new ArrayList<>();
+    @GuardedBy("mApplicationItems")
+    private final ApplicationItemIndex mApplicationItemIndex = new ApplicationItemIndex();
 
     public int getApplicationItemCount() {
         return mApplicationItems.size();
@@ -398,13 +398,7 @@ public class MainViewModel extends AndroidViewModel implements ListOptions.ListO
             if (ThreadUtils.isInterrupted()) {
                 return;
             }
-            if (AdvancedSearchView.matches(mSearchQuery, item.packageName.toLowerCase(Locale.ROOT), mSearchType)) {
-                filteredApplicationItems.add(item);
-            } else if (mSearchType == AdvancedSearchView.SEARCH_TYPE_CONTAINS) {
-                if (Utils.containsOrHasInitials(mSearchQuery, item.label)) {
-                    filteredApplicationItems.add(item);
-                }
-            } else if (AdvancedSearchView.matches(mSearchQuery, item.label.toLowerCase(Locale.ROOT), mSearchType)) {
+            if (mApplicationItemIndex.matches(item, mSearchQuery, mSearchType)) {
                 filteredApplicationItems.add(item);
             }
         }
@@ -539,13 +533,16 @@ public class MainViewModel extends AndroidViewModel implements ListOptions.ListO
         synchronized (mApplicationItems) {
             if (sortBy != MainListOptions.SORT_BY_APP_LABEL) {
                 sortApplicationList(MainListOptions.SORT_BY_APP_LABEL, false);
+            } else {
+                // Keys of the removed or altered apps are no longer needed
+                mApplicationItemIndex.retainAll(mApplicationItems);
             }
             int mode = reverse ? -1 : 1;
-            Collator collator = Collator.getInstance();
             Collections.sort(mApplicationItems, (o1, o2) -> {
                 switch (sortBy) {
                     case MainListOptions.SORT_BY_APP_LABEL:
-                        return mode * collator.compare(o1.label, o2.label);
+                        return mode * mApplicationItemIndex.getLabelCollationKey(o1)
+                                .compareTo(mApplicationItemIndex.getLabelCollationKey(o2));
                     case MainListOptions.SORT_BY_PACKAGE_NAME:
                         return mode * o1.packageName.compareTo(o2.packageName);
                     case MainListOptions.SORT_BY_DOMAIN:
@@ -86,6 +86,8 @@ public class OneClickOpsActivity extends BaseActivity {
         wakeLock = CpuUtils.getPartialWakeLock("1-click_ops");
         setItems();
         // Watch LiveData
+        mViewModel.watchCensusProgress().observe(this, percentage ->
+                progressIndicator.setProgressCompat(percentage, true));
         mViewModel.watchTrackerCount().observe(this, this::blockTrackers);
         mViewModel.watchComponentCount().observe(this, listPair ->
                 blockComponents(listPair.first, listPair.second));
@@ -224,6 +226,7 @@ public class OneClickOpsActivity extends BaseActivity {
     private void blockTrackers(@Nullable List<ItemCount> trackerCounts) {
         CpuUtils.releaseWakeLock(wakeLock);
         progressIndicator.hide();
+        progressIndicator.setIndeterminate(true);
         if (trackerCounts == null) {
             UIUtils.displayShortToast(R.string.failed_to_fetch_package_info);
             return;
@@ -262,6 +265,7 @@ public class OneClickOpsActivity extends BaseActivity {
     private void blockComponents(@Nullable List<ItemCount> componentCounts, @NonNull String[] signatures) {
         CpuUtils.releaseWakeLock(wakeLock);
         progressIndicator.hide();
+        progressIndicator.setIndeterminate(true);
         if (componentCounts == null) {
             UIUtils.displayShortToast(R.string.failed_to_fetch_package_info);
             return;
@@ -346,6 +350,7 @@ public class OneClickOpsActivity extends BaseActivity {
     private void setAppOps(@Nullable List<AppOpCount> appOpCounts, @NonNull int[] appOpList, int mode) {
         CpuUtils.releaseWakeLock(wakeLock);
         progressIndicator.hide();
+        progressIndicator.setIndeterminate(true);
         if (appOpCounts == null) {
             UIUtils.displayShortToast(R.string.failed_to_fetch_package_info);
             return;
@@ -29,6 +29,7 @@ import java.util.List;
 import java.util.concurrent.Future;
 
 import io.github.muntashirakon.AppManager.BuildConfig;
+import io.github.muntashirakon.AppManager.StaticDataset;
 import io.github.muntashirakon.AppManager.compat.ApplicationInfoCompat;
 import io.github.muntashirakon.AppManager.compat.ManifestCompat;
 import io.github.muntashirakon.AppManager.compat.PackageManagerCompat;
@@ -39,11 +40,13 @@ import io.github.muntashirakon.AppManager.settings.Ops;
 import io.github.muntashirakon.AppManager.users.Users;
 import io.github.muntashirakon.AppManager.utils.PackageUtils;
 import io.github.muntashirakon.AppManager.utils.ThreadUtils;
+import io.github.muntashirakon.algo.AhoCorasick;
 
 public class OneClickOpsViewModel extends AndroidViewModel {
     public static final String TAG = OneClickOpsViewModel.class.getSimpleName();
 
     private final PackageManager mPm;
+    private final MutableLiveData<Integer> mCensusProgress = new MutableLiveData<>();
     private final MutableLiveData<List<ItemCount>> mTrackerCount = new MutableLiveData<>();
     private final MutableLiveData<Pair<List<ItemCount>, String[]>> mComponentCount = new MutableLiveData<>();
     private final MutableLiveData<Pair<List<AppOpCount>, Pair<int[], Integer>>> mAppOpsCount = new MutableLiveData<>();
@@ -67,6 +70,10 @@ public class OneClickOpsViewModel extends AndroidViewModel {
         super.onCleared();
     }
 
+    public LiveData<Integer> watchCensusProgress() {
+        return mCensusProgress;
+    }
+
     public LiveData<List<ItemCount>> watchTrackerCount() {
         return mTrackerCount;
     }
@@ -121,26 +128,19 @@ public class OneClickOpsViewModel extends AndroidViewModel {
             boolean crossUserPermission = SelfPermissions.checkSelfOrRemotePermission(ManifestCompat.permission.INTERACT_ACROSS_USERS)
                     || SelfPermissions.checkSelfOrRemotePermission(ManifestCompat.permission.INTERACT_ACROSS_USERS_FULL);
             boolean isShell = Build.VERSION.SDK_INT >= Build.VERSION_CODES.O && Users.getSelfOrRemoteUid() == Ops.SHELL_UID;
-            List<ItemCount> trackerCounts = new ArrayList<>();
-            HashSet<String> packageNames = new HashSet<>();
-            for (PackageInfo packageInfo : PackageUtils.getAllPackages(flags, !crossUserPermission)) {
-                if (packageNames.contains(packageInfo.packageName)) {
-                    continue;
-                }
-                packageNames.add(packageInfo.packageName);
-                if (ThreadUtils.isInterrupted()) return;
-                ApplicationInfo applicationInfo = packageInfo.applicationInfo;
-                if (isShell && !ApplicationInfoCompat.isTestOnly(applicationInfo)) {
-                    continue;
-                }
-                if (!systemApps && ApplicationInfoCompat.isSystemApp(applicationInfo)) {
-                    continue;
-                }
-                ItemCount trackerCount = getTrackerCountForApp(packageInfo);
-                if (trackerCount.count > 0) {
-                    trackerCounts.add(trackerCount);
-                }
-            }
+            AhoCorasick trackerSignatures = StaticDataset.getSearchableTrackerSignatures();
+            List<ItemCount> trackerCounts = PackageCensus.count(PackageUtils.getAllPackages(flags, !crossUserPermission),
+                    applicationInfo -> isIncluded(applicationInfo, systemApps, isShell),
+                    packageInfo -> {
+                        ItemCount trackerCount = new ItemCount();
+                        trackerCount.packageName = packageInfo.packageName;
+                        trackerCount.count = PackageCensus.getTrackerCount(packageInfo, trackerSignatures);
+                        if (trackerCount.count > 0) {
+                            trackerCount.packageLabel = PackageCensus.getLabel(packageInfo, mPm);
+                        }
+                        return trackerCount;
+                    }, mCensusProgress::postValue);
+            if (trackerCounts == null) return;
             mTrackerCount.postValue(trackerCounts);
         });
     }
@@ -173,26 +173,24 @@ public class OneClickOpsViewModel extends AndroidViewModel {
             boolean crossUserPermission = SelfPermissions.checkSelfOrRemotePermission(ManifestCompat.permission.INTERACT_ACROSS_USERS)
                     || SelfPermissions.checkSelfOrRemotePermission(ManifestCompat.permission.INTERACT_ACROSS_USERS_FULL);
             boolean isShell = Build.VERSION.SDK_INT >= Build.VERSION_CODES.O && Users.getSelfOrRemoteUid() == Ops.SHELL_UID;
-            List<ItemCount> componentCounts = new ArrayList<>();
-            HashSet<String> packageNames = new HashSet<>();
-            for (ApplicationInfo applicationInfo : PackageUtils.getAllApplications(MATCH_UNINSTALLED_PACKAGES
-                    | PackageManagerCompat.MATCH_STATIC_SHARED_AND_SDK_LIBRARIES, !crossUserPermission)) {
-                if (packageNames.contains(applicationInfo.packageName)) {
-                    continue;
-                }
-                packageNames.add(applicationInfo.packageName);
-                if (ThreadUtils.isInterrupted()) return;
-                if (isShell && !ApplicationInfoCompat.isTestOnly(applicationInfo))
-                    continue;
-                if (!systemApps && (applicationInfo.flags & ApplicationInfo.FLAG_SYSTEM) != 0)
-                    continue;
-                ItemCount componentCount = new ItemCount();
-                componentCount.packageName = applicationInfo.packageName;
-                componentCount.packageLabel = applicationInfo.loadLabel(mPm).toString();
-                componentCount.count = PackageUtils.getFilteredComponents(applicationInfo.packageName,
-                        UserHandleHidden.myUserId(), signatures).size();
-                if (componentCount.count > 0) componentCounts.add(componentCount);
+            int flags = PackageManager.GET_ACTIVITIES | PackageManager.GET_RECEIVERS | PackageManager.GET_PROVIDERS
+                    | PackageManager.GET_SERVICES | MATCH_DISABLED_COMPONENTS | MATCH_UNINSTALLED_PACKAGES
+                    | PackageManagerCompat.MATCH_STATIC_SHARED_AND_SDK_LIBRARIES;
+            List<ItemCount> componentCounts;
+            try (AhoCorasick searchableSignatures = new AhoCorasick(signatures)) {
+                componentCounts = PackageCensus.count(PackageUtils.getAllPackages(flags, !crossUserPermission),
+                        applicationInfo -> isIncluded(applicationInfo, systemApps, isShell),
+                        packageInfo -> {
+                            ItemCount componentCount = new ItemCount();
+                            componentCount.packageName = packageInfo.packageName;
+                            componentCount.count = PackageCensus.countMatchingComponents(packageInfo, searchableSignatures);
+                            if (componentCount.count > 0) {
+                                componentCount.packageLabel = PackageCensus.getLabel(packageInfo, mPm);
+                            }
+                            return componentCount;
+                        }, mCensusProgress::postValue);
             }
+            if (componentCounts == null) return;
             mComponentCount.postValue(new Pair<>(componentCounts, signatures));
         });
     }
@@ -204,25 +202,21 @@ public class OneClickOpsViewModel extends AndroidViewModel {
         }
         mFutureResult = ThreadUtils.postOnBackgroundThread(() -> {
             Pair<int[], Integer> appOpsModePair = new Pair<>(appOpList, mode);
-            List<AppOpCount> appOpCounts = new ArrayList<>();
-            HashSet<String> packageNames = new HashSet<>();
-            for (ApplicationInfo applicationInfo : PackageUtils.getAllApplications(MATCH_UNINSTALLED_PACKAGES
-                    | PackageManagerCompat.MATCH_STATIC_SHARED_AND_SDK_LIBRARIES)) {
-                if (packageNames.contains(applicationInfo.packageName)) {
-                    continue;
-                }
-                packageNames.add(applicationInfo.packageName);
-                if (ThreadUtils.isInterrupted()) return;
-                if (!systemApps && (applicationInfo.flags & ApplicationInfo.FLAG_SYSTEM) != 0)
-                    continue;
-                AppOpCount appOpCount = new AppOpCount();
-                appOpCount.packageName = applicationInfo.packageName;
-                appOpCount.packageLabel = applicationInfo.loadLabel(mPm).toString();
-                appOpCount.appOps = PackageUtils.getFilteredAppOps(applicationInfo.packageName,
-                        UserHandleHidden.myUserId(), appOpList, mode);
-                appOpCount.count = appOpCount.appOps.size();
-                if (appOpCount.count > 0) appOpCounts.add(appOpCount);
-            }
+            List<AppOpCount> appOpCounts = PackageCensus.count(PackageUtils.getAllPackages(MATCH_UNINSTALLED_PACKAGES
+                            | PackageManagerCompat.MATCH_STATIC_SHARED_AND_SDK_LIBRARIES),
+                    applicationInfo -> systemApps || (applicationInfo.flags & ApplicationInfo.FLAG_SYSTEM) == 0,
+                    packageInfo -> {
+                        AppOpCount appOpCount = new AppOpCount();
+                        appOpCount.packageName = packageInfo.packageName;
+                        appOpCount.appOps = PackageUtils.getFilteredAppOps(packageInfo.packageName,
+                                UserHandleHidden.myUserId(), appOpList, mode);
+                        appOpCount.count = appOpCount.appOps.size();
+                        if (appOpCount.count > 0) {
+                            appOpCount.packageLabel = PackageCensus.getLabel(packageInfo, mPm);
+                        }
+                        return appOpCount;
+                    }, mCensusProgress::postValue);
+            if (appOpCounts == null) return;
             mAppOpsCount.postValue(new Pair<>(appOpCounts, appOpsModePair));
         });
     }
@@ -280,6 +274,13 @@ public class OneClickOpsViewModel extends AndroidViewModel {
         });
     }
 
+    private static boolean isIncluded(@NonNull ApplicationInfo applicationInfo, boolean systemApps, boolean isShell) {
+        if (isShell && !ApplicationInfoCompat.isTestOnly(applicationInfo)) {
+            return false;
+        }
+        return systemApps || !ApplicationInfoCompat.isSystemApp(applicationInfo);
+    }
+
     @NonNull
     private ItemCount getTrackerCountForApp(@NonNull PackageInfo packageInfo) {
         ItemCount trackerCount = new ItemCount();
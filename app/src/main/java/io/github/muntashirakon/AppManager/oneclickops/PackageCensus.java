@@ -0,0 +1,175 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package io.github.muntashirakon.AppManager.oneclickops;
+
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.os.UserHandleHidden;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+import androidx.core.content.pm.PackageInfoCompat;
+import androidx.core.os.LocaleListCompat;
+import androidx.core.util.Pair;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntConsumer;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+
+import io.github.muntashirakon.AppManager.utils.PackageUtils;
+import io.github.muntashirakon.algo.AhoCorasick;
+
+/**
+ * Counts items, such as trackers, in all the given packages in parallel. The labels and the tracker counts are
+ * memoized per package until the package is updated (or the locales are changed in case of the labels), and therefore,
+ * repeating a census is mostly free.
+ */
+final class PackageCensus {
+    public interface ItemCounter<T extends ItemCount> {
+        /**
+         * Count the items in the given package.
+         *
+         * @return The counted items, or {@code null} if the package should be excluded from the census
+         */
+        @Nullable
+        T count(@NonNull PackageInfo packageInfo);
+    }
+
+    private static class PackageEntry {
+        public final long versionCode;
+        public final long lastUpdateTime;
+        // Locales and the label in those locales
+        @Nullable
+        public volatile Pair<String, String> label;
+        public volatile int trackerCount = -1;
+
+        PackageEntry(@NonNull PackageInfo packageInfo) {
+            versionCode = PackageInfoCompat.getLongVersionCode(packageInfo);
+            lastUpdateTime = packageInfo.lastUpdateTime;
+        }
+
+        public boolean isStale(@NonNull PackageInfo packageInfo) {
+            return versionCode != PackageInfoCompat.getLongVersionCode(packageInfo)
+                    || lastUpdateTime != packageInfo.lastUpdateTime;
+        }
+    }
+
+    private static final Map<String, PackageEntry> sPackageEntries = new ConcurrentHashMap<>();
+
+    /**
+     * Run a census on the given packages. If a package is installed in multiple users, only the first one is counted.
+     *
+     * @param packages         Packages to count
+     * @param filter           Packages to include in the census
+     * @param counter          Counts the items in each package. It is called from multiple threads.
+     * @param progressListener Receives the progress in percentage
+     * @return The packages whose counts are positive in the same order as {@code packages}, or {@code null} if the
+     * calling thread was interrupted
+     */
+    @WorkerThread
+    @Nullable
+    public static <T extends ItemCount> List<T> count(@NonNull Collection<PackageInfo> packages,
+                                                      @NonNull Predicate<ApplicationInfo> filter,
+                                                      @NonNull ItemCounter<T> counter,
+                                                      @Nullable IntConsumer progressListener) {
+        List<PackageInfo> packageInfoList = new ArrayList<>(packages.size());
+        HashSet<String> packageNames = new HashSet<>();
+        for (PackageInfo packageInfo : packages) {
+            if (packageNames.add(packageInfo.packageName) && filter.test(packageInfo.applicationInfo)) {
+                packageInfoList.add(packageInfo);
+            }
+        }
+        // The worker threads cannot check their own interrupted status
+        Thread callingThread = Thread.currentThread();
+        int size = packageInfoList.size();
+        AtomicReferenceArray<T> itemCounts = new AtomicReferenceArray<>(size);
+        AtomicInteger counted = new AtomicInteger();
+        AtomicInteger lastProgress = new AtomicInteger(-1);
+        IntStream.range(0, size).parallel().forEach(i -> {
+            if (callingThread.isInterrupted()) {
+                return;
+            }
+            itemCounts.set(i, counter.count(packageInfoList.get(i)));
+            if (progressListener != null) {
+                int progress = counted.incrementAndGet() * 100 / size;
+                int oldProgress = lastProgress.get();
+                if (progress > oldProgress && lastProgress.compareAndSet(oldProgress, progress)) {
+                    progressListener.accept(progress);
+                }
+            }
+        });
+        if (callingThread.isInterrupted()) {
+            return null;
+        }
+        List<T> results = new ArrayList<>();
+        for (int i = 0; i < size; ++i) {
+            T itemCount = itemCounts.get(i);
+            if (itemCount != null && itemCount.count > 0) {
+                results.add(itemCount);
+            }
+        }
+        return results;
+    }
+
+    @NonNull
+    public static String getLabel(@NonNull PackageInfo packageInfo, @NonNull PackageManager pm) {
+        PackageEntry entry = getPackageEntry(packageInfo);
+        String locales = LocaleListCompat.getDefault().toLanguageTags();
+        Pair<String, String> label = entry.label;
+        if (label == null || !locales.equals(label.first)) {
+            label = new Pair<>(locales, packageInfo.applicationInfo.loadLabel(pm).toString());
+            entry.label = label;
+        }
+        return label.second;
+    }
+
+    /**
+     * Same as {@link io.github.muntashirakon.AppManager.rules.compontents.ComponentUtils#getTrackerComponentsCountForPackage(PackageInfo)}
+     * except that the count is memoized.
+     *
+     * @param trackerSignatures The shared tracker signatures
+     */
+    public static int getTrackerCount(@NonNull PackageInfo packageInfo, @NonNull AhoCorasick trackerSignatures) {
+        PackageEntry entry = getPackageEntry(packageInfo);
+        int trackerCount = entry.trackerCount;
+        if (trackerCount < 0) {
+            trackerCount = countMatchingComponents(packageInfo, trackerSignatures);
+            entry.trackerCount = trackerCount;
+        }
+        return trackerCount;
+    }
+
+    /**
+     * Count the components whose names contain any of the signatures.
+     */
+    public static int countMatchingComponents(@NonNull PackageInfo packageInfo, @NonNull AhoCorasick signatures) {
+        int count = 0;
+        for (String componentName : PackageUtils.collectComponentClassNames(packageInfo).keySet()) {
+            if (signatures.search(componentName).length > 0) {
+                ++count;
+            }
+        }
+        return count;
+    }
+
+    @NonNull
+    private static PackageEntry getPackageEntry(@NonNull PackageInfo packageInfo) {
+        String key = UserHandleHidden.getUserId(packageInfo.applicationInfo.uid) + "_" + packageInfo.packageName;
+        PackageEntry entry = sPackageEntries.get(key);
+        if (entry == null || entry.isStale(packageInfo)) {
+            entry = new PackageEntry(packageInfo);
+            sPackageEntries.put(key, entry);
+        }
+        return entry;
+    }
+}
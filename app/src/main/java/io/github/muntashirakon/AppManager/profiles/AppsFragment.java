@@ -149,7 +149,7 @@ public class AppsFragment extends Fragment implements SwipeRefreshLayout.OnRefre
         @Override
         public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
             AppsFragmentItem fragmentItem = getItem(position);
-            holder.icon.setTag(fragmentItem);
+            holder.icon.setTag(fragmentItem.packageName);
             holder.icon.setImageDrawable(null);
             if (fragmentItem.applicationInfo != null) {
                 ImageLoader.getInstance().displayImage(fragmentItem.packageName, fragmentItem.applicationInfo, holder.icon);
@@ -9,6 +9,7 @@ import static android.content.pm.PackageManager.DONT_KILL_APP;
 import static io.github.muntashirakon.AppManager.compat.PackageManagerCompat.MATCH_DISABLED_COMPONENTS;
 import static io.github.muntashirakon.AppManager.compat.PackageManagerCompat.MATCH_UNINSTALLED_PACKAGES;
 
+import android.annotation.UserIdInt;
 import android.app.AppOpsManager;
 import android.content.ComponentName;
 import android.content.Context;
@@ -16,22 +17,27 @@ import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
 import android.os.Build;
 import android.os.RemoteException;
+import android.os.SystemClock;
 import android.system.ErrnoException;
 
 import androidx.annotation.GuardedBy;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
 import androidx.annotation.WorkerThread;
 
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import io.github.muntashirakon.AppManager.compat.AppOpsManagerCompat;
 import io.github.muntashirakon.AppManager.compat.ApplicationInfoCompat;
@@ -47,6 +53,7 @@ import io.github.muntashirakon.AppManager.rules.struct.PermissionRule;
 import io.github.muntashirakon.AppManager.rules.struct.RuleEntry;
 import io.github.muntashirakon.AppManager.self.SelfPermissions;
 import io.github.muntashirakon.AppManager.settings.Prefs;
+import io.github.muntashirakon.AppManager.utils.MultithreadedExecutor;
 import io.github.muntashirakon.AppManager.utils.PackageUtils;
 import io.github.muntashirakon.io.AtomicExtendedFile;
 import io.github.muntashirakon.io.Paths;
@@ -180,19 +187,36 @@ public final class ComponentsBlocker extends RulesStorageManager {
      */
     @WorkerThread
     public static boolean applyAllRules(@NonNull Context context, int userHandle) {
+        long startTime = SystemClock.elapsedRealtime();
         // Apply all rules from conf folder
         File confPath = new File(context.getFilesDir(), "conf");
         String[] packageNamesWithTSVExt = confPath.list((dir, name) -> name.endsWith(".tsv"));
-        boolean isSuccessful = true;
-        if (packageNamesWithTSVExt != null) {
-            // Apply rules
+        if (packageNamesWithTSVExt == null) {
+            return true;
+        }
+        // The rules of each package are independent of the others, and therefore, they can be loaded and applied in
+        // parallel
+        AtomicInteger failedCount = new AtomicInteger(0);
+        MultithreadedExecutor executor = MultithreadedExecutor.getNewInstance();
+        try {
             for (String packageNameWithTSVExt : packageNamesWithTSVExt) {
-                try (ComponentsBlocker cb = getMutableInstance(Paths.trimPathExtension(packageNameWithTSVExt), userHandle)) {
-                    isSuccessful &= cb.applyRules(true);
-                }
+                executor.submit(() -> {
+                    try (ComponentsBlocker cb = getMutableInstance(Paths.trimPathExtension(packageNameWithTSVExt), userHandle)) {
+                        if (!cb.applyRules(true)) {
+                            failedCount.incrementAndGet();
+                        }
+                    } catch (Throwable th) {
+                        Log.e(TAG, "Could not apply rules from %s", th, packageNameWithTSVExt);
+                        failedCount.incrementAndGet();
+                    }
+                });
             }
+        } finally {
+            executor.awaitCompletion();
         }
-        return isSuccessful;
+        Log.i(TAG, "Applied rules of %d packages in %d ms, failed: %d", packageNamesWithTSVExt.length,
+                SystemClock.elapsedRealtime() - startTime, failedCount.get());
+        return failedCount.get() == 0;
     }
 
     /**
@@ -342,12 +366,18 @@ public final class ComponentsBlocker extends RulesStorageManager {
                 ((services.length() == 0) ? "" : "<service block=\"true\" log=\"false\">\n" + services + "</service>\n") +
                 ((receivers.length() == 0) ? "" : "<broadcast block=\"true\" log=\"false\">\n" + receivers + "</broadcast>\n") +
                 "</rules>";
+        byte[] rulesBytes = rules.getBytes();
+        if (isRulesFileUpToDate(mRulesFile, rulesBytes)) {
+            // Rewriting the file would only make the system reload the same rules
+            Log.d(TAG, "Rules for package %s are unchanged", packageName);
+            return true;
+        }
         // Save rules
         FileOutputStream rulesStream = null;
         try {
             rulesStream = mRulesFile.startWrite();
             Log.d(TAG, "Rules: %s", rules);
-            rulesStream.write(rules.getBytes());
+            rulesStream.write(rulesBytes);
             mRulesFile.finishWrite(rulesStream);
             //noinspection OctalInteger
             mRulesFile.getBaseFile().setMode(0666);
@@ -362,6 +392,18 @@ public final class ComponentsBlocker extends RulesStorageManager {
         }
     }
 
+    @VisibleForTesting
+    static boolean isRulesFileUpToDate(@NonNull AtomicExtendedFile rulesFile, @NonNull byte[] rules) {
+        if (!rulesFile.exists() || rulesFile.getBaseFile().length() != rules.length) {
+            return false;
+        }
+        try {
+            return Arrays.equals(rulesFile.readFully(), rules);
+        } catch (IOException | RemoteException e) {
+            return false;
+        }
+    }
+
     /**
      * Find if there is any component that needs blocking. Previous implementations checked for
      * rules file in the system IFW directory as well, but since all controls are now inside the app
@@ -381,6 +423,58 @@ public final class ComponentsBlocker extends RulesStorageManager {
         return true;
     }
 
+    @VisibleForTesting
+    static final class ComponentStateChange {
+        @NonNull
+        public final ComponentRule entry;
+        @PackageManagerCompat.EnabledState
+        public final int newState;
+        // Updates the rule once the state is set
+        @Nullable
+        private final Runnable mOnApplied;
+
+        ComponentStateChange(@NonNull ComponentRule entry, @PackageManagerCompat.EnabledState int newState,
+                             @Nullable Runnable onApplied) {
+            this.entry = entry;
+            this.newState = newState;
+            mOnApplied = onApplied;
+        }
+
+        /**
+         * Whether the component may already be in the new state according to its rule, i.e., the same state was set
+         * when the rule was last applied. The state of the other components is not checked before setting it.
+         */
+        boolean mayBeApplied() {
+            String appliedStatus = entry.isApplied() ? entry.getComponentStatus() : entry.getLastComponentStatus();
+            if (appliedStatus == null) {
+                return false;
+            }
+            switch (appliedStatus) {
+                case ComponentRule.COMPONENT_BLOCKED_IFW_DISABLE:
+                case ComponentRule.COMPONENT_DISABLED:
+                    return newState == COMPONENT_ENABLED_STATE_DISABLED;
+                case ComponentRule.COMPONENT_ENABLED:
+                    return newState == COMPONENT_ENABLED_STATE_ENABLED;
+                default:
+                    return false;
+            }
+        }
+
+        boolean isApplied(@UserIdInt int userId) {
+            try {
+                return PackageManagerCompat.getComponentEnabledSetting(entry.getComponentName(), userId) == newState;
+            } catch (Throwable e) {
+                return false;
+            }
+        }
+
+        void onApplied() {
+            if (mOnApplied != null) {
+                mOnApplied.run();
+            }
+        }
+    }
+
     /**
      * Apply the currently modified rules if the argument apply is true. Since IFW is used, when
      * apply is true, the IFW rules are saved to {@link #SYSTEM_RULES_PATH} and components that are
@@ -407,44 +501,24 @@ public final class ComponentsBlocker extends RulesStorageManager {
         // Enable/disable components
         List<ComponentRule> allEntries = getAllComponents();
         Log.d(TAG, "All: %s", allEntries);
-        boolean isSuccessful = true;
+        List<ComponentStateChange> stateChanges = new ArrayList<>(allEntries.size());
         if (apply) {
             for (ComponentRule entry : allEntries) {
                 if (entry.applyDefaultState()) {
-                    // Need to set component state to default first and do nothing
-                    try {
-                        PackageManagerCompat.setComponentEnabledSetting(entry.getComponentName(),
-                                COMPONENT_ENABLED_STATE_DEFAULT, DONT_KILL_APP, userId);
-                        removeEntry(entry);
-                    } catch (Throwable e) {
-                        isSuccessful = false;
-                        Log.e(TAG, "Could not enable component: %s/%s", e, packageName, entry.name);
-                    }
+                    // Need to set component state to default first and do nothing. The entry is going to be blocked
+                    // by IFW below regardless of the result.
+                    stateChanges.add(new ComponentStateChange(entry, COMPONENT_ENABLED_STATE_DEFAULT, null));
                 }
                 switch (entry.getComponentStatus()) {
                     case ComponentRule.COMPONENT_TO_BE_DEFAULTED:
                         // Set component state to default and remove it
-                        try {
-                            PackageManagerCompat.setComponentEnabledSetting(
-                                    entry.getComponentName(), COMPONENT_ENABLED_STATE_DEFAULT,
-                                    DONT_KILL_APP, userId);
-                            removeEntry(entry);
-                        } catch (Throwable e) {
-                            isSuccessful = false;
-                            Log.e(TAG, "Could not enable component: %s/%s", e, packageName, entry.name);
-                        }
+                        stateChanges.add(new ComponentStateChange(entry, COMPONENT_ENABLED_STATE_DEFAULT,
+                                () -> removeEntry(entry)));
                         break;
                     case ComponentRule.COMPONENT_TO_BE_ENABLED:
                         // Enable components
-                        try {
-                            PackageManagerCompat.setComponentEnabledSetting(
-                                    entry.getComponentName(), COMPONENT_ENABLED_STATE_ENABLED,
-                                    DONT_KILL_APP, userId);
-                            setComponent(entry.name, entry.type, ComponentRule.COMPONENT_ENABLED);
-                        } catch (Throwable e) {
-                            isSuccessful = false;
-                            Log.e(TAG, "Could not disable component: %s/%s", e, packageName, entry.name);
-                        }
+                        stateChanges.add(new ComponentStateChange(entry, COMPONENT_ENABLED_STATE_ENABLED,
+                                () -> setComponent(entry.name, entry.type, ComponentRule.COMPONENT_ENABLED)));
                         break;
                     case ComponentRule.COMPONENT_TO_BE_BLOCKED_IFW:
                         setComponent(entry.name, entry.type, ComponentRule.COMPONENT_BLOCKED_IFW);
@@ -452,15 +526,9 @@ public final class ComponentsBlocker extends RulesStorageManager {
                     case ComponentRule.COMPONENT_TO_BE_BLOCKED_IFW_DISABLE:
                     case ComponentRule.COMPONENT_TO_BE_DISABLED:
                         // Disable components
-                        try {
-                            PackageManagerCompat.setComponentEnabledSetting(
-                                    entry.getComponentName(), COMPONENT_ENABLED_STATE_DISABLED,
-                                    DONT_KILL_APP, userId);
-                            setComponent(entry.name, entry.type, entry.getCounterpartOfToBe());
-                        } catch (Throwable e) {
-                            isSuccessful = false;
-                            Log.e(TAG, "Could not disable component: %s/%s", e, packageName, entry.name);
-                        }
+                        String counterpart = entry.getCounterpartOfToBe();
+                        stateChanges.add(new ComponentStateChange(entry, COMPONENT_ENABLED_STATE_DISABLED,
+                                () -> setComponent(entry.name, entry.type, counterpart)));
                         break;
                     default:
                         setComponent(entry.name, entry.type, entry.getCounterpartOfToBe());
@@ -471,17 +539,67 @@ public final class ComponentsBlocker extends RulesStorageManager {
             for (ComponentRule entry : allEntries) {
                 // Enable components if they're disabled by other methods.
                 // IFW rules are already removed above.
-                try {
-                    PackageManagerCompat.setComponentEnabledSetting(entry.getComponentName(),
-                            COMPONENT_ENABLED_STATE_DEFAULT, DONT_KILL_APP,
-                            userId);
-                    if (entry.toBeRemoved()) {
-                        removeEntry(entry);
-                    } else setComponent(entry.name, entry.type, entry.getToBe());
-                } catch (Throwable e) {
-                    isSuccessful = false;
-                    Log.e(TAG, "Could not enable component: %s/%s", e, packageName, entry.name);
+                Runnable onApplied;
+                if (entry.toBeRemoved()) {
+                    onApplied = () -> removeEntry(entry);
+                } else {
+                    String toBe = entry.getToBe();
+                    onApplied = () -> setComponent(entry.name, entry.type, toBe);
                 }
+                stateChanges.add(new ComponentStateChange(entry, COMPONENT_ENABLED_STATE_DEFAULT, onApplied));
+            }
+        }
+        return applyComponentStates(stateChanges);
+    }
+
+    /**
+     * Set the states of all the components at once, and update their rules if successful. The components that are
+     * already in the desired states are skipped, but only the ones that may be in the desired states according to their
+     * rules are checked. If it fails, the states are set one by one so that only the rules of
+     * the components that could not be set are left as is.
+     *
+     * @return {@code true} iff the states of all the components are set
+     */
+    @WorkerThread
+    private boolean applyComponentStates(@NonNull List<ComponentStateChange> stateChanges) {
+        // Setting a component to its current state still makes the system write its settings and notify the package
+        List<ComponentStateChange> pendingChanges = new ArrayList<>(stateChanges.size());
+        for (ComponentStateChange stateChange : stateChanges) {
+            if (stateChange.mayBeApplied() && stateChange.isApplied(userId)) {
+                stateChange.onApplied();
+            } else pendingChanges.add(stateChange);
+        }
+        Log.d(TAG, "Components of %s to be changed: %d of %d", packageName, pendingChanges.size(),
+                stateChanges.size());
+        if (pendingChanges.isEmpty()) {
+            return true;
+        }
+        List<ComponentName> componentNames = new ArrayList<>(pendingChanges.size());
+        int[] newStates = new int[pendingChanges.size()];
+        for (int i = 0; i < newStates.length; ++i) {
+            ComponentStateChange stateChange = pendingChanges.get(i);
+            componentNames.add(stateChange.entry.getComponentName());
+            newStates[i] = stateChange.newState;
+        }
+        try {
+            PackageManagerCompat.setComponentEnabledSettings(componentNames, newStates, DONT_KILL_APP, userId);
+            for (ComponentStateChange stateChange : pendingChanges) {
+                stateChange.onApplied();
+            }
+            return true;
+        } catch (Throwable e) {
+            Log.w(TAG, "Could not set states of %d components of %s at once", e, newStates.length, packageName);
+        }
+        boolean isSuccessful = true;
+        for (ComponentStateChange stateChange : pendingChanges) {
+            try {
+                PackageManagerCompat.setComponentEnabledSetting(stateChange.entry.getComponentName(),
+                        stateChange.newState, DONT_KILL_APP, userId);
+                stateChange.onApplied();
+            } catch (Throwable e) {
+                isSuccessful = false;
+                Log.e(TAG, "Could not %s component: %s/%s", e, stateChange.newState == COMPONENT_ENABLED_STATE_DISABLED
+                        ? "disable" : "enable", packageName, stateChange.entry.name);
             }
         }
         return isSuccessful;
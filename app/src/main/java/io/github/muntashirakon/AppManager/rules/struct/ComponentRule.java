@@ -103,6 +103,12 @@ public class ComponentRule extends RuleEntry {
         return mComponentStatus;
     }
 
+    @Nullable
+    @ComponentStatus
+    public String getLastComponentStatus() {
+        return mLastComponentStatus;
+    }
+
     public void setLastComponentStatus(@Nullable String lastComponentStatus) {
         mLastComponentStatus = lastComponentStatus;
     }
@@ -26,6 +26,10 @@ public class ProcessItem implements Parcelable {
     public String state;
     public String state_extra;
     public String name;
+    /**
+     * CPU usage in percent since the previous sample, negative if unknown
+     */
+    public double cpuUsage = -1;
 
     @NonNull
     private final ProcessEntry mProcessEntry;
@@ -59,6 +63,11 @@ public class ProcessItem implements Parcelable {
         return mProcessEntry.name.split("\u0000");
     }
 
+    @NonNull
+    ProcessEntry getProcessEntry() {
+        return mProcessEntry;
+    }
+
     public long getMemory() {
         return mProcessEntry.residentSetSize << 12;
     }
@@ -91,6 +100,7 @@ public class ProcessItem implements Parcelable {
         state = in.readString();
         state_extra = in.readString();
         name = in.readString();
+        cpuUsage = in.readDouble();
     }
 
     public static final Creator<ProcessItem> CREATOR = new Creator<ProcessItem>() {
@@ -148,5 +158,6 @@ public class ProcessItem implements Parcelable {
         dest.writeString(state);
         dest.writeString(state_extra);
         dest.writeString(name);
+        dest.writeDouble(cpuUsage);
     }
 }
@@ -6,8 +6,10 @@ import android.app.ActivityManager;
 import android.content.Context;
 import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
+import android.os.RemoteException;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
 import androidx.annotation.WorkerThread;
 
@@ -16,10 +18,12 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Objects;
 
+import io.github.muntashirakon.AppManager.IAMService;
 import io.github.muntashirakon.AppManager.compat.ActivityManagerCompat;
 import io.github.muntashirakon.AppManager.compat.PackageManagerCompat;
 import io.github.muntashirakon.AppManager.ipc.LocalServices;
 import io.github.muntashirakon.AppManager.ipc.ps.ProcessEntry;
+import io.github.muntashirakon.AppManager.ipc.ps.ProcessSample;
 import io.github.muntashirakon.AppManager.ipc.ps.Ps;
 import io.github.muntashirakon.AppManager.logs.Log;
 import io.github.muntashirakon.AppManager.utils.ContextUtils;
@@ -49,17 +53,29 @@ public final class ProcessParser {
         }
     }
 
-    @SuppressWarnings("unchecked")
     @NonNull
     List<ProcessItem> parse() {
+        return parse(null);
+    }
+
+    /**
+     * @param pids Processes to parse, or {@code null} to parse all the processes
+     */
+    @SuppressWarnings("unchecked")
+    @NonNull
+    List<ProcessItem> parse(@Nullable int[] pids) {
         List<ProcessItem> processItems = new ArrayList<>();
         try {
             List<ProcessEntry> processEntries;
-            if (Paths.get("/proc/1").canRead() && LocalServices.alive()) {
-                processEntries = (List<ProcessEntry>) LocalServices.getAmService().getRunningProcesses().getList();
+            if (isAmServiceAvailable()) {
+                IAMService amService = LocalServices.getAmService();
+                processEntries = (List<ProcessEntry>) (pids != null ? amService.getProcesses(pids)
+                        : amService.getRunningProcesses()).getList();
             } else {
                 Ps ps = new Ps();
-                ps.loadProcesses();
+                if (pids != null) {
+                    ps.loadProcesses(pids);
+                } else ps.loadProcesses();
                 processEntries = ps.getProcesses();
             }
             for (ProcessEntry processEntry : processEntries) {
@@ -77,6 +93,32 @@ public final class ProcessParser {
         return processItems;
     }
 
+    /**
+     * Read the CPU and the memory usage of all the processes.
+     */
+    @SuppressWarnings("unchecked")
+    @NonNull
+    static List<ProcessSample> sampleProcesses() throws RemoteException {
+        if (isAmServiceAvailable()) {
+            return (List<ProcessSample>) LocalServices.getAmService().sampleProcesses().getList();
+        }
+        return new Ps().sampleProcesses();
+    }
+
+    /**
+     * Create a copy of the process item with the given process entry, which is an update of the entry of the item.
+     */
+    @NonNull
+    ProcessItem updateProcess(@NonNull ProcessItem processItem, @NonNull ProcessEntry processEntry) {
+        ProcessItem newProcessItem;
+        if (processItem instanceof AppProcessItem) {
+            newProcessItem = new AppProcessItem(processEntry, ((AppProcessItem) processItem).packageInfo);
+        } else newProcessItem = new ProcessItem(processEntry);
+        newProcessItem.name = processItem.name;
+        setState(newProcessItem, processEntry);
+        return newProcessItem;
+    }
+
     @VisibleForTesting
     @NonNull
     HashMap<Integer, ProcessItem> parse(@NonNull Path procDir) {
@@ -131,18 +173,26 @@ public final class ProcessParser {
             processItems.add(processItem);
         }
         for (ProcessItem processItem : processItems) {
-            if (mContext == null) {
-                processItem.state = processEntry.processState;
-                processItem.state_extra = processEntry.processStatePlus;
-            } else {
-                processItem.state = mContext.getString(Utils.getProcessStateName(processEntry.processState));
-                processItem.state_extra = mContext.getString(Utils.getProcessStateExtraName(
-                        processEntry.processStatePlus));
-            }
+            setState(processItem, processEntry);
         }
         return processItems;
     }
 
+    private void setState(@NonNull ProcessItem processItem, @NonNull ProcessEntry processEntry) {
+        if (mContext == null) {
+            processItem.state = processEntry.processState;
+            processItem.state_extra = processEntry.processStatePlus;
+        } else {
+            processItem.state = mContext.getString(Utils.getProcessStateName(processEntry.processState));
+            processItem.state_extra = mContext.getString(Utils.getProcessStateExtraName(
+                    processEntry.processStatePlus));
+        }
+    }
+
+    private static boolean isAmServiceAvailable() {
+        return Paths.get("/proc/1").canRead() && LocalServices.alive();
+    }
+
     private void getInstalledPackages() {
         List<PackageInfo> packageInfoList = PackageUtils.getAllPackages(PackageManagerCompat.MATCH_STATIC_SHARED_AND_SDK_LIBRARIES);
         mInstalledPackages = new HashMap<>(packageInfoList.size());
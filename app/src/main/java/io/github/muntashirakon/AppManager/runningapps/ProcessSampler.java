@@ -0,0 +1,158 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package io.github.muntashirakon.AppManager.runningapps;
+
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.github.muntashirakon.AppManager.ipc.ps.ProcessSample;
+import io.github.muntashirakon.AppManager.logs.Log;
+import io.github.muntashirakon.AppManager.utils.CpuUtils;
+
+/**
+ * Keeps track of the running processes by their PIDs. A process is fully parsed only when it first appears. After
+ * that, only its /proc/$PID/stat is read to update its CPU and memory usage, and its items are replaced only when any
+ * of them changes.
+ */
+@WorkerThread
+final class ProcessSampler {
+    public static final String TAG = ProcessSampler.class.getSimpleName();
+
+    private static class SampledProcess {
+        @NonNull
+        public final ProcessSample sample;
+        public final long sampleTime;
+        // Empty if the process is not listed, such as a kernel thread
+        @NonNull
+        public final List<ProcessItem> processItems;
+
+        SampledProcess(@NonNull ProcessSample sample, long sampleTime, @NonNull List<ProcessItem> processItems) {
+            this.sample = sample;
+            this.sampleTime = sampleTime;
+            this.processItems = processItems;
+        }
+    }
+
+    @NonNull
+    private Map<Integer, SampledProcess> mProcesses = Collections.emptyMap();
+    @Nullable
+    private ProcessParser mParser;
+    private long mClockTicks;
+
+    /**
+     * Parse all the processes again, including the installed packages.
+     */
+    @NonNull
+    public List<ProcessItem> refresh() {
+        mParser = new ProcessParser();
+        mClockTicks = CpuUtils.getClockTicksPerSecond();
+        mProcesses = Collections.emptyMap();
+        return sample();
+    }
+
+    /**
+     * Update the processes, parsing only the new ones.
+     */
+    @NonNull
+    public List<ProcessItem> sample() {
+        if (mParser == null) {
+            return refresh();
+        }
+        List<ProcessSample> samples;
+        try {
+            samples = ProcessParser.sampleProcesses();
+        } catch (Throwable th) {
+            Log.e(TAG, th);
+            return getProcessItems(mProcesses);
+        }
+        long sampleTime = SystemClock.elapsedRealtime();
+        long uptime = sampleTime / 1000;
+        Map<Integer, SampledProcess> processes = new HashMap<>(samples.size());
+        Map<Integer, ProcessSample> newSamples = new HashMap<>();
+        for (ProcessSample sample : samples) {
+            SampledProcess oldProcess = mProcesses.get(sample.pid);
+            if (oldProcess == null || oldProcess.sample.startTime != sample.startTime) {
+                // New process or a reused PID
+                newSamples.put(sample.pid, sample);
+                continue;
+            }
+            double cpuUsage = getCpuUsage(oldProcess, sample, sampleTime);
+            List<ProcessItem> processItems;
+            if (sample.isMemoryAndStateSame(oldProcess.sample) && isCpuUsageSame(oldProcess, cpuUsage)) {
+                processItems = oldProcess.processItems;
+            } else {
+                processItems = new ArrayList<>(oldProcess.processItems.size());
+                for (ProcessItem processItem : oldProcess.processItems) {
+                    ProcessItem newProcessItem = mParser.updateProcess(processItem, sample
+                            .updateProcessEntry(processItem.getProcessEntry(), mClockTicks, uptime));
+                    newProcessItem.cpuUsage = cpuUsage;
+                    processItems.add(newProcessItem);
+                }
+            }
+            processes.put(sample.pid, new SampledProcess(sample, sampleTime, processItems));
+        }
+        if (!newSamples.isEmpty()) {
+            Map<Integer, List<ProcessItem>> newProcessItems = new HashMap<>(newSamples.size());
+            for (ProcessItem processItem : mParser.parse(getPids(newSamples))) {
+                List<ProcessItem> processItems = newProcessItems.get(processItem.pid);
+                if (processItems == null) {
+                    processItems = new ArrayList<>(1);
+                    newProcessItems.put(processItem.pid, processItems);
+                }
+                processItems.add(processItem);
+            }
+            for (ProcessSample sample : newSamples.values()) {
+                List<ProcessItem> processItems = newProcessItems.get(sample.pid);
+                // Remembered even if not listed so that it is not parsed again
+                processes.put(sample.pid, new SampledProcess(sample, sampleTime, processItems != null
+                        ? processItems : Collections.emptyList()));
+            }
+        }
+        mProcesses = processes;
+        return getProcessItems(processes);
+    }
+
+    private double getCpuUsage(@NonNull SampledProcess oldProcess, @NonNull ProcessSample sample, long sampleTime) {
+        long elapsedTime = sampleTime - oldProcess.sampleTime;
+        if (elapsedTime <= 0) {
+            return -1;
+        }
+        return (sample.cpuTime - oldProcess.sample.cpuTime) * 100_000. / mClockTicks / elapsedTime;
+    }
+
+    private static boolean isCpuUsageSame(@NonNull SampledProcess oldProcess, double cpuUsage) {
+        if (oldProcess.processItems.isEmpty()) {
+            return true;
+        }
+        // All the items of a process share the same usage
+        return oldProcess.processItems.get(0).cpuUsage == cpuUsage;
+    }
+
+    @NonNull
+    private static int[] getPids(@NonNull Map<Integer, ProcessSample> samples) {
+        int[] pids = new int[samples.size()];
+        int i = 0;
+        for (int pid : samples.keySet()) {
+            pids[i++] = pid;
+        }
+        return pids;
+    }
+
+    @NonNull
+    private static List<ProcessItem> getProcessItems(@NonNull Map<Integer, SampledProcess> processes) {
+        List<ProcessItem> processItems = new ArrayList<>(processes.size());
+        for (SampledProcess process : processes.values()) {
+            processItems.addAll(process.processItems);
+        }
+        return processItems;
+    }
+}
@@ -300,16 +300,25 @@ public class RunningAppsActivity extends BaseActivity implements MultiSelectionV
         super.onResume();
         mTimer = new Timer("running_apps");
         mTimer.schedule(new TimerTask() {
+            private boolean mFirstRun = true;
+
             @Override
             public void run() {
+                // Only the first run parses everything, the others just sample the processes
+                boolean firstRun = mFirstRun;
+                mFirstRun = false;
                 ThreadUtils.postOnMainThread(() -> {
                     if (model != null) {
-                        model.loadProcesses();
+                        if (firstRun) {
+                            model.loadProcesses();
+                        } else {
+                            model.sampleProcesses();
+                        }
                         model.loadMemoryInfo();
                     }
                 });
             }
-        }, 0, 10_000);
+        }, 0, 1_000);
     }
 
     @Override
@@ -34,6 +34,7 @@ import com.google.android.material.color.MaterialColors;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Objects;
 
 import io.github.muntashirakon.AppManager.R;
@@ -76,7 +77,8 @@ public class RunningAppsAdapter extends MultiSelectionView.Adapter<ProcessItem,
                     && oldItem.getVirtualMemory() == newItem.getVirtualMemory()
                     && Objects.equals(oldItem.state, newItem.state)
                     && Objects.equals(oldItem.state_extra, newItem.state_extra)
-                    && Objects.equals(oldItem.context, newItem.context);
+                    && Objects.equals(oldItem.context, newItem.context)
+                    && oldItem.cpuUsage == newItem.cpuUsage;
         }
     };
 
@@ -255,9 +257,14 @@ public class RunningAppsAdapter extends MultiSelectionView.Adapter<ProcessItem,
         // Set process IDs
         holder.processIds.setText(mActivity.getString(R.string.pid_and_ppid, processItem.pid, processItem.ppid));
         // Set memory usage
-        holder.memoryUsage.setText(mActivity.getString(R.string.memory_virtual_memory,
-                Formatter.formatFileSize(mActivity, processItem.getMemory()),
-                Formatter.formatFileSize(mActivity, processItem.getVirtualMemory())));
+        String memory = Formatter.formatFileSize(mActivity, processItem.getMemory());
+        String virtualMemory = Formatter.formatFileSize(mActivity, processItem.getVirtualMemory());
+        if (processItem.cpuUsage >= 0) {
+            holder.memoryUsage.setText(mActivity.getString(R.string.memory_virtual_memory_cpu, memory, virtualMemory,
+                    String.format(Locale.getDefault(), "%.1f%%", processItem.cpuUsage)));
+        } else {
+            holder.memoryUsage.setText(mActivity.getString(R.string.memory_virtual_memory, memory, virtualMemory));
+        }
         // Set user info
         String userInfo = mActivity.getString(R.string.user_and_uid, processItem.user, processItem.uid);
         String stateInfo;
@@ -31,6 +31,7 @@ import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import io.github.muntashirakon.AppManager.compat.AppOpsManagerCompat;
 import io.github.muntashirakon.AppManager.compat.PackageManagerCompat;
@@ -162,6 +163,8 @@ public class RunningAppsViewModel extends AndroidViewModel {
 
     @NonNull
     private final List<ProcessItem> mProcessList = new ArrayList<>();
+    private final ProcessSampler mProcessSampler = new ProcessSampler();
+    private final AtomicBoolean mSamplingProcesses = new AtomicBoolean(false);
 
     @AnyThread
     public void loadProcesses() {
@@ -169,7 +172,7 @@ public class RunningAppsViewModel extends AndroidViewModel {
             synchronized (mProcessList) {
                 try {
                     mProcessList.clear();
-                    mProcessList.addAll(new ProcessParser().parse());
+                    mProcessList.addAll(mProcessSampler.refresh());
                     filterAndSort();
                 } catch (Throwable th) {
                     Log.e("RunningApps", th);
@@ -178,6 +181,31 @@ public class RunningAppsViewModel extends AndroidViewModel {
         });
     }
 
+    /**
+     * Update the CPU and memory usage of the processes, parsing only the new ones. Skipped if the previous sample has
+     * not been finished yet.
+     */
+    @AnyThread
+    public void sampleProcesses() {
+        if (!mSamplingProcesses.compareAndSet(false, true)) {
+            return;
+        }
+        mExecutor.submit(() -> {
+            synchronized (mProcessList) {
+                try {
+                    List<ProcessItem> processList = mProcessSampler.sample();
+                    mProcessList.clear();
+                    mProcessList.addAll(processList);
+                    filterAndSort();
+                } catch (Throwable th) {
+                    Log.e("RunningApps", th);
+                } finally {
+                    mSamplingProcesses.set(false);
+                }
+            }
+        });
+    }
+
     @NonNull
     private final MutableLiveData<ProcMemoryInfo> mDeviceMemoryInfo = new MutableLiveData<>();
 
@@ -344,7 +372,11 @@ public class RunningAppsViewModel extends AndroidViewModel {
         // If user apps filter is enabled, disable it since it'll be just an overhead
         boolean filterApps = !filterUserApps && (mFilter & RunningAppsActivity.FILTER_APPS) != 0;
         ApplicationInfo info;
-        for (ProcessItem item : mProcessList) {
+        List<ProcessItem> processList;
+        synchronized (mProcessList) {
+            processList = new ArrayList<>(mProcessList);
+        }
+        for (ProcessItem item : processList) {
             // Filter by apps
             if (filterApps && !(item instanceof AppProcessItem)) {
                 continue;
@@ -386,7 +418,7 @@ public class RunningAppsViewModel extends AndroidViewModel {
                     case RunningAppsActivity.SORT_BY_PROCESS_NAME:
                         return p1.name.compareToIgnoreCase(p2.name);
                     case RunningAppsActivity.SORT_BY_CPU_TIME:
-                        return -Long.compare(p1.getCpuTimeInMillis(), p1.getCpuTimeInMillis());
+                        return -Long.compare(p1.getCpuTimeInMillis(), p2.getCpuTimeInMillis());
                     case RunningAppsActivity.SORT_BY_PID:
                     default:
                         return Integer.compare(p1.pid, p2.pid);
@@ -39,6 +39,7 @@ import io.github.muntashirakon.AppManager.R;
 import io.github.muntashirakon.AppManager.editor.CodeEditorActivity;
 import io.github.muntashirakon.AppManager.misc.AdvancedSearchView;
 import io.github.muntashirakon.AppManager.misc.SearchViewDebouncer;
+import io.github.muntashirakon.AppManager.utils.ThreadUtils;
 import io.github.muntashirakon.AppManager.utils.UIUtils;
 import io.github.muntashirakon.AppManager.utils.appearance.ColorCodes;
 import io.github.muntashirakon.util.AdapterUtils;
@@ -252,16 +253,17 @@ public class ClassListingFragment extends Fragment implements MenuProvider {
             // Highlight searched query
             textView.setText(UIUtils.getHighlightedText(className, mConstraint, mQueryStringHighlightColor));
             holder.itemView.setCardBackgroundColor(position % 2 == 0 ? mCardColor1 : mCardColor0);
-            holder.itemView.setOnClickListener(v -> {
+            // The dex file system may have to be mounted first
+            holder.itemView.setOnClickListener(v -> ThreadUtils.postOnBackgroundThread(() -> {
                 try {
                     Intent intent = CodeEditorActivity.getIntent(mActivity, mViewModel.getUriFromClassName(className), null, null, true)
                             .addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
-                    mActivity.startActivity(intent);
+                    ThreadUtils.postOnMainThread(() -> mActivity.startActivity(intent));
                 } catch (Exception e) {
                     e.printStackTrace();
-                    UIUtils.displayLongToast(e.toString());
+                    ThreadUtils.postOnMainThread(() -> UIUtils.displayLongToast(e.toString()));
                 }
-            });
+            }));
         }
 
         public static class ViewHolder extends RecyclerView.ViewHolder {
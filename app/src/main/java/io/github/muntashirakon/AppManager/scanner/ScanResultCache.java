@@ -0,0 +1,188 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package io.github.muntashirakon.AppManager.scanner;
+
+import android.content.Context;
+import android.text.TextUtils;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import io.github.muntashirakon.AppManager.R;
+import io.github.muntashirakon.AppManager.StaticDataset;
+import io.github.muntashirakon.AppManager.logs.Log;
+import io.github.muntashirakon.AppManager.utils.DigestUtils;
+
+/**
+ * Persistent cache of the (expensive) class scanning results of the scanner, keyed by the SHA-256 digest of the APK
+ * file. The results are only valid for the version of the tracker and library signatures they were generated with.
+ */
+final class ScanResultCache {
+    public static final String TAG = ScanResultCache.class.getSimpleName();
+
+    static final class Result {
+        @NonNull
+        public final List<String> allClasses;
+        @NonNull
+        public final List<String> trackerClasses;
+        // Mapped to StaticDataset#getTrackerCodeSignatures()
+        @NonNull
+        public final int[] trackerCounts;
+        // Mapped to R.array.lib_signatures
+        @NonNull
+        public final int[] libraryCounts;
+        @NonNull
+        public final List<String> nativeLibraries;
+
+        Result(@NonNull List<String> allClasses, @NonNull List<String> trackerClasses, @NonNull int[] trackerCounts,
+               @NonNull int[] libraryCounts, @NonNull List<String> nativeLibraries) {
+            this.allClasses = allClasses;
+            this.trackerClasses = trackerClasses;
+            this.trackerCounts = trackerCounts;
+            this.libraryCounts = libraryCounts;
+            this.nativeLibraries = nativeLibraries;
+        }
+    }
+
+    private static final int FORMAT_VERSION = 1;
+    private static final String CACHE_DIRECTORY = "scan_results";
+    private static final int MAX_ENTRIES = 32;
+
+    @Nullable
+    private static String sDatasetVersion;
+
+    /**
+     * Version of the tracker and library signatures, which changes whenever any of the signatures changes.
+     */
+    @WorkerThread
+    @NonNull
+    static synchronized String getDatasetVersion(@NonNull Context context) {
+        if (sDatasetVersion == null) {
+            String trackerSignatures = TextUtils.join("\n", StaticDataset.getTrackerCodeSignatures());
+            String libSignatures = TextUtils.join("\n", context.getResources().getStringArray(R.array.lib_signatures));
+            sDatasetVersion = DigestUtils.getHexDigest(DigestUtils.SHA_256,
+                    (trackerSignatures + "\0" + libSignatures).getBytes(StandardCharsets.UTF_8));
+        }
+        return sDatasetVersion;
+    }
+
+    @WorkerThread
+    @Nullable
+    static Result get(@NonNull Context context, @NonNull String apkSha256) {
+        File cacheFile = getCacheFile(context, apkSha256);
+        if (!cacheFile.exists()) {
+            return null;
+        }
+        try (DataInputStream is = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)))) {
+            if (is.readInt() != FORMAT_VERSION || !getDatasetVersion(context).equals(is.readUTF())) {
+                // Outdated
+                cacheFile.delete();
+                return null;
+            }
+            List<String> allClasses = readStrings(is);
+            List<String> trackerClasses = readStrings(is);
+            int[] trackerCounts = readInts(is);
+            int[] libraryCounts = readInts(is);
+            List<String> nativeLibraries = readStrings(is);
+            // Mark as recently used
+            cacheFile.setLastModified(System.currentTimeMillis());
+            return new Result(allClasses, trackerClasses, trackerCounts, libraryCounts, nativeLibraries);
+        } catch (IOException e) {
+            Log.w(TAG, "Could not read cached scan result for %s", e, apkSha256);
+            cacheFile.delete();
+            return null;
+        }
+    }
+
+    @WorkerThread
+    static void put(@NonNull Context context, @NonNull String apkSha256, @NonNull Result result) {
+        File cacheFile = getCacheFile(context, apkSha256);
+        File tmpFile = new File(cacheFile.getParentFile(), cacheFile.getName() + ".tmp");
+        try (DataOutputStream os = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+            os.writeInt(FORMAT_VERSION);
+            os.writeUTF(getDatasetVersion(context));
+            writeStrings(os, result.allClasses);
+            writeStrings(os, result.trackerClasses);
+            writeInts(os, result.trackerCounts);
+            writeInts(os, result.libraryCounts);
+            writeStrings(os, result.nativeLibraries);
+        } catch (IOException e) {
+            Log.w(TAG, "Could not cache scan result for %s", e, apkSha256);
+            tmpFile.delete();
+            return;
+        }
+        if (!tmpFile.renameTo(cacheFile)) {
+            tmpFile.delete();
+            return;
+        }
+        trim(cacheFile.getParentFile());
+    }
+
+    /**
+     * Delete the least recently used entries exceeding {@link #MAX_ENTRIES}.
+     */
+    private static void trim(@Nullable File cacheDir) {
+        File[] files = cacheDir != null ? cacheDir.listFiles() : null;
+        if (files == null || files.length <= MAX_ENTRIES) {
+            return;
+        }
+        Arrays.sort(files, (o1, o2) -> Long.compare(o2.lastModified(), o1.lastModified()));
+        for (int i = MAX_ENTRIES; i < files.length; ++i) {
+            files[i].delete();
+        }
+    }
+
+    @NonNull
+    private static File getCacheFile(@NonNull Context context, @NonNull String apkSha256) {
+        File cacheDir = new File(context.getCacheDir(), CACHE_DIRECTORY);
+        cacheDir.mkdirs();
+        return new File(cacheDir, apkSha256);
+    }
+
+    private static void writeStrings(@NonNull DataOutputStream os, @NonNull List<String> strings) throws IOException {
+        os.writeInt(strings.size());
+        for (String string : strings) {
+            os.writeUTF(string);
+        }
+    }
+
+    @NonNull
+    private static List<String> readStrings(@NonNull DataInputStream is) throws IOException {
+        int size = is.readInt();
+        List<String> strings = new ArrayList<>(size);
+        for (int i = 0; i < size; ++i) {
+            strings.add(is.readUTF());
+        }
+        return strings;
+    }
+
+    private static void writeInts(@NonNull DataOutputStream os, @NonNull int[] ints) throws IOException {
+        os.writeInt(ints.length);
+        for (int i : ints) {
+            os.writeInt(i);
+        }
+    }
+
+    @NonNull
+    private static int[] readInts(@NonNull DataInputStream is) throws IOException {
+        int[] ints = new int[is.readInt()];
+        for (int i = 0; i < ints.length; ++i) {
+            ints[i] = is.readInt();
+        }
+        return ints;
+    }
+}
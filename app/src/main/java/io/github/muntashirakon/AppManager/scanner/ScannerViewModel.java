@@ -10,6 +10,7 @@ import android.os.Build;
 import android.util.Pair;
 
 import androidx.annotation.AnyThread;
+import androidx.annotation.GuardedBy;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.WorkerThread;
@@ -29,6 +30,8 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
@@ -38,6 +41,8 @@ import java.util.regex.Pattern;
 import io.github.muntashirakon.AppManager.BuildConfig;
 import io.github.muntashirakon.AppManager.R;
 import io.github.muntashirakon.AppManager.StaticDataset;
+import io.github.muntashirakon.AppManager.dex.DexClassNameReader;
+import io.github.muntashirakon.AppManager.dex.DexUtils;
 import io.github.muntashirakon.AppManager.fm.ContentType2;
 import io.github.muntashirakon.AppManager.scanner.vt.VirusTotal;
 import io.github.muntashirakon.AppManager.scanner.vt.VtFileReport;
@@ -60,7 +65,11 @@ public class ScannerViewModel extends AndroidViewModel implements VirusTotal.Ful
     private File mApkFile;
     private boolean mIsSummaryLoaded = false;
     private Uri mApkUri;
-    private int mDexVfsId;
+    private volatile int mDexVfsId;
+    private final Object mDexFileSystemLock = new Object();
+    @GuardedBy("mDexFileSystemLock")
+    @Nullable
+    private DexFileSystem mDexFileSystem;
     @Nullable
     private final VirusTotal mVt;
     @Nullable
@@ -71,6 +80,9 @@ public class ScannerViewModel extends AndroidViewModel implements VirusTotal.Ful
     private Collection<String> mNativeLibraries;
 
     private CountDownLatch mWaitForFile;
+    private CountDownLatch mWaitForSha256;
+    @Nullable
+    private String mApkSha256;
     private final FileCache mFileCache = new FileCache();
     private final MultithreadedExecutor mExecutor = MultithreadedExecutor.getNewInstance();
     private final MutableLiveData<Pair<String, String>[]> mApkChecksumsLiveData = new MutableLiveData<>();
@@ -107,6 +119,7 @@ public class ScannerViewModel extends AndroidViewModel implements VirusTotal.Ful
         if (mIsSummaryLoaded) return;
         mIsSummaryLoaded = true;
         mWaitForFile = new CountDownLatch(1);
+        mWaitForSha256 = new CountDownLatch(1);
         // Cache files
         mExecutor.submit(() -> {
             Thread.currentThread().setPriority(Thread.MAX_PRIORITY);
@@ -207,7 +220,12 @@ public class ScannerViewModel extends AndroidViewModel implements VirusTotal.Ful
         return mNativeLibraries;
     }
 
-    public Uri getUriFromClassName(String className) throws FileNotFoundException {
+    /**
+     * Get the URI of the smali file of the given class. The dex file system is mounted if it was not mounted already.
+     */
+    @WorkerThread
+    public Uri getUriFromClassName(String className) throws IOException {
+        getDexFileSystem();
         Path fsRoot = VirtualFileSystem.getFsRoot(mDexVfsId);
         if (fsRoot == null) {
             throw new FileNotFoundException("FS Root not found.");
@@ -232,7 +250,27 @@ public class ScannerViewModel extends AndroidViewModel implements VirusTotal.Ful
     private void generateApkChecksumsAndFetchScanReports() {
         waitForFile();
         Path file = Paths.getUnprivileged(mApkFile);
-        Pair<String, String>[] digests = ExUtils.exceptionAsNull(() -> DigestUtils.getDigests(file));
+        // SHA-256 is the key of the scan result cache, and loading classes waits for it. So, it is calculated
+        // before the rest of the digests.
+        Pair<String, String>[] sha256Digests;
+        try {
+            sha256Digests = ExUtils.exceptionAsNull(() -> DigestUtils.getDigests(file, DigestUtils.SHA_256));
+            if (sha256Digests != null) {
+                mApkSha256 = sha256Digests[0].second;
+            }
+        } finally {
+            mWaitForSha256.countDown();
+        }
+        Pair<String, String>[] digests = null;
+        if (sha256Digests != null) {
+            Pair<String, String>[] otherDigests = ExUtils.exceptionAsNull(() -> DigestUtils.getDigests(file,
+                    DigestUtils.MD5, DigestUtils.SHA_1, DigestUtils.SHA_384, DigestUtils.SHA_512));
+            if (otherDigests != null) {
+                //noinspection unchecked
+                digests = new Pair[]{otherDigests[0], otherDigests[1], sha256Digests[0], otherDigests[2],
+                        otherDigests[3]};
+            }
+        }
         mApkChecksumsLiveData.postValue(digests);
         if (mVt != null && digests != null && FeatureController.isVirusTotalEnabled()) {
             String md5 = digests[0].second;
@@ -272,32 +310,132 @@ public class ScannerViewModel extends AndroidViewModel implements VirusTotal.Ful
     @WorkerThread
     private void loadAllClasses() {
         waitForFile();
+        String apkSha256 = waitForSha256();
+        ScanResultCache.Result cachedResult = apkSha256 != null ? ScanResultCache.get(getApplication(), apkSha256) : null;
+        if (cachedResult != null) {
+            mNativeLibraries = cachedResult.nativeLibraries;
+            mAllClasses = cachedResult.allClasses;
+            mTrackerClasses = cachedResult.trackerClasses;
+            mAllClassesLiveData.postValue(mAllClasses);
+            postTrackers(cachedResult.trackerCounts);
+            if (BuildConfig.DEBUG) {
+                // Missing classes are not cached
+                loadLibraries();
+            } else postLibraries(cachedResult.libraryCounts);
+            return;
+        }
         try {
             NativeLibraries nativeLibraries = new NativeLibraries(mApkFile);
             mNativeLibraries = nativeLibraries.getUniqueLibs();
         } catch (Throwable e) {
             mNativeLibraries = Collections.emptyList();
         }
+        int[] trackerCounts;
+        int[] libraryCounts;
+        boolean classesLoaded = true;
         try {
-            mDexVfsId = VirtualFileSystem.mount(Uri.fromFile(mApkFile), Paths.getUnprivileged(mApkFile), ContentType2.DEX.getMimeType());
-            DexFileSystem dfs = (DexFileSystem) Objects.requireNonNull(VirtualFileSystem.getFileSystem(mDexVfsId));
-            mAllClasses = dfs.getDexClasses().getBaseClassNames();
-            Collections.sort(mAllClasses);
-        } catch (Throwable e) {
-            e.printStackTrace();
-            mAllClasses = Collections.emptyList();
+            int[][] counts = streamClasses();
+            trackerCounts = counts[0];
+            libraryCounts = counts[1];
+        } catch (Throwable th) {
+            // Fallback to loading the dex files
+            th.printStackTrace();
+            try {
+                mAllClasses = getDexFileSystem().getDexClasses().getBaseClassNames();
+                Collections.sort(mAllClasses);
+            } catch (Throwable e) {
+                e.printStackTrace();
+                mAllClasses = Collections.emptyList();
+                classesLoaded = false;
+            }
+            mAllClassesLiveData.postValue(mAllClasses);
+            // Load tracker and library info
+            trackerCounts = loadTrackers();
+            libraryCounts = loadLibraries();
+        }
+        if (apkSha256 != null && classesLoaded) {
+            ScanResultCache.put(getApplication(), apkSha256, new ScanResultCache.Result(mAllClasses, mTrackerClasses,
+                    trackerCounts, libraryCounts, new ArrayList<>(mNativeLibraries)));
         }
+    }
+
+    /**
+     * Read the class names directly from the dex files and match them against the trackers and libraries as they are
+     * read, one dex file per thread.
+     *
+     * @return Tracker and library hit counts
+     */
+    @WorkerThread
+    @NonNull
+    private int[][] streamClasses() throws IOException {
+        String[] trackerSignatures = StaticDataset.getTrackerCodeSignatures();
+        String[] libSignatures = getApplication().getResources().getStringArray(R.array.lib_signatures);
+        AtomicIntegerArray trackerSignatureCount = new AtomicIntegerArray(trackerSignatures.length);
+        AtomicIntegerArray libSignatureCount = new AtomicIntegerArray(libSignatures.length);
+        Set<String> allClasses = ConcurrentHashMap.newKeySet();
+        ConcurrentLinkedQueue<String> trackerClasses = new ConcurrentLinkedQueue<>();
+        ConcurrentLinkedQueue<String> missingClasses = new ConcurrentLinkedQueue<>();
+        AhoCorasick trackerAho = StaticDataset.getSearchableTrackerSignatures();
+        try (AhoCorasick libAho = new AhoCorasick(libSignatures)) {
+            DexClassNameReader.forEachClassName(mApkFile, className -> {
+                String baseClass = DexUtils.getClassNameWithoutInnerClasses(className);
+                // Nested classes can be located in a different dex file than their base class
+                if (!allClasses.add(baseClass) || baseClass.length() <= 8 || !baseClass.contains(".")) {
+                    return;
+                }
+                int[] matches = trackerAho.search(baseClass);
+                if (matches.length > 0) {
+                    trackerClasses.add(baseClass);
+                    for (int idx : matches) {
+                        trackerSignatureCount.incrementAndGet(idx);
+                    }
+                }
+                matches = libAho.search(baseClass);
+                if (matches.length > 0) {
+                    for (int idx : matches) {
+                        libSignatureCount.incrementAndGet(idx);
+                    }
+                } else if (isMissingLibrary(baseClass)) {
+                    missingClasses.add(baseClass);
+                }
+            });
+        }
+        mAllClasses = new ArrayList<>(allClasses);
+        Collections.sort(mAllClasses);
         mAllClassesLiveData.postValue(mAllClasses);
-        // Load tracker and library info
-        loadTrackers();
-        loadLibraries();
+        mTrackerClasses = new ArrayList<>(trackerClasses);
+        int[] trackerCounts = toArray(trackerSignatureCount);
+        postTrackers(trackerCounts);
+        int[] libraryCounts = toArray(libSignatureCount);
+        postLibraries(libraryCounts);
+        if (BuildConfig.DEBUG) {
+            mMissingClassesLiveData.postValue(new ArrayList<>(missingClasses));
+        }
+        return new int[][]{trackerCounts, libraryCounts};
     }
 
+    /**
+     * Mount the dex file system if it was not mounted already. Mounting loads all the dex files, and therefore, it is
+     * only done when the classes cannot be read directly or when a class has to be viewed.
+     */
     @WorkerThread
-    private void loadTrackers() {
-        if (mAllClasses == null) return;
-        List<SignatureInfo> trackerInfoList = new ArrayList<>();
-        String[] trackerNames = StaticDataset.getTrackerNames();
+    @NonNull
+    private DexFileSystem getDexFileSystem() throws IOException {
+        synchronized (mDexFileSystemLock) {
+            if (mDexFileSystem == null) {
+                waitForFile();
+                int vfsId = VirtualFileSystem.mount(Uri.fromFile(mApkFile), Paths.getUnprivileged(mApkFile),
+                        ContentType2.DEX.getMimeType());
+                mDexVfsId = vfsId;
+                mDexFileSystem = (DexFileSystem) Objects.requireNonNull(VirtualFileSystem.getFileSystem(vfsId));
+            }
+            return mDexFileSystem;
+        }
+    }
+
+    @WorkerThread
+    @NonNull
+    private int[] loadTrackers() {
         String[] trackerSignatures = StaticDataset.getTrackerCodeSignatures();
         AtomicIntegerArray signatureCount = new AtomicIntegerArray(trackerSignatures.length);
         mTrackerClasses = new ArrayList<>();
@@ -318,23 +456,29 @@ public class ScannerViewModel extends AndroidViewModel implements VirusTotal.Ful
                     });
             mTrackerClasses.addAll(matchedClasses);
         }
-        // Iterate over signatures again but this time list only the found ones.
-        for (int i = 0; i < trackerSignatures.length; i++) {
-            if (signatureCount.get(i) == 0) continue;
+        int[] trackerCounts = toArray(signatureCount);
+        postTrackers(trackerCounts);
+        return trackerCounts;
+    }
+
+    private void postTrackers(@NonNull int[] trackerCounts) {
+        List<SignatureInfo> trackerInfoList = new ArrayList<>();
+        String[] trackerNames = StaticDataset.getTrackerNames();
+        String[] trackerSignatures = StaticDataset.getTrackerCodeSignatures();
+        // List only the found ones
+        for (int i = 0; i < trackerSignatures.length && i < trackerCounts.length; i++) {
+            if (trackerCounts[i] == 0) continue;
             SignatureInfo signatureInfo = new SignatureInfo(trackerSignatures[i], trackerNames[i]);
-            signatureInfo.setCount(signatureCount.get(i));
+            signatureInfo.setCount(trackerCounts[i]);
             trackerInfoList.add(signatureInfo);
         }
         mTrackerClassesLiveData.postValue(trackerInfoList);
     }
 
-    public void loadLibraries() {
-        if (mAllClasses == null) return;
-        List<SignatureInfo> libraryInfoList = new ArrayList<>();
+    @NonNull
+    public int[] loadLibraries() {
         ArrayList<String> missingLibs = new ArrayList<>();
-        String[] libNames = getApplication().getResources().getStringArray(R.array.lib_names);
         String[] libSignatures = getApplication().getResources().getStringArray(R.array.lib_signatures);
-        String[] libTypes = getApplication().getResources().getStringArray(R.array.lib_types);
         // The following array is directly mapped to the arrays above
         AtomicIntegerArray signatureCount = new AtomicIntegerArray(libSignatures.length);
         try (AhoCorasick aho = new AhoCorasick(libSignatures)) {
@@ -348,26 +492,48 @@ public class ScannerViewModel extends AndroidViewModel implements VirusTotal.Ful
                             for (int idx : matches) {
                                 signatureCount.incrementAndGet(idx);
                             }
-                        } else if ((mPackageName != null
-                                && !className.startsWith(mPackageName))
-                                && !SIG_TO_IGNORE.matcher(className).matches()) {
+                        } else if (isMissingLibrary(className)) {
                             missingClasses.add(className);
                         }
                     });
             missingLibs.addAll(missingClasses);
         }
-        // Iterate over signatures again but this time list only the found ones.
-        for (int i = 0; i < libSignatures.length; i++) {
-            if (signatureCount.get(i) == 0) continue;
+        int[] libraryCounts = toArray(signatureCount);
+        postLibraries(libraryCounts);
+
+        if (BuildConfig.DEBUG) {
+            mMissingClassesLiveData.postValue(missingLibs);
+        }
+        return libraryCounts;
+    }
+
+    private void postLibraries(@NonNull int[] libraryCounts) {
+        List<SignatureInfo> libraryInfoList = new ArrayList<>();
+        String[] libNames = getApplication().getResources().getStringArray(R.array.lib_names);
+        String[] libSignatures = getApplication().getResources().getStringArray(R.array.lib_signatures);
+        String[] libTypes = getApplication().getResources().getStringArray(R.array.lib_types);
+        // List only the found ones
+        for (int i = 0; i < libSignatures.length && i < libraryCounts.length; i++) {
+            if (libraryCounts[i] == 0) continue;
             SignatureInfo signatureInfo = new SignatureInfo(libSignatures[i], libNames[i], libTypes[i]);
-            signatureInfo.setCount(signatureCount.get(i));
+            signatureInfo.setCount(libraryCounts[i]);
             libraryInfoList.add(signatureInfo);
         }
         mLibraryClassesLiveData.postValue(libraryInfoList);
+    }
 
-        if (BuildConfig.DEBUG) {
-            mMissingClassesLiveData.postValue(missingLibs);
+    private boolean isMissingLibrary(@NonNull String className) {
+        return (mPackageName != null && !className.startsWith(mPackageName))
+                && !SIG_TO_IGNORE.matcher(className).matches();
+    }
+
+    @NonNull
+    private static int[] toArray(@NonNull AtomicIntegerArray atomicIntegerArray) {
+        int[] array = new int[atomicIntegerArray.length()];
+        for (int i = 0; i < array.length; ++i) {
+            array[i] = atomicIntegerArray.get(i);
         }
+        return array;
     }
 
     @WorkerThread
@@ -379,6 +545,18 @@ public class ScannerViewModel extends AndroidViewModel implements VirusTotal.Ful
         }
     }
 
+    @WorkerThread
+    @Nullable
+    private String waitForSha256() {
+        try {
+            mWaitForSha256.await();
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+            return null;
+        }
+        return mApkSha256;
+    }
+
     private boolean mUploadingEnabled;
     private CountDownLatch mUploadingEnabledWatcher;
 
@@ -8,6 +8,7 @@ import android.graphics.drawable.Drawable;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.annotation.Px;
 
 import java.io.File;
 import java.io.FileInputStream;
@@ -23,6 +24,13 @@ import io.github.muntashirakon.io.IoUtils;
 
 class ImageFileCache {
     private static final long sLastModifiedDate = System.currentTimeMillis() - 604_800_000;
+    // Decoding buffer reused by each thread
+    private static final ThreadLocal<byte[]> sTempStorage = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[16 * 1024];
+        }
+    };
 
     private final File mCacheDir;
 
@@ -56,15 +64,31 @@ class ImageFileCache {
 
     @Nullable
     public Bitmap getImage(@NonNull String name) {
+        return getImage(name, 0);
+    }
+
+    /**
+     * Decode the image subsampled by the largest power of two that keeps its larger side no smaller than the target
+     * size.
+     *
+     * @param targetSize Larger side of the view in pixels, {@code 0} to decode the image in full
+     */
+    @Nullable
+    public Bitmap getImage(@NonNull String name, @Px int targetSize) {
         File iconFile = getImageFile(name);
-        if (iconFile.lastModified() >= sLastModifiedDate) {
-            try (FileInputStream fis = new FileInputStream(iconFile)) {
-                return BitmapFactory.decodeStream(fis);
-            } catch (IOException e) {
-                return null;
-            }
+        if (iconFile.lastModified() < sLastModifiedDate) {
+            return null;
         }
-        return null;
+        String path = iconFile.getAbsolutePath();
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inTempStorage = sTempStorage.get();
+        if (targetSize > 0) {
+            options.inJustDecodeBounds = true;
+            BitmapFactory.decodeFile(path, options);
+            options.inSampleSize = ImageLoader.calculateSampleSize(options.outWidth, options.outHeight, targetSize);
+            options.inJustDecodeBounds = false;
+        }
+        return BitmapFactory.decodeFile(path, options);
     }
 
     @Nullable
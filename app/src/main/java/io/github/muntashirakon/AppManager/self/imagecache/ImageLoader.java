@@ -6,10 +6,13 @@ import android.content.pm.PackageItemInfo;
 import android.content.pm.PackageManager;
 import android.graphics.Bitmap;
 import android.graphics.drawable.Drawable;
+import android.os.Process;
+import android.view.ViewGroup;
 import android.widget.ImageView;
 
 import androidx.annotation.AnyThread;
 import androidx.annotation.DrawableRes;
+import androidx.annotation.GuardedBy;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.Px;
@@ -21,13 +24,35 @@ import androidx.core.content.ContextCompat;
 import java.io.Closeable;
 import java.io.IOException;
 import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import io.github.muntashirakon.AppManager.utils.ContextUtils;
 import io.github.muntashirakon.AppManager.utils.ThreadUtils;
 import io.github.muntashirakon.AppManager.utils.UIUtils;
 
+/**
+ * Loads images into {@link ImageView}s asynchronously.
+ * <p>
+ * Images are cached in memory up to a fraction of the heap, and on disk in full size. Images loaded from the disk are
+ * subsampled to the size of the view. Requests for the same tag share a single load, and the most recent requests are
+ * loaded first by a small pool of threads. A request is dropped if its view is gone or bound to another tag by the time
+ * it is loaded, which keeps fast scrolling from queueing up images that are no longer visible.
+ */
 public class ImageLoader implements Closeable {
+    // Same as the recommendation in the Android documentation
+    private static final int MEMORY_CACHE_SIZE = (int) Math.min(Runtime.getRuntime().maxMemory() / 8,
+            Integer.MAX_VALUE);
+    private static final int DECODER_THREAD_COUNT = Math.min(4, Runtime.getRuntime().availableProcessors());
+
     @AnyThread
     public static void displayImage(@Nullable PackageItemInfo info, @Nullable ImageView imageView) {
         WeakReference<ImageView> ivRef = new WeakReference<>(imageView);
@@ -59,19 +84,38 @@ public class ImageLoader implements Closeable {
         return sInstance;
     }
 
-    private final LruCache<String, Bitmap> mMemoryCache = new LruCache<>(300);
+    private final LruCache<String, CachedImage> mMemoryCache = new LruCache<String, CachedImage>(MEMORY_CACHE_SIZE) {
+        @Override
+        protected int sizeOf(@NonNull String key, @NonNull CachedImage value) {
+            return value.bitmap.getAllocationByteCount();
+        }
+    };
     private final ImageFileCache mImageFileCache = new ImageFileCache();
+    // Requests waiting for each tag being loaded
+    @GuardedBy("mPendingRequests")
+    private final Map<String, List<ImageLoaderQueueItem>> mPendingRequests = new HashMap<>();
+    private final ExecutorService mDecoder;
     private boolean mIsClosed = false;
 
     private ImageLoader() {
+        ThreadPoolExecutor decoder = new ThreadPoolExecutor(DECODER_THREAD_COUNT, DECODER_THREAD_COUNT, 10,
+                TimeUnit.SECONDS, new LifoBlockingDeque<>(), r -> new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            r.run();
+        }, "ImageLoader"));
+        decoder.allowCoreThreadTimeOut(true);
+        mDecoder = decoder;
     }
 
+    /**
+     * Get the image in full size.
+     */
     @WorkerThread
     @Nullable
     public Bitmap getCachedImage(@NonNull String tag) {
-        Bitmap image = mMemoryCache.get(tag);
-        if (image != null) {
-            return image;
+        CachedImage image = mMemoryCache.get(tag);
+        if (image != null && image.targetSize == 0) {
+            return image.bitmap;
         }
         // Load from file system
         return mImageFileCache.getImage(tag);
@@ -80,34 +124,34 @@ public class ImageLoader implements Closeable {
     @UiThread
     public void displayImage(@NonNull String tag, @NonNull ImageView imageView,
                              @NonNull ImageFetcherInterface imageFetcherInterface) {
-        Bitmap image = mMemoryCache.get(tag);
-        if (image != null) {
-            imageView.setImageBitmap(image);
+        ImageLoaderQueueItem queueItem = new ImageLoaderQueueItem(tag, imageFetcherInterface, imageView);
+        CachedImage image = mMemoryCache.get(tag);
+        if (image != null && image.isSufficientFor(queueItem.targetSize)) {
+            imageView.setImageBitmap(image.bitmap);
         } else {
-            queueImage(tag, imageView, imageFetcherInterface);
+            queueImage(queueItem);
         }
     }
 
     @UiThread
     public void displayImage(@NonNull String tag, @Nullable PackageItemInfo info, @NonNull ImageView imageView) {
-        Bitmap image = mMemoryCache.get(tag);
-        if (image != null) {
-            imageView.setImageBitmap(image);
-        } else {
-            queueImage(tag, info, imageView);
-        }
-    }
-
-    @AnyThread
-    private void queueImage(@NonNull String tag, @Nullable PackageItemInfo info, @NonNull ImageView imageView) {
-        queueImage(tag, imageView, new PackageInfoImageFetcher(info));
+        displayImage(tag, imageView, new PackageInfoImageFetcher(info));
     }
 
     @AnyThread
-    private void queueImage(@NonNull String tag, @NonNull ImageView imageView,
-                            @NonNull ImageFetcherInterface imageFetcherInterface) {
-        ImageLoaderQueueItem queueItem = new ImageLoaderQueueItem(tag, imageFetcherInterface, imageView);
-        ThreadUtils.postOnBackgroundThread(new LoadQueueItem(queueItem));
+    private void queueImage(@NonNull ImageLoaderQueueItem queueItem) {
+        synchronized (mPendingRequests) {
+            List<ImageLoaderQueueItem> queueItems = mPendingRequests.get(queueItem.tag);
+            if (queueItems != null) {
+                // Already being loaded
+                queueItems.add(queueItem);
+                return;
+            }
+            queueItems = new ArrayList<>(1);
+            queueItems.add(queueItem);
+            mPendingRequests.put(queueItem.tag, queueItems);
+        }
+        mDecoder.submit(new LoadQueueItem(queueItem.tag, queueItem.mImageFetcherInterface));
     }
 
     @Override
@@ -261,75 +305,156 @@ public class ImageLoader implements Closeable {
     public static class ImageLoaderQueueItem {
         public final String tag;
         public final WeakReference<ImageView> imageView;
+        /**
+         * Larger side of the view in pixels, {@code 0} if the view has not been measured yet
+         */
+        @Px
+        public final int targetSize;
 
         private final ImageFetcherInterface mImageFetcherInterface;
 
+        @UiThread
         public ImageLoaderQueueItem(@NonNull String tag, @NonNull ImageFetcherInterface imageFetcherInterface,
                                     @NonNull ImageView imageView) {
             this.tag = tag;
             this.imageView = new WeakReference<>(imageView);
+            this.targetSize = getTargetSize(imageView);
             mImageFetcherInterface = imageFetcherInterface;
         }
     }
 
+    private static class CachedImage {
+        @NonNull
+        public final Bitmap bitmap;
+        /**
+         * The size the image was subsampled for, {@code 0} if it is in full size
+         */
+        @Px
+        public final int targetSize;
+
+        CachedImage(@NonNull Bitmap bitmap, @Px int targetSize) {
+            this.bitmap = bitmap;
+            this.targetSize = targetSize;
+        }
+
+        public boolean isSufficientFor(@Px int targetSize) {
+            return this.targetSize == 0 || (targetSize != 0 && targetSize <= this.targetSize);
+        }
+    }
+
+    // Runs the most recent requests first as they are the ones currently on screen
+    private static class LifoBlockingDeque<E> extends LinkedBlockingDeque<E> {
+        @Override
+        public boolean offer(E e) {
+            return offerFirst(e);
+        }
+    }
+
     private class LoadQueueItem implements Runnable {
-        private final ImageLoaderQueueItem mQueueItem;
+        @NonNull
+        private final String mTag;
+        @NonNull
+        private final ImageFetcherInterface mImageFetcherInterface;
 
-        LoadQueueItem(ImageLoaderQueueItem queueItem) {
-            mQueueItem = queueItem;
+        LoadQueueItem(@NonNull String tag, @NonNull ImageFetcherInterface imageFetcherInterface) {
+            mTag = tag;
+            mImageFetcherInterface = imageFetcherInterface;
         }
 
         @WorkerThread
         public void run() {
-            if (imageViewReusedOrClosed(mQueueItem)) return;
-            Bitmap image = mImageFileCache.getImage(mQueueItem.tag);
-            if (image != null) {
-                // Cache hit
-                mMemoryCache.put(mQueueItem.tag, image);
-            } else {
-                // Cache miss
-                ImageFetcherResult result = mQueueItem.mImageFetcherInterface.fetchImage(mQueueItem.tag);
-                if (result.bitmap == null) {
-                    // No image produced, try default
-                    DefaultImage defaultImage = result.defaultImage;
-                    String tag = defaultImage.getTag();
-                    if (tag == null) {
-                        // No tag listed, use the image directly
-                        image = defaultImage.getImage();
-                    } else {
-                        // Listed a tag, try cache first
-                        image = mMemoryCache.get(tag);
-                        if (image == null) {
-                            image = mImageFileCache.getImage(tag);
-                        }
-                        if (image == null) {
-                            // Cache miss
-                            image = defaultImage.getImage();
-                            mMemoryCache.put(tag, image);
-                            try {
-                                mImageFileCache.putImage(tag, image);
-                            } catch (IOException ignore) {
-                            }
-                        }
+            int targetSize = -1;
+            synchronized (mPendingRequests) {
+                List<ImageLoaderQueueItem> queueItems = Objects.requireNonNull(mPendingRequests.get(mTag));
+                Iterator<ImageLoaderQueueItem> it = queueItems.iterator();
+                while (it.hasNext()) {
+                    ImageLoaderQueueItem queueItem = it.next();
+                    if (imageViewReusedOrClosed(queueItem)) {
+                        it.remove();
+                    } else if (targetSize != 0) {
+                        targetSize = queueItem.targetSize == 0 ? 0 : Math.max(targetSize, queueItem.targetSize);
                     }
+                }
+                if (queueItems.isEmpty()) {
+                    // Nobody is waiting for the image anymore
+                    mPendingRequests.remove(mTag);
+                    return;
+                }
+            }
+            Bitmap image = null;
+            List<ImageLoaderQueueItem> queueItems;
+            try {
+                image = loadImage(mTag, mImageFetcherInterface, targetSize);
+            } finally {
+                // The image is in the memory cache by now
+                synchronized (mPendingRequests) {
+                    queueItems = mPendingRequests.remove(mTag);
+                }
+            }
+            for (ImageLoaderQueueItem queueItem : Objects.requireNonNull(queueItems)) {
+                if (imageViewReusedOrClosed(queueItem)) continue;
+                if (targetSize != 0 && (queueItem.targetSize == 0 || queueItem.targetSize > targetSize)) {
+                    // Joined after the load had started, and needs a larger image
+                    queueImage(queueItem);
                 } else {
-                    image = result.bitmap;
-                    if (result.cacheInMemory) {
-                        mMemoryCache.put(mQueueItem.tag, image);
-                    }
-                    if (result.persistCache) {
-                        try {
-                            mImageFileCache.putImage(result.tag, image);
-                        } catch (IOException ignore) {
-                        }
-                    }
+                    ThreadUtils.postOnMainThread(new LoadImageInImageView(image, queueItem));
                 }
             }
-            if (imageViewReusedOrClosed(mQueueItem)) return;
-            ThreadUtils.postOnMainThread(new LoadImageInImageView(image, mQueueItem));
         }
     }
 
+    @WorkerThread
+    @NonNull
+    private Bitmap loadImage(@NonNull String tag, @NonNull ImageFetcherInterface imageFetcherInterface,
+                             @Px int targetSize) {
+        Bitmap image = mImageFileCache.getImage(tag, targetSize);
+        if (image != null) {
+            // Cache hit
+            mMemoryCache.put(tag, new CachedImage(image, targetSize));
+            return image;
+        }
+        // Cache miss
+        ImageFetcherResult result = imageFetcherInterface.fetchImage(tag);
+        if (result.bitmap == null) {
+            // No image produced, try default
+            DefaultImage defaultImage = result.defaultImage;
+            String defaultTag = defaultImage.getTag();
+            if (defaultTag == null) {
+                // No tag listed, use the image directly
+                return downsample(defaultImage.getImage(), targetSize);
+            }
+            // Listed a tag, try cache first
+            CachedImage cachedImage = mMemoryCache.get(defaultTag);
+            if (cachedImage != null && cachedImage.isSufficientFor(targetSize)) {
+                return cachedImage.bitmap;
+            }
+            image = mImageFileCache.getImage(defaultTag, targetSize);
+            if (image == null) {
+                // Cache miss
+                image = defaultImage.getImage();
+                try {
+                    mImageFileCache.putImage(defaultTag, image);
+                } catch (IOException ignore) {
+                }
+                image = downsample(image, targetSize);
+            }
+            mMemoryCache.put(defaultTag, new CachedImage(image, targetSize));
+            return image;
+        }
+        if (result.persistCache) {
+            // Persisted in full size so that it can be subsampled for any view
+            try {
+                mImageFileCache.putImage(result.tag, result.bitmap);
+            } catch (IOException ignore) {
+            }
+        }
+        image = downsample(result.bitmap, targetSize);
+        if (result.cacheInMemory) {
+            mMemoryCache.put(tag, new CachedImage(image, targetSize));
+        }
+        return image;
+    }
+
     // Used to display bitmap in the UI thread
     private class LoadImageInImageView implements Runnable {
         private final Bitmap mImage;
@@ -345,10 +470,7 @@ public class ImageLoader implements Closeable {
             if (imageViewReusedOrClosed(mQueueItem)) return;
             ImageView iv = mQueueItem.imageView.get();
             if (iv != null) {
-                Object tag = iv.getTag();
-                if (tag == null || tag.equals(mQueueItem.tag)) {
-                    iv.setImageBitmap(mImage);
-                }
+                iv.setImageBitmap(mImage);
             }
         }
     }
@@ -356,6 +478,58 @@ public class ImageLoader implements Closeable {
     @AnyThread
     private boolean imageViewReusedOrClosed(@NonNull ImageLoaderQueueItem imageLoaderQueueItem) {
         ImageView iv = imageLoaderQueueItem.imageView.get();
-        return mIsClosed || iv == null;
+        if (mIsClosed || iv == null) {
+            return true;
+        }
+        // The view is now bound to another image
+        Object tag = iv.getTag();
+        return tag != null && !tag.equals(imageLoaderQueueItem.tag);
+    }
+
+    @UiThread
+    @Px
+    private static int getTargetSize(@NonNull ImageView imageView) {
+        int width = imageView.getWidth();
+        int height = imageView.getHeight();
+        if (width == 0 || height == 0) {
+            // Not laid out yet, use the size in the layout if it is fixed
+            ViewGroup.LayoutParams params = imageView.getLayoutParams();
+            if (params == null) {
+                return 0;
+            }
+            width = Math.max(params.width, 0);
+            height = Math.max(params.height, 0);
+            if (width == 0 || height == 0) {
+                return 0;
+            }
+        }
+        return Math.max(width, height);
+    }
+
+    /**
+     * Calculate the largest power of two by which an image can be subsampled without its larger side becoming smaller
+     * than the target size.
+     */
+    static int calculateSampleSize(int width, int height, @Px int targetSize) {
+        int sampleSize = 1;
+        if (targetSize <= 0) {
+            return sampleSize;
+        }
+        int size = Math.max(width, height);
+        while (size / (sampleSize * 2) >= targetSize) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    @WorkerThread
+    @NonNull
+    private static Bitmap downsample(@NonNull Bitmap bitmap, @Px int targetSize) {
+        int sampleSize = calculateSampleSize(bitmap.getWidth(), bitmap.getHeight(), targetSize);
+        if (sampleSize == 1) {
+            return bitmap;
+        }
+        return Bitmap.createScaledBitmap(bitmap, bitmap.getWidth() / sampleSize, bitmap.getHeight() / sampleSize,
+                true);
     }
 }
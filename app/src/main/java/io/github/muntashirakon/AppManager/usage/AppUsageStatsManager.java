@@ -174,6 +174,10 @@ public class AppUsageStatsManager {
      * a running application. This is a valid assumption since <code>Activity#onPause()</code> is
      * called whenever an app goes to background and <code>Activity#onResume</code> is called
      * whenever an app appears in foreground.
+     * <p>
+     * If the interval consists of whole days, the usage is calculated per day, and the days that are
+     * final are taken from {@link UsageStatsStore}. Sessions spanning midnight are therefore not
+     * counted, the same as in the usage of a single day.
      *
      * @param interval Usage interval
      * @return A list of package usage
@@ -184,21 +188,45 @@ public class AppUsageStatsManager {
     @NonNull
     public List<PackageUsageInfo> getUsageStats(@NonNull TimeInterval interval, @UserIdInt int userId)
             throws RemoteException, SecurityException {
-        List<PackageUsageInfo> packageUsageInfoList = new ArrayList<>();
-        int _try = 5; // try to get usage stats at most 5 times
-        Throwable re;
-        do {
-            try {
-                packageUsageInfoList.addAll(getUsageStatsInternal(interval, userId));
-                re = null;
-            } catch (Throwable e) {
-                re = e;
+        List<TimeInterval> days = UsageStatsStore.splitIntoDays(interval);
+        // Data usage before M is only available since boot
+        boolean dataUsagePerDay = days != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.M;
+        List<UsageStatsStore.DayUsage> dayUsages = new ArrayList<>();
+        if (days == null) {
+            dayUsages.add(getDayUsage(interval, userId, false));
+        } else {
+            long now = System.currentTimeMillis();
+            for (TimeInterval day : days) {
+                if (day.getStartTime() > now) {
+                    // No usage in the future
+                    break;
+                }
+                boolean isFinal = UsageStatsStore.isFinal(day, now);
+                UsageStatsStore.DayUsage dayUsage = isFinal ? UsageStatsStore.get(mContext, userId, day) : null;
+                if (dayUsage == null || (dataUsagePerDay && dayUsage.mobileData == null)) {
+                    dayUsage = getDayUsage(day, userId, dataUsagePerDay);
+                    // A failure throws, and therefore, an empty day is stored as well to avoid the retries
+                    if (isFinal) {
+                        UsageStatsStore.put(mContext, userId, day, dayUsage);
+                    }
+                }
+                dayUsages.add(dayUsage);
             }
-        } while (0 != --_try && packageUsageInfoList.isEmpty());
-        if (re != null) {
-            throw (RemoteException) (new RemoteException(re.getMessage()).initCause(re));
         }
-        return packageUsageInfoList;
+        SparseArrayCompat<DataUsage> mobileData;
+        SparseArrayCompat<DataUsage> wifiData;
+        if (dataUsagePerDay) {
+            mobileData = new SparseArrayCompat<>();
+            wifiData = new SparseArrayCompat<>();
+            for (UsageStatsStore.DayUsage dayUsage : dayUsages) {
+                addDataUsage(mobileData, Objects.requireNonNull(dayUsage.mobileData));
+                addDataUsage(wifiData, Objects.requireNonNull(dayUsage.wifiData));
+            }
+        } else {
+            mobileData = getMobileData(interval);
+            wifiData = getWifiData(interval);
+        }
+        return getPackageUsageInfoList(dayUsages, mobileData, wifiData, userId);
     }
 
     @RequiresPermission("android.permission.PACKAGE_USAGE_STATS")
@@ -309,9 +337,8 @@ public class AppUsageStatsManager {
      * @return A list of package usage
      */
     @NonNull
-    private List<PackageUsageInfo> getUsageStatsInternal(@NonNull TimeInterval interval,
-                                                         @UserIdInt int userId) {
-        List<PackageUsageInfo> screenTimeList = new ArrayList<>();
+    private List<UsageStatsStore.PackageUsage> getPackageUsages(@NonNull TimeInterval interval,
+                                                                @UserIdInt int userId) {
         Map<String, PerPackageUsageInternal> perPackageUsageMap = new HashMap<>();
         // Get events
         List<UsageEvents.Event> events = UsageStatsManagerCompat.queryEventsSorted(interval.getStartTime(), interval.getEndTime(), userId, USUAL_ACTIVITY_EVENTS);
@@ -348,28 +375,79 @@ public class AppUsageStatsManager {
                 usage.setLastStartTime(event.getTimeStamp());
             }
         }
-        SparseArrayCompat<DataUsage> mobileData = getMobileData(interval);
-        SparseArrayCompat<DataUsage> wifiData = getWifiData(interval);
+        List<UsageStatsStore.PackageUsage> packageUsages = new ArrayList<>(perPackageUsageMap.size());
         for (PerPackageUsageInternal usage : perPackageUsageMap.values()) {
-            // Skip uninstalled packages?
-            ApplicationInfo applicationInfo = ExUtils.exceptionAsNull(() -> PackageManagerCompat
-                    .getApplicationInfo(usage.packageName, MATCH_UNINSTALLED_PACKAGES
-                            | PackageManagerCompat.MATCH_STATIC_SHARED_AND_SDK_LIBRARIES, userId));
-            PackageUsageInfo packageUsageInfo = new PackageUsageInfo(mContext, usage.packageName, userId, applicationInfo);
-            packageUsageInfo.timesOpened = usage.accessCount;
-            packageUsageInfo.lastUsageTime = usage.lastUsed;
-            packageUsageInfo.screenTime = usage.screenTime;
-            int uid = applicationInfo != null ? applicationInfo.uid : 0;
-            if (mobileData.containsKey(uid)) {
-                packageUsageInfo.mobileData = mobileData.get(uid);
-            } else packageUsageInfo.mobileData = DataUsage.EMPTY;
-            if (wifiData.containsKey(uid)) {
-                packageUsageInfo.wifiData = wifiData.get(uid);
-            } else packageUsageInfo.wifiData = DataUsage.EMPTY;
-            packageUsageInfo.entries = usage.entries;
-            screenTimeList.add(packageUsageInfo);
-        }
-        return screenTimeList;
+            packageUsages.add(new UsageStatsStore.PackageUsage(usage.packageName, usage.screenTime, usage.lastUsed,
+                    usage.accessCount, usage.entries));
+        }
+        return packageUsages;
+    }
+
+    @NonNull
+    private UsageStatsStore.DayUsage getDayUsage(@NonNull TimeInterval interval, @UserIdInt int userId,
+                                                 boolean withDataUsage) throws RemoteException {
+        List<UsageStatsStore.PackageUsage> packageUsages = new ArrayList<>();
+        int _try = 5; // try to get usage stats at most 5 times
+        Throwable re;
+        do {
+            try {
+                packageUsages.addAll(getPackageUsages(interval, userId));
+                re = null;
+            } catch (Throwable e) {
+                re = e;
+            }
+        } while (0 != --_try && packageUsages.isEmpty());
+        if (re != null) {
+            throw (RemoteException) (new RemoteException(re.getMessage()).initCause(re));
+        }
+        if (!withDataUsage) {
+            return new UsageStatsStore.DayUsage(packageUsages, null, null);
+        }
+        return new UsageStatsStore.DayUsage(packageUsages, getMobileData(interval), getWifiData(interval));
+    }
+
+    @NonNull
+    private List<PackageUsageInfo> getPackageUsageInfoList(@NonNull List<UsageStatsStore.DayUsage> dayUsages,
+                                                           @NonNull SparseArrayCompat<DataUsage> mobileData,
+                                                           @NonNull SparseArrayCompat<DataUsage> wifiData,
+                                                           @UserIdInt int userId) {
+        Map<String, PackageUsageInfo> packageUsageInfoMap = new HashMap<>();
+        for (UsageStatsStore.DayUsage dayUsage : dayUsages) {
+            for (UsageStatsStore.PackageUsage usage : dayUsage.packages) {
+                PackageUsageInfo packageUsageInfo = packageUsageInfoMap.get(usage.packageName);
+                if (packageUsageInfo == null) {
+                    // Skip uninstalled packages?
+                    ApplicationInfo applicationInfo = ExUtils.exceptionAsNull(() -> PackageManagerCompat
+                            .getApplicationInfo(usage.packageName, MATCH_UNINSTALLED_PACKAGES
+                                    | PackageManagerCompat.MATCH_STATIC_SHARED_AND_SDK_LIBRARIES, userId));
+                    packageUsageInfo = new PackageUsageInfo(mContext, usage.packageName, userId, applicationInfo);
+                    int uid = applicationInfo != null ? applicationInfo.uid : 0;
+                    if (mobileData.containsKey(uid)) {
+                        packageUsageInfo.mobileData = mobileData.get(uid);
+                    } else packageUsageInfo.mobileData = DataUsage.EMPTY;
+                    if (wifiData.containsKey(uid)) {
+                        packageUsageInfo.wifiData = wifiData.get(uid);
+                    } else packageUsageInfo.wifiData = DataUsage.EMPTY;
+                    packageUsageInfo.entries = new ArrayList<>();
+                    packageUsageInfoMap.put(usage.packageName, packageUsageInfo);
+                }
+                packageUsageInfo.timesOpened += usage.timesOpened;
+                packageUsageInfo.lastUsageTime = Math.max(packageUsageInfo.lastUsageTime, usage.lastUsed);
+                packageUsageInfo.screenTime += usage.screenTime;
+                Objects.requireNonNull(packageUsageInfo.entries).addAll(usage.entries);
+            }
+        }
+        return new ArrayList<>(packageUsageInfoMap.values());
+    }
+
+    private static void addDataUsage(@NonNull SparseArrayCompat<DataUsage> total,
+                                     @NonNull SparseArrayCompat<DataUsage> dataUsages) {
+        for (int i = 0; i < dataUsages.size(); ++i) {
+            int uid = dataUsages.keyAt(i);
+            DataUsage dataUsage = total.get(uid);
+            total.put(uid, dataUsage != null ? DataUsage.fromDataUsage(dataUsage, dataUsages.valueAt(i))
+                    : dataUsages.valueAt(i));
+        }
     }
 
     @SuppressLint("InlinedApi") // These are constant values, API compatibility does not apply
@@ -0,0 +1,270 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package io.github.muntashirakon.AppManager.usage;
+
+import android.annotation.UserIdInt;
+import android.content.Context;
+import android.text.format.DateUtils;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
+import androidx.collection.LruCache;
+import androidx.collection.SparseArrayCompat;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import io.github.muntashirakon.AppManager.logs.Log;
+
+/**
+ * Persistent store of the usage of each package aggregated per day and per user. The usage of a day does not change
+ * once the day is over, and therefore, only the recent days have to be calculated from the usage events. The day
+ * before the current day is still considered recent because the network stats buckets may arrive late.
+ */
+final class UsageStatsStore {
+    public static final String TAG = UsageStatsStore.class.getSimpleName();
+
+    static final class PackageUsage {
+        @NonNull
+        public final String packageName;
+        public final long screenTime;
+        public final long lastUsed;
+        public final int timesOpened;
+        @NonNull
+        public final List<PackageUsageInfo.Entry> entries;
+
+        PackageUsage(@NonNull String packageName, long screenTime, long lastUsed, int timesOpened,
+                     @NonNull List<PackageUsageInfo.Entry> entries) {
+            this.packageName = packageName;
+            this.screenTime = screenTime;
+            this.lastUsed = lastUsed;
+            this.timesOpened = timesOpened;
+            this.entries = Collections.unmodifiableList(entries);
+        }
+    }
+
+    static final class DayUsage {
+        @NonNull
+        public final List<PackageUsage> packages;
+        // Keyed by UID, null if not calculated per day
+        @Nullable
+        public final SparseArrayCompat<AppUsageStatsManager.DataUsage> mobileData;
+        @Nullable
+        public final SparseArrayCompat<AppUsageStatsManager.DataUsage> wifiData;
+
+        DayUsage(@NonNull List<PackageUsage> packages,
+                 @Nullable SparseArrayCompat<AppUsageStatsManager.DataUsage> mobileData,
+                 @Nullable SparseArrayCompat<AppUsageStatsManager.DataUsage> wifiData) {
+            this.packages = Collections.unmodifiableList(packages);
+            this.mobileData = mobileData;
+            this.wifiData = wifiData;
+        }
+    }
+
+    private static final int FORMAT_VERSION = 1;
+    private static final String CACHE_DIRECTORY = "usage_stats";
+    // A month for each of a few users
+    private static final int MAX_ENTRIES = 128;
+    private static final int MAX_ENTRIES_IN_MEMORY = 32;
+    // The usage of a day may still change during this period after the day is over
+    private static final long MUTABLE_PERIOD = DateUtils.DAY_IN_MILLIS;
+
+    private static final LruCache<String, DayUsage> sDayUsageCache = new LruCache<>(MAX_ENTRIES_IN_MEMORY);
+
+    /**
+     * Split the interval into days.
+     *
+     * @return The days in the interval, or {@code null} if the interval does not consist of whole days
+     */
+    @Nullable
+    static List<TimeInterval> splitIntoDays(@NonNull TimeInterval interval) {
+        List<TimeInterval> days = new ArrayList<>();
+        long startTime = interval.getStartTime();
+        while (startTime <= interval.getEndTime()) {
+            TimeInterval day = UsageUtils.getDayBounds(startTime);
+            if (day.getStartTime() != startTime || day.getEndTime() > interval.getEndTime()) {
+                return null;
+            }
+            days.add(day);
+            startTime = day.getEndTime() + 1;
+        }
+        return days.isEmpty() ? null : days;
+    }
+
+    /**
+     * Whether the usage of the day can no longer change, and therefore, can be stored.
+     */
+    static boolean isFinal(@NonNull TimeInterval day, long now) {
+        return day.getEndTime() + MUTABLE_PERIOD < now;
+    }
+
+    /**
+     * Get the usage of a day that is final. An empty usage is returned if the day was stored without any usage.
+     */
+    @WorkerThread
+    @Nullable
+    static DayUsage get(@NonNull Context context, @UserIdInt int userId, @NonNull TimeInterval day) {
+        String key = getKey(userId, day);
+        DayUsage dayUsage = sDayUsageCache.get(key);
+        if (dayUsage != null) {
+            return dayUsage;
+        }
+        File storeFile = getStoreFile(context, key);
+        if (!storeFile.exists()) {
+            return null;
+        }
+        try (DataInputStream is = new DataInputStream(new BufferedInputStream(new FileInputStream(storeFile)))) {
+            if (is.readInt() != FORMAT_VERSION) {
+                // Outdated
+                storeFile.delete();
+                return null;
+            }
+            int packageCount = is.readInt();
+            List<PackageUsage> packages = new ArrayList<>(packageCount);
+            for (int i = 0; i < packageCount; ++i) {
+                String packageName = is.readUTF();
+                long screenTime = is.readLong();
+                long lastUsed = is.readLong();
+                int timesOpened = is.readInt();
+                int entryCount = is.readInt();
+                List<PackageUsageInfo.Entry> entries = new ArrayList<>(entryCount);
+                for (int j = 0; j < entryCount; ++j) {
+                    entries.add(new PackageUsageInfo.Entry(is.readLong(), is.readLong()));
+                }
+                packages.add(new PackageUsage(packageName, screenTime, lastUsed, timesOpened, entries));
+            }
+            SparseArrayCompat<AppUsageStatsManager.DataUsage> mobileData = null;
+            SparseArrayCompat<AppUsageStatsManager.DataUsage> wifiData = null;
+            if (is.readBoolean()) {
+                mobileData = readDataUsage(is);
+                wifiData = readDataUsage(is);
+            }
+            dayUsage = new DayUsage(packages, mobileData, wifiData);
+            // Mark as recently used
+            storeFile.setLastModified(System.currentTimeMillis());
+            sDayUsageCache.put(key, dayUsage);
+            return dayUsage;
+        } catch (IOException e) {
+            Log.w(TAG, "Could not read usage of %s", e, key);
+            storeFile.delete();
+            return null;
+        }
+    }
+
+    /**
+     * Store the usage of a day that is final. An empty usage is also stored so that it is not calculated again.
+     */
+    @WorkerThread
+    static void put(@NonNull Context context, @UserIdInt int userId, @NonNull TimeInterval day,
+                    @NonNull DayUsage dayUsage) {
+        String key = getKey(userId, day);
+        sDayUsageCache.put(key, dayUsage);
+        File storeFile = getStoreFile(context, key);
+        File tmpFile;
+        try {
+            // A unique name so that concurrent writers of the same day do not clash
+            tmpFile = File.createTempFile(key, ".tmp", storeFile.getParentFile());
+        } catch (IOException e) {
+            Log.w(TAG, "Could not store usage of %s", e, key);
+            return;
+        }
+        try (DataOutputStream os = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+            os.writeInt(FORMAT_VERSION);
+            os.writeInt(dayUsage.packages.size());
+            for (PackageUsage packageUsage : dayUsage.packages) {
+                os.writeUTF(packageUsage.packageName);
+                os.writeLong(packageUsage.screenTime);
+                os.writeLong(packageUsage.lastUsed);
+                os.writeInt(packageUsage.timesOpened);
+                os.writeInt(packageUsage.entries.size());
+                for (PackageUsageInfo.Entry entry : packageUsage.entries) {
+                    os.writeLong(entry.startTime);
+                    os.writeLong(entry.endTime);
+                }
+            }
+            boolean hasDataUsage = dayUsage.mobileData != null && dayUsage.wifiData != null;
+            os.writeBoolean(hasDataUsage);
+            if (hasDataUsage) {
+                writeDataUsage(os, dayUsage.mobileData);
+                writeDataUsage(os, dayUsage.wifiData);
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Could not store usage of %s", e, key);
+            tmpFile.delete();
+            return;
+        }
+        if (!tmpFile.renameTo(storeFile)) {
+            tmpFile.delete();
+            return;
+        }
+        trim(storeFile.getParentFile());
+    }
+
+    /**
+     * Delete the least recently used entries exceeding {@link #MAX_ENTRIES}.
+     */
+    private static void trim(@Nullable File storeDir) {
+        File[] files = storeDir != null ? storeDir.listFiles() : null;
+        if (files == null || files.length <= MAX_ENTRIES) {
+            return;
+        }
+        Arrays.sort(files, (o1, o2) -> Long.compare(o2.lastModified(), o1.lastModified()));
+        for (int i = MAX_ENTRIES; i < files.length; ++i) {
+            files[i].delete();
+        }
+    }
+
+    @VisibleForTesting
+    static void clearMemoryCache() {
+        sDayUsageCache.evictAll();
+    }
+
+    @NonNull
+    private static String getKey(@UserIdInt int userId, @NonNull TimeInterval day) {
+        return userId + "_" + day.getStartTime();
+    }
+
+    @NonNull
+    private static File getStoreFile(@NonNull Context context, @NonNull String key) {
+        File storeDir = new File(context.getCacheDir(), CACHE_DIRECTORY);
+        storeDir.mkdirs();
+        return new File(storeDir, key);
+    }
+
+    private static void writeDataUsage(@NonNull DataOutputStream os,
+                                       @NonNull SparseArrayCompat<AppUsageStatsManager.DataUsage> dataUsages)
+            throws IOException {
+        int size = dataUsages.size();
+        os.writeInt(size);
+        for (int i = 0; i < size; ++i) {
+            AppUsageStatsManager.DataUsage dataUsage = dataUsages.valueAt(i);
+            os.writeInt(dataUsages.keyAt(i));
+            os.writeLong(dataUsage.getTx());
+            os.writeLong(dataUsage.getRx());
+        }
+    }
+
+    @NonNull
+    private static SparseArrayCompat<AppUsageStatsManager.DataUsage> readDataUsage(@NonNull DataInputStream is)
+            throws IOException {
+        int size = is.readInt();
+        SparseArrayCompat<AppUsageStatsManager.DataUsage> dataUsages = new SparseArrayCompat<>(size);
+        for (int i = 0; i < size; ++i) {
+            int uid = is.readInt();
+            dataUsages.put(uid, new AppUsageStatsManager.DataUsage(is.readLong(), is.readLong()));
+        }
+        return dataUsages;
+    }
+}
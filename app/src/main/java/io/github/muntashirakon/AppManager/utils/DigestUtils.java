@@ -154,10 +154,16 @@ public class DigestUtils {
     @WorkerThread
     @NonNull
     public static Pair<String, String>[] getDigests(@NonNull Path file) throws IOException {
+        return getDigests(file, MD5, SHA_1, SHA_256, SHA_384, SHA_512);
+    }
+
+    @WorkerThread
+    @NonNull
+    public static Pair<String, String>[] getDigests(@NonNull Path file, @Algorithm String... algorithms)
+            throws IOException {
         if (!file.isFile()) {
             throw new IOException(file + " is not a file.");
         }
-        @Algorithm String[] algorithms = new String[]{MD5, SHA_1, SHA_256, SHA_384, SHA_512};
         MessageDigest[] messageDigests = new MessageDigest[algorithms.length];
         @SuppressWarnings("unchecked")
         Pair<String, String>[] digests = new Pair[algorithms.length];
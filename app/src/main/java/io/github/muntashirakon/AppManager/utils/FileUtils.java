@@ -22,13 +22,17 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.WorkerThread;
 
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.math.BigInteger;
+import java.nio.channels.Channels;
 import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.Objects;
 import java.util.zip.ZipEntry;
 
@@ -45,6 +49,9 @@ import io.github.muntashirakon.io.Paths;
 public final class FileUtils {
     public static final String TAG = FileUtils.class.getSimpleName();
 
+    // Large enough for the kernel to do the transfer in a few calls, small enough to update the progress regularly
+    private static final long TRANSFER_CHUNK_SIZE = 8 * 1024 * 1024;
+
     @AnyThread
     public static boolean isZip(@NonNull Path path) throws IOException {
         int header;
@@ -142,6 +149,33 @@ public final class FileUtils {
         });
     }
 
+    /**
+     * Copy a range of bytes of a file to a stream. If the stream is backed by a file descriptor, the bytes are
+     * transferred by the kernel without being copied into the user space.
+     *
+     * @param totalSize Total size of all the transfers. Only used for handling progress.
+     */
+    @WorkerThread
+    public static long copy(@NonNull FileChannel in, long position, long count, @NonNull OutputStream out,
+                            long totalSize, @Nullable ProgressHandler progressHandler) throws IOException {
+        float lastProgress = progressHandler != null ? progressHandler.getLastProgress() : 0;
+        WritableByteChannel outChannel = out instanceof FileOutputStream ? ((FileOutputStream) out).getChannel()
+                : Channels.newChannel(out);
+        long transferred = 0;
+        while (transferred < count) {
+            long n = in.transferTo(position + transferred, Math.min(count - transferred, TRANSFER_CHUNK_SIZE),
+                    outChannel);
+            if (n <= 0) {
+                throw new EOFException("Unexpected end of file at " + (position + transferred));
+            }
+            transferred += n;
+            if (progressHandler != null) {
+                progressHandler.postUpdate(100, lastProgress + (transferred * 100f / totalSize));
+            }
+        }
+        return transferred;
+    }
+
     @WorkerThread
     public static void copyFromAsset(@NonNull Context context, @NonNull String fileName, @NonNull Path dest)
             throws IOException {
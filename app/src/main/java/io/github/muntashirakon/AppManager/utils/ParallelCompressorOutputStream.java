@@ -0,0 +1,208 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package io.github.muntashirakon.AppManager.utils;
+
+import androidx.annotation.NonNull;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compresses the input in fixed-size blocks using multiple threads. Each block is written as an independent member
+ * (i.e. a complete GZip or BZip2 stream), and the members are concatenated in order. The output can therefore be read
+ * by any decompressor that supports concatenated streams, e.g. {@link TarUtils#createDecompressedStream}.
+ * <p>
+ * All the streams share a single pool of compressor threads, one per core, and a limited number of blocks in flight.
+ * Many streams open at once, such as in batch backups, therefore cannot multiply the threads or the memory used.
+ */
+public class ParallelCompressorOutputStream extends OutputStream {
+    // Similar to pigz, but larger since no dictionary is shared between the blocks
+    public static final int GZIP_BLOCK_SIZE = 1024 * 1024;
+    // Fits into a single BZip2 block of the highest block size even if the initial run-length encoding expands the
+    // data by 25% (its worst case)
+    public static final int BZIP2_BLOCK_SIZE = (BZip2CompressorOutputStream.MAX_BLOCKSIZE * 100_000 - 20) * 4 / 5;
+
+    private static final int MAX_THREADS = Runtime.getRuntime().availableProcessors();
+    // Blocks waiting to be compressed or written across all the streams
+    private static final int MAX_BLOCKS_IN_FLIGHT = MAX_THREADS * 2;
+
+    private static final ThreadPoolExecutor sExecutor;
+    private static final Semaphore sBlockPermits = new Semaphore(MAX_BLOCKS_IN_FLIGHT);
+
+    static {
+        sExecutor = new ThreadPoolExecutor(MAX_THREADS, MAX_THREADS, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+        sExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    @NonNull
+    private final OutputStream mOut;
+    @NonNull
+    @TarUtils.TarType
+    private final String mType;
+    @NonNull
+    private final Queue<Future<byte[]>> mPendingBlocks = new ArrayDeque<>();
+    private final int mMaxPendingBlocks;
+    private final byte[] mSingleByte = new byte[1];
+
+    private byte[] mBuffer;
+    private int mBufferPos;
+    private boolean mHasWrittenBlock;
+    private boolean mClosed;
+
+    /**
+     * @param out         Stream to write the compressed members to
+     * @param type        Either {@link TarUtils#TAR_GZIP} or {@link TarUtils#TAR_BZIP2}
+     * @param threadCount Maximum number of threads to use for compression
+     */
+    public ParallelCompressorOutputStream(@NonNull OutputStream out, @NonNull @TarUtils.TarType String type,
+                                          int threadCount) {
+        int blockSize;
+        switch (type) {
+            case TarUtils.TAR_GZIP:
+                blockSize = GZIP_BLOCK_SIZE;
+                break;
+            case TarUtils.TAR_BZIP2:
+                blockSize = BZIP2_BLOCK_SIZE;
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported compression type: " + type);
+        }
+        if (threadCount <= 0) {
+            throw new IllegalArgumentException("Invalid thread count: " + threadCount);
+        }
+        mOut = out;
+        mType = type;
+        // Keep every thread busy while the previous blocks are being written
+        mMaxPendingBlocks = Math.min(threadCount, MAX_THREADS) * 2;
+        mBuffer = new byte[blockSize];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        mSingleByte[0] = (byte) b;
+        write(mSingleByte, 0, 1);
+    }
+
+    @Override
+    public void write(@NonNull byte[] b, int off, int len) throws IOException {
+        if (mClosed) {
+            throw new IOException("Stream closed");
+        }
+        while (len > 0) {
+            int count = Math.min(len, mBuffer.length - mBufferPos);
+            System.arraycopy(b, off, mBuffer, mBufferPos, count);
+            mBufferPos += count;
+            off += count;
+            len -= count;
+            if (mBufferPos == mBuffer.length) {
+                submitBlock();
+            }
+        }
+    }
+
+    /**
+     * Only writes the completed members. The current partial block is not flushed as doing so would degrade the
+     * compression ratio.
+     */
+    @Override
+    public void flush() throws IOException {
+        while (!mPendingBlocks.isEmpty() && mPendingBlocks.peek().isDone()) {
+            writeNextBlock();
+        }
+        mOut.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (mClosed) {
+            return;
+        }
+        try {
+            if (mBufferPos > 0 || !mHasWrittenBlock) {
+                // An empty input still needs a valid (empty) member
+                submitBlock();
+            }
+            while (!mPendingBlocks.isEmpty()) {
+                writeNextBlock();
+            }
+            mOut.flush();
+        } finally {
+            mClosed = true;
+            // Only left if failed
+            Future<byte[]> future;
+            while ((future = mPendingBlocks.poll()) != null) {
+                future.cancel(true);
+                sBlockPermits.release();
+            }
+            mBuffer = null;
+            mOut.close();
+        }
+    }
+
+    private void submitBlock() throws IOException {
+        while (mPendingBlocks.size() >= mMaxPendingBlocks) {
+            writeNextBlock();
+        }
+        // Write our own blocks while waiting for the other streams. A stream only blocks when it has no pending blocks,
+        // and therefore, holds no permits.
+        while (!sBlockPermits.tryAcquire()) {
+            if (mPendingBlocks.isEmpty()) {
+                try {
+                    sBlockPermits.acquire();
+                    break;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw (IOException) new InterruptedIOException("Interrupted while compressing").initCause(e);
+                }
+            }
+            writeNextBlock();
+        }
+        byte[] block = Arrays.copyOf(mBuffer, mBufferPos);
+        mBufferPos = 0;
+        mHasWrittenBlock = true;
+        mPendingBlocks.add(sExecutor.submit(() -> compress(block, mType)));
+    }
+
+    private void writeNextBlock() throws IOException {
+        Future<byte[]> future = mPendingBlocks.remove();
+        try {
+            mOut.write(future.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw (IOException) new InterruptedIOException("Interrupted while compressing").initCause(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause);
+        } finally {
+            sBlockPermits.release();
+        }
+    }
+
+    @NonNull
+    private static byte[] compress(@NonNull byte[] block, @NonNull @TarUtils.TarType String type) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(block.length / 2);
+        try (OutputStream os = TarUtils.TAR_GZIP.equals(type)
+                ? new GzipCompressorOutputStream(bos)
+                : new BZip2CompressorOutputStream(bos)) {
+            os.write(block);
+        }
+        return bos.toByteArray();
+    }
+}
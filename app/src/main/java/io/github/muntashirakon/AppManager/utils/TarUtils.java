@@ -32,6 +32,7 @@ import java.lang.annotation.RetentionPolicy;
 import java.util.List;
 import java.util.regex.Pattern;
 
+import io.github.muntashirakon.io.AsyncOutputStream;
 import io.github.muntashirakon.io.IoUtils;
 import io.github.muntashirakon.io.Path;
 import io.github.muntashirakon.io.Paths;
@@ -41,6 +42,9 @@ import io.github.muntashirakon.io.SplitOutputStream;
 public final class TarUtils {
     public static final long DEFAULT_SPLIT_SIZE = 1024 * 1024 * 1024;
 
+    // Larger buffer to reduce the number of hand-overs to the writer thread
+    private static final int ASYNC_BUFFER_SIZE = 64 * 1024;
+
     @StringDef(value = {
             TAR_GZIP,
             TAR_BZIP2,
@@ -67,6 +71,7 @@ public final class TarUtils {
      * @param exclude        A list of mutually exclusive regex patterns to be excluded
      * @param followLinks    Whether to follow the links
      * @return List of added files
+     * @see #createCompressedStream(OutputStream, String, int)
      */
     @WorkerThread
     @NonNull
@@ -74,9 +79,27 @@ public final class TarUtils {
                                     @NonNull String destFilePrefix, @Nullable String[] filters,
                                     @Nullable Long splitSize, @Nullable String[] exclude, boolean followLinks)
             throws IOException {
-        try (SplitOutputStream sos = new SplitOutputStream(dest, destFilePrefix, splitSize == null ? DEFAULT_SPLIT_SIZE : splitSize);
-             BufferedOutputStream bos = new BufferedOutputStream(sos);
-             OutputStream os = createCompressedStream(bos, type)) {
+        return create(type, source, new SplitOutputStream(dest, destFilePrefix, splitSize == null ? DEFAULT_SPLIT_SIZE : splitSize),
+                filters, exclude, followLinks);
+    }
+
+    /**
+     * Same as {@link #create(String, Path, Path, String, String[], Long, String[], boolean)}, except that the parts
+     * are written to the given split stream, which is closed at the end. The split stream is written from a separate
+     * thread so that reading and compressing the source files overlap with whatever the split stream does with them.
+     *
+     * @return List of added files
+     */
+    @WorkerThread
+    @NonNull
+    public static List<Path> create(@NonNull @TarType String type, @NonNull Path source,
+                                    @NonNull SplitOutputStream splitOutputStream, @Nullable String[] filters,
+                                    @Nullable String[] exclude, boolean followLinks)
+            throws IOException {
+        // Closing the async stream also closes the split stream
+        try (AsyncOutputStream aos = new AsyncOutputStream(splitOutputStream);
+             BufferedOutputStream bos = new BufferedOutputStream(aos, ASYNC_BUFFER_SIZE);
+             OutputStream os = createCompressedStream(bos, type, MultithreadedExecutor.getThreadCount())) {
             try (TarArchiveOutputStream tos = new TarArchiveOutputStream(os)) {
                 tos.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
                 tos.setBigNumberMode(TarArchiveOutputStream.BIGNUMBER_POSIX);
@@ -110,8 +133,9 @@ public final class TarUtils {
             } finally {
                 os.close();
             }
-            return sos.getFiles();
         }
+        // The parts are only complete once the split stream is closed
+        return splitOutputStream.getFiles();
     }
 
     /**
@@ -252,6 +276,32 @@ public final class TarUtils {
         }
     }
 
+    /**
+     * Same as {@link #createCompressedStream(OutputStream, String)}, but compresses using multiple threads if
+     * {@code threadCount} is greater than one. GZip and BZip2 streams are compressed in independent blocks which are
+     * concatenated in order, and ZStandard uses its own worker threads. In all cases, the output remains readable by
+     * {@link #createDecompressedStream(InputStream, String)}.
+     */
+    @Contract("_, _, _ -> new")
+    @NonNull
+    public static OutputStream createCompressedStream(@NonNull OutputStream regularStream,
+                                                       @NonNull @TarType String tarType,
+                                                       int threadCount)
+            throws IOException {
+        if (threadCount <= 1) {
+            return createCompressedStream(regularStream, tarType);
+        }
+        switch (tarType) {
+            case TAR_GZIP:
+            case TAR_BZIP2:
+                return new ParallelCompressorOutputStream(regularStream, tarType, threadCount);
+            case TAR_ZSTD:
+                return new ZstdOutputStream(regularStream).setWorkers(threadCount);
+            default:
+                throw new IllegalArgumentException("Invalid compression type: " + tarType);
+        }
+    }
+
     @VisibleForTesting
     @NonNull
     static String getAbsolutePathToDataApp(@NonNull String brokenPath, @Nullable String realPath) {
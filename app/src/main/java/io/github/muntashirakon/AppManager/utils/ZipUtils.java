@@ -0,0 +1,128 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package io.github.muntashirakon.AppManager.utils;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.ZipEntry;
+
+/**
+ * Locate the raw data of zip entries so that stored (i.e. uncompressed) entries can be mapped or transferred without
+ * going through {@link java.util.zip.ZipFile}.
+ */
+public final class ZipUtils {
+    private static final int EOCD_SIGNATURE = 0x06054b50;
+    private static final int EOCD_MIN_SIZE = 22;
+    private static final int CD_SIGNATURE = 0x02014b50;
+    private static final int CD_MIN_SIZE = 46;
+    private static final int LFH_SIGNATURE = 0x04034b50;
+    private static final int LFH_MIN_SIZE = 30;
+
+    /**
+     * Find the offsets of the data of the given entries if they are stored (i.e. uncompressed) in the file.
+     *
+     * @return The offsets in the same order as the entries, {@code -1} if the data of the entry cannot be mapped.
+     */
+    @NonNull
+    public static long[] getStoredDataOffsets(@NonNull FileChannel channel, @NonNull List<ZipEntry> entries) {
+        long[] offsets = new long[entries.size()];
+        Arrays.fill(offsets, -1);
+        boolean hasStoredEntries = false;
+        for (ZipEntry entry : entries) {
+            if (entry.getMethod() == ZipEntry.STORED) {
+                hasStoredEntries = true;
+                break;
+            }
+        }
+        if (!hasStoredEntries) {
+            return offsets;
+        }
+        try {
+            ByteBuffer cd = readCentralDirectory(channel);
+            ByteBuffer lfh = ByteBuffer.allocate(LFH_MIN_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            while (cd.remaining() >= CD_MIN_SIZE && cd.getInt(cd.position()) == CD_SIGNATURE) {
+                int start = cd.position();
+                int method = cd.getShort(start + 10) & 0xFFFF;
+                long compressedSize = cd.getInt(start + 20) & 0xFFFFFFFFL;
+                int nameLength = cd.getShort(start + 28) & 0xFFFF;
+                int extraLength = cd.getShort(start + 30) & 0xFFFF;
+                int commentLength = cd.getShort(start + 32) & 0xFFFF;
+                long localHeaderOffset = cd.getInt(start + 42) & 0xFFFFFFFFL;
+                byte[] nameBytes = new byte[nameLength];
+                cd.position(start + CD_MIN_SIZE);
+                cd.get(nameBytes);
+                cd.position(start + CD_MIN_SIZE + nameLength + extraLength + commentLength);
+                if (method != ZipEntry.STORED) {
+                    continue;
+                }
+                String name = new String(nameBytes, StandardCharsets.UTF_8);
+                for (int i = 0; i < entries.size(); ++i) {
+                    ZipEntry entry = entries.get(i);
+                    if (!entry.getName().equals(name) || entry.getMethod() != ZipEntry.STORED
+                            || entry.getSize() != compressedSize) {
+                        continue;
+                    }
+                    lfh.clear();
+                    if (readFully(channel, lfh, localHeaderOffset) != LFH_MIN_SIZE
+                            || lfh.getInt(0) != LFH_SIGNATURE) {
+                        break;
+                    }
+                    offsets[i] = localHeaderOffset + LFH_MIN_SIZE + (lfh.getShort(26) & 0xFFFF)
+                            + (lfh.getShort(28) & 0xFFFF);
+                    break;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // Zip64 or malformed central directory: read the entries via ZipFile instead
+            Arrays.fill(offsets, -1);
+        }
+        return offsets;
+    }
+
+    @NonNull
+    private static ByteBuffer readCentralDirectory(@NonNull FileChannel channel) throws IOException {
+        long fileSize = channel.size();
+        int tailSize = (int) Math.min(fileSize, EOCD_MIN_SIZE + 0xFFFF);
+        ByteBuffer tail = ByteBuffer.allocate(tailSize).order(ByteOrder.LITTLE_ENDIAN);
+        if (readFully(channel, tail, fileSize - tailSize) != tailSize) {
+            throw new IOException("Could not read end of central directory.");
+        }
+        for (int pos = tailSize - EOCD_MIN_SIZE; pos >= 0; --pos) {
+            if (tail.getInt(pos) != EOCD_SIGNATURE) {
+                continue;
+            }
+            long cdSize = tail.getInt(pos + 12) & 0xFFFFFFFFL;
+            long cdOffset = tail.getInt(pos + 16) & 0xFFFFFFFFL;
+            if (cdSize > Integer.MAX_VALUE || cdOffset + cdSize > fileSize) {
+                throw new IOException("Invalid central directory.");
+            }
+            ByteBuffer cd = ByteBuffer.allocate((int) cdSize).order(ByteOrder.LITTLE_ENDIAN);
+            if (readFully(channel, cd, cdOffset) != cdSize) {
+                throw new IOException("Could not read central directory.");
+            }
+            cd.flip();
+            return cd;
+        }
+        throw new IOException("End of central directory not found.");
+    }
+
+    private static int readFully(@NonNull FileChannel channel, @NonNull ByteBuffer buffer, long position)
+            throws IOException {
+        int read = 0;
+        while (buffer.hasRemaining()) {
+            int count = channel.read(buffer, position + read);
+            if (count < 0) {
+                break;
+            }
+            read += count;
+        }
+        return read;
+    }
+}
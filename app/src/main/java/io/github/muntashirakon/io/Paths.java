@@ -525,10 +525,22 @@ public final class Paths {
         return displayName;
     }
 
+    /**
+     * Calculate the total size of the regular files under the given path. Paths backed by real files are calculated
+     * by {@link DirectorySizeCalculator}, in the remote process if the file is remote.
+     */
     public static long size(@Nullable Path root) {
         if (root == null) {
             return 0;
         }
+        ExtendedFile file = root.getFile();
+        if (file instanceof RemoteFile) {
+            return ((RemoteFile) file).calculateSize();
+        }
+        if (file != null && file.getClass() == LocalFile.class) {
+            // Overlays must be listed by themselves
+            return DirectorySizeCalculator.calculate(file.getAbsolutePath());
+        }
         if (root.isFile()) {
             return root.length();
         }
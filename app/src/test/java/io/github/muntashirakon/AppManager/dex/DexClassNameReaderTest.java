@@ -0,0 +1,220 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package io.github.muntashirakon.AppManager.dex;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+@RunWith(RobolectricTestRunner.class)
+public class DexClassNameReaderTest {
+    private static final List<String> CLASS_NAMES = Arrays.asList(
+            "a.a.a",
+            "a.a.b",
+            "ademar.textlauncher.Activity$a",
+            "ademar.textlauncher.Activity",
+            "ademar.textlauncher.LauncherActivity");
+
+    private final ClassLoader classLoader = getClass().getClassLoader();
+    private byte[] mDex;
+    private File mApkFile;
+
+    @Before
+    public void setUp() throws IOException {
+        assert classLoader != null;
+        mDex = Files.readAllBytes(new File(classLoader.getResource("oandbackups/ademar.textlauncher/classes.dex")
+                .getFile()).toPath());
+        mApkFile = Files.createTempFile("test", ".apk").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        mApkFile.delete();
+    }
+
+    @Test
+    public void testGetClassNames() throws IOException {
+        DexClassNameReader reader = new DexClassNameReader(ByteBuffer.wrap(mDex));
+        assertEquals(CLASS_NAMES, getClassNames(reader));
+        assertThrows(IndexOutOfBoundsException.class, () -> reader.getClassName(-1));
+        assertThrows(IndexOutOfBoundsException.class, () -> reader.getClassName(CLASS_NAMES.size()));
+    }
+
+    @Test
+    public void testForEachClassName() throws IOException {
+        // The dex file is deflated
+        File apkFile = new File(classLoader.getResource("oandbackups/ademar.textlauncher/base.apk").getFile());
+        List<String> classNames = Collections.synchronizedList(new ArrayList<>());
+        DexClassNameReader.forEachClassName(apkFile, classNames::add);
+        Collections.sort(classNames);
+        List<String> expectedClassNames = new ArrayList<>(CLASS_NAMES);
+        Collections.sort(expectedClassNames);
+        assertEquals(expectedClassNames, classNames);
+    }
+
+    @Test
+    public void testForEachClassNameInMultipleDexFiles() throws IOException {
+        try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(mApkFile))) {
+            // Memory-mapped
+            ZipEntry storedEntry = new ZipEntry("classes.dex");
+            CRC32 crc32 = new CRC32();
+            crc32.update(mDex);
+            storedEntry.setMethod(ZipEntry.STORED);
+            storedEntry.setSize(mDex.length);
+            storedEntry.setCrc(crc32.getValue());
+            zos.putNextEntry(storedEntry);
+            zos.write(mDex);
+            zos.closeEntry();
+            // Inflated
+            zos.putNextEntry(new ZipEntry("classes2.dex"));
+            zos.write(mDex);
+            zos.closeEntry();
+            // Not a dex file of the APK
+            zos.putNextEntry(new ZipEntry("assets/classes3.dex"));
+            zos.write(new byte[]{0});
+            zos.closeEntry();
+        }
+        List<String> classNames = Collections.synchronizedList(new ArrayList<>());
+        DexClassNameReader.forEachClassName(mApkFile, classNames::add);
+        Collections.sort(classNames);
+        List<String> expectedClassNames = new ArrayList<>(CLASS_NAMES);
+        expectedClassNames.addAll(CLASS_NAMES);
+        Collections.sort(expectedClassNames);
+        assertEquals(expectedClassNames, classNames);
+    }
+
+    @Test
+    public void testNoDexFiles() throws IOException {
+        try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(mApkFile))) {
+            zos.putNextEntry(new ZipEntry("AndroidManifest.xml"));
+            zos.write(new byte[]{0});
+            zos.closeEntry();
+        }
+        assertThrows(IOException.class, () -> DexClassNameReader.forEachClassName(mApkFile, name -> {
+        }));
+    }
+
+    @Test
+    public void testMalformedDexFileInApk() throws IOException {
+        try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(mApkFile))) {
+            zos.putNextEntry(new ZipEntry("classes.dex"));
+            zos.write(mDex);
+            zos.closeEntry();
+            zos.putNextEntry(new ZipEntry("classes2.dex"));
+            zos.write(Arrays.copyOf(mDex, 0x60));
+            zos.closeEntry();
+        }
+        assertThrows(IOException.class, () -> DexClassNameReader.forEachClassName(mApkFile, name -> {
+        }));
+    }
+
+    @Test
+    public void testNotDex() {
+        assertThrows(IOException.class, () -> new DexClassNameReader(ByteBuffer.wrap(new byte[0x100])));
+        byte[] dex = mDex.clone();
+        // Big endian
+        ByteBuffer.wrap(dex).order(ByteOrder.LITTLE_ENDIAN).putInt(0x28, 0x78563412);
+        assertThrows(IOException.class, () -> new DexClassNameReader(ByteBuffer.wrap(dex)));
+    }
+
+    @Test
+    public void testTruncated() throws IOException {
+        // Truncated header
+        assertThrows(IOException.class, () -> new DexClassNameReader(ByteBuffer.wrap(Arrays.copyOf(mDex, 0x60))));
+        // Truncated class_defs
+        int classDefsOffset = getInt(mDex, 0x64);
+        assertThrows(IOException.class, () -> new DexClassNameReader(ByteBuffer.wrap(Arrays.copyOf(mDex,
+                classDefsOffset + 0x10))));
+        // Truncated string data: only the strings before the string of the fourth class are available
+        int stringDataOffset = getInt(mDex, getInt(mDex, 0x3C) + getStringIndex(3) * 4);
+        DexClassNameReader reader = new DexClassNameReader(ByteBuffer.wrap(Arrays.copyOf(mDex, stringDataOffset)));
+        assertEquals(CLASS_NAMES.size(), reader.getClassCount());
+        for (int i = 0; i < 3; ++i) {
+            assertEquals(CLASS_NAMES.get(i), reader.getClassName(i));
+        }
+        assertThrows(IOException.class, () -> reader.getClassName(3));
+    }
+
+    @Test
+    public void testInvalidSections() {
+        byte[] dex = mDex.clone();
+        ByteBuffer buffer = ByteBuffer.wrap(dex).order(ByteOrder.LITTLE_ENDIAN);
+        // Too many strings
+        buffer.putInt(0x38, Integer.MAX_VALUE);
+        assertThrows(IOException.class, () -> new DexClassNameReader(buffer));
+        // Negative size
+        buffer.putInt(0x38, -1);
+        assertThrows(IOException.class, () -> new DexClassNameReader(buffer));
+        // Invalid offset
+        buffer.putInt(0x38, getInt(mDex, 0x38));
+        buffer.putInt(0x64, -0x20);
+        assertThrows(IOException.class, () -> new DexClassNameReader(buffer));
+    }
+
+    @Test
+    public void testInvalidIndices() throws IOException {
+        byte[] dex = mDex.clone();
+        ByteBuffer buffer = ByteBuffer.wrap(dex).order(ByteOrder.LITTLE_ENDIAN);
+        int classDefsOffset = getInt(mDex, 0x64);
+        int typeIdsOffset = getInt(mDex, 0x44);
+        // Type index of the first class
+        buffer.putInt(classDefsOffset, Integer.MAX_VALUE);
+        // String index of the type of the second class
+        buffer.putInt(typeIdsOffset + getInt(mDex, classDefsOffset + 0x20) * 4, -1);
+        // String data offset of the third class
+        buffer.putInt(getInt(mDex, 0x3C) + getStringIndex(2) * 4, dex.length);
+        DexClassNameReader reader = new DexClassNameReader(buffer);
+        assertThrows(IOException.class, () -> reader.getClassName(0));
+        assertThrows(IOException.class, () -> reader.getClassName(1));
+        assertThrows(IOException.class, () -> reader.getClassName(2));
+        assertEquals(CLASS_NAMES.get(3), reader.getClassName(3));
+    }
+
+    @Test
+    public void testInvalidMutf8() throws IOException {
+        byte[] dex = mDex.clone();
+        int stringDataOffset = getInt(mDex, getInt(mDex, 0x3C) + getStringIndex(0) * 4);
+        // Skip utf16_size and L
+        dex[stringDataOffset + 2] = (byte) 0xF8;
+        DexClassNameReader reader = new DexClassNameReader(ByteBuffer.wrap(dex));
+        assertThrows(UTFDataFormatException.class, () -> reader.getClassName(0));
+        assertEquals(CLASS_NAMES.get(1), reader.getClassName(1));
+    }
+
+    private int getStringIndex(int classIndex) {
+        int typeIndex = getInt(mDex, getInt(mDex, 0x64) + classIndex * 0x20);
+        return getInt(mDex, getInt(mDex, 0x44) + typeIndex * 4);
+    }
+
+    private static int getInt(byte[] bytes, int offset) {
+        return ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).getInt(offset);
+    }
+
+    private static List<String> getClassNames(DexClassNameReader reader) throws IOException {
+        List<String> classNames = new ArrayList<>(reader.getClassCount());
+        for (int i = 0; i < reader.getClassCount(); ++i) {
+            classNames.add(reader.getClassName(i));
+        }
+        return classNames;
+    }
+}
@@ -0,0 +1,86 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package io.github.muntashirakon.AppManager.filters;
+
+import static org.junit.Assert.assertEquals;
+
+import androidx.annotation.NonNull;
+import androidx.collection.ArrayMap;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import io.github.muntashirakon.AppManager.filters.options.FilterOption;
+import io.github.muntashirakon.AppManager.filters.options.FilterOptions;
+
+@RunWith(RobolectricTestRunner.class)
+public class FilterExpressionTest {
+    private final ArrayMap<Integer, FilterOption> mFilterOptions = new ArrayMap<>();
+
+    @Before
+    public void setUp() {
+        // permissions_1 & times_opened_2 & target_sdk_3 & pkg_name_4
+        addFilterOption(1, "permissions", "contains", "INTERNET");
+        addFilterOption(2, "times_opened", "ge", "5");
+        addFilterOption(3, "target_sdk", "ge", "30");
+        addFilterOption(4, "pkg_name", "eq", "io.github.muntashirakon.AppManager");
+        // Still loads all the components
+        addFilterOption(5, "components", FilterOption.KEY_ALL, null);
+    }
+
+    @Test
+    public void testCheapestFirst() {
+        assertEquals("(target_sdk_3 & pkg_name_4 & permissions_1 & times_opened_2)",
+                compile("permissions_1 & times_opened_2 & target_sdk_3 & pkg_name_4"));
+        assertEquals("(target_sdk_3 | permissions_1 | times_opened_2)",
+                compile("times_opened_2 | permissions_1 | target_sdk_3"));
+        // Same cost, therefore, the order is retained
+        assertEquals("(permissions_1 & components_5)", compile("permissions_1 & components_5"));
+        assertEquals("(target_sdk_3 & components_5)", compile("components_5 & target_sdk_3"));
+    }
+
+    @Test
+    public void testParentheses() {
+        // & has higher precedence than |
+        assertEquals("((target_sdk_3 & permissions_1) | times_opened_2)",
+                compile("times_opened_2 | permissions_1 & target_sdk_3"));
+        assertEquals("(target_sdk_3 & (pkg_name_4 | times_opened_2))",
+                compile("(times_opened_2 | pkg_name_4) & target_sdk_3"));
+        assertEquals("(pkg_name_4 & (target_sdk_3 | (permissions_1 & times_opened_2)))",
+                compile("((times_opened_2 & permissions_1) | target_sdk_3) & pkg_name_4"));
+    }
+
+    @Test
+    public void testConstants() {
+        assertEquals("true", compile("true"));
+        assertEquals("false", compile("false"));
+        assertEquals("pkg_name_4", compile("true & pkg_name_4"));
+        assertEquals("false", compile("false & pkg_name_4"));
+        assertEquals("true", compile("false | true & pkg_name_4 | true"));
+        assertEquals("pkg_name_4", compile("false | (true & pkg_name_4)"));
+    }
+
+    @Test
+    public void testInvalidExpressions() {
+        // Missing ')'
+        assertEquals("false", compile("(pkg_name_4 & target_sdk_3"));
+        // Unknown IDs
+        assertEquals("false", compile("pkg_name_9"));
+        assertEquals("false", compile("pkg_name_x & target_sdk_3"));
+        assertEquals("target_sdk_3", compile("pkg_name_x | target_sdk_3"));
+    }
+
+    private void addFilterOption(int id, @NonNull String type, @NonNull String key, String value) {
+        FilterOption option = FilterOptions.create(type);
+        option.id = id;
+        option.setKeyValue(key, value);
+        mFilterOptions.put(id, option);
+    }
+
+    @NonNull
+    private String compile(@NonNull String expr) {
+        return FilterExpression.compile(expr, mFilterOptions).toString();
+    }
+}
@@ -0,0 +1,89 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package io.github.muntashirakon.AppManager.fm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import io.github.muntashirakon.io.Path;
+import io.github.muntashirakon.io.Paths;
+
+@RunWith(RobolectricTestRunner.class)
+public class FmItemsCollectorTest {
+    private static final Comparator<FmItem> NAME_COMPARATOR = (o1, o2) -> o1.getName().compareTo(o2.getName());
+
+    private File mDir;
+    private final List<FmItem> mFmItems = new ArrayList<>();
+
+    @Before
+    public void setUp() throws IOException {
+        mDir = Files.createTempDirectory("fm_items").toFile();
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < 500; ++i) {
+            ids.add(i);
+        }
+        Collections.shuffle(ids, new Random(42));
+        for (int id : ids) {
+            File file = new File(mDir, String.format(Locale.ROOT, "%s%03d", id % 5 == 0 ? "." : "", id));
+            assertTrue(file.createNewFile());
+            mFmItems.add(new FmItem(Paths.get(file)));
+        }
+    }
+
+    @After
+    public void tearDown() {
+        Path dir = Paths.get(mDir);
+        for (Path file : dir.listFiles()) {
+            file.delete();
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void testPartialListsAreSorted() {
+        List<List<FmItem>> partialLists = new ArrayList<>();
+        FmItemsCollector collector = new FmItemsCollector(fmItem -> !fmItem.getName().startsWith("."),
+                NAME_COMPARATOR, partialLists::add);
+        for (FmItem fmItem : mFmItems) {
+            collector.add(fmItem);
+        }
+        List<FmItem> finalList = collector.finish();
+        // 400 visible files: batches of 64 and 128 followed by 208 remaining files
+        assertEquals(2, partialLists.size());
+        assertEquals(64, partialLists.get(0).size());
+        assertEquals(192, partialLists.get(1).size());
+        for (List<FmItem> partialList : partialLists) {
+            assertSorted(partialList);
+        }
+        List<FmItem> expectedList = new ArrayList<>();
+        for (FmItem fmItem : mFmItems) {
+            if (!fmItem.getName().startsWith(".")) {
+                expectedList.add(fmItem);
+            }
+        }
+        Collections.sort(expectedList, NAME_COMPARATOR);
+        assertEquals(expectedList, finalList);
+    }
+
+    private static void assertSorted(List<FmItem> fmItems) {
+        for (int i = 1; i < fmItems.size(); ++i) {
+            assertTrue(NAME_COMPARATOR.compare(fmItems.get(i - 1), fmItems.get(i)) < 0);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package io.github.muntashirakon.AppManager.logcat.helper;
+
+import static org.junit.Assert.assertEquals;
+
+import androidx.annotation.NonNull;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+@RunWith(RobolectricTestRunner.class)
+public class SaveLogHelperTest {
+    private File mLogFile;
+
+    @Before
+    public void setUp() throws IOException {
+        mLogFile = File.createTempFile("saved_log", ".am.log");
+    }
+
+    @After
+    public void tearDown() {
+        mLogFile.delete();
+    }
+
+    @Test
+    public void testFindStartOfLastLines() throws IOException {
+        write("line 1\nline 2\nline 3\n");
+        assertEquals(0, findStartOfLastLines(3));
+        assertEquals(0, findStartOfLastLines(4));
+        assertEquals(7, findStartOfLastLines(2));
+        assertEquals(14, findStartOfLastLines(1));
+    }
+
+    @Test
+    public void testFindStartOfLastLinesWithoutFinalNewLine() throws IOException {
+        write("line 1\nline 2\nline 3");
+        assertEquals(0, findStartOfLastLines(3));
+        assertEquals(14, findStartOfLastLines(1));
+    }
+
+    @Test
+    public void testFindStartOfLastLinesAcrossBuffers() throws IOException {
+        // 100,000 lines of 10 bytes each span multiple scan buffers
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 100_000; ++i) {
+            sb.append(String.format("line %04d\n", i % 10_000));
+        }
+        write(sb.toString());
+        assertEquals(0, findStartOfLastLines(100_000));
+        assertEquals(10 * (100_000 - 7_000), findStartOfLastLines(7_000));
+    }
+
+    private void write(@NonNull String content) throws IOException {
+        try (FileOutputStream os = new FileOutputStream(mLogFile)) {
+            os.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private long findStartOfLastLines(int maxLines) throws IOException {
+        try (FileChannel channel = FileChannel.open(mLogFile.toPath(), StandardOpenOption.READ)) {
+            return SaveLogHelper.findStartOfLastLines(channel, maxLines);
+        }
+    }
+}
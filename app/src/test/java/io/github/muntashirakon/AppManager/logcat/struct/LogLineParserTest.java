@@ -0,0 +1,105 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package io.github.muntashirakon.AppManager.logcat.struct;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+@RunWith(RobolectricTestRunner.class)
+public class LogLineParserTest {
+    // Regular expressions used prior to LogLineParser
+    private static final Pattern LOG_PATTERN = Pattern.compile(
+            "(\\d{2}-\\d{2}\\s\\d{2}:\\d{2}:\\d{2}\\.\\d{3})\\s+(.+\\d+)\\s+(\\d+)\\s+([ADEIVWF])\\s+(.+?): (.*)");
+    private static final Pattern LOG_PATTERN_LEGACY = Pattern.compile(
+            "(\\d{2}-\\d{2}\\s\\d{2}:\\d{2}:\\d{2}\\.\\d{3})\\s+([ADEIVWF])/([^(].+)\\(\\s*(\\d+)(?:\\*\\s*\\d+)?\\): (.*)");
+
+    private static final String[] LINES = new String[]{
+            "01-18 10:32:45.123  1000  1234  1250 I ActivityManager: Start proc 4567:com.example/u0a123",
+            "01-18 10:32:45.123 u0_a123  4567  4589 D OkHttp  : --> GET https://example.com/: 200",
+            "01-18 10:32:45.123  root   321   321 W auditd  : type=1400 audit(0.0:12): avc: denied",
+            "01-18 10:32:45.123   678   678 E AndroidRuntime: FATAL EXCEPTION: main",
+            "01-18 10:32:45.123   678   690 V Tag with spaces: message: with: colons",
+            "01-18 10:32:45.123   678   690 F libc    : ",
+            "12-31 23:59:59.999 I/ActivityManager(  567): Displayed com.example/.MainActivity: +1s",
+            "12-31 23:59:59.999 D/dalvikvm(1234*  5): GC_CONCURRENT freed 345K",
+            "12-31 23:59:59.999 W/Tag (with) parentheses(42): message (42): again",
+            "--------- beginning of main",
+            "01-18 10:32:45.123 garbage",
+            "",
+    };
+
+    @Test
+    public void testParseThreadTimeWithUid() {
+        LogLineParser parser = new LogLineParser();
+        assertTrue(parser.parse(LINES[1]));
+        assertFalse(parser.isLegacy());
+        assertEquals("01-18 10:32:45.123", parser.getTimestamp());
+        assertEquals("u0_a123", parser.getUidOwner());
+        assertEquals(4567, parser.getPid());
+        assertEquals(4589, parser.getTid());
+        assertEquals('D', parser.getLevel());
+        assertEquals("OkHttp", parser.getTag());
+        assertEquals("--> GET https://example.com/: 200", parser.getMessage());
+    }
+
+    @Test
+    public void testParseThreadTimeWithoutUid() {
+        LogLineParser parser = new LogLineParser();
+        assertTrue(parser.parse(LINES[3]));
+        assertNull(parser.getUidOwner());
+        assertEquals(678, parser.getPid());
+        assertEquals(678, parser.getTid());
+        assertEquals("AndroidRuntime", parser.getTag());
+        assertEquals("FATAL EXCEPTION: main", parser.getMessage());
+    }
+
+    @Test
+    public void testParseLegacy() {
+        LogLineParser parser = new LogLineParser();
+        assertTrue(parser.parse(LINES[7]));
+        assertTrue(parser.isLegacy());
+        assertEquals(1234, parser.getPid());
+        assertEquals("dalvikvm", parser.getTag());
+        assertEquals("GC_CONCURRENT freed 345K", parser.getMessage());
+    }
+
+    @Test
+    public void testSameAsRegularExpressions() {
+        LogLineParser parser = new LogLineParser();
+        for (String line : LINES) {
+            Matcher matcher = LOG_PATTERN.matcher(line);
+            Matcher legacyMatcher = LOG_PATTERN_LEGACY.matcher(line);
+            if (matcher.matches()) {
+                assertTrue(line, parser.parse(line));
+                assertFalse(line, parser.isLegacy());
+                assertEquals(line, matcher.group(1), parser.getTimestamp());
+                String[] uidPid = matcher.group(2).split("\\s+", 2);
+                assertEquals(line, uidPid.length == 2 ? uidPid[0] : null, parser.getUidOwner());
+                assertEquals(line, Integer.parseInt(uidPid[uidPid.length - 1]), parser.getPid());
+                assertEquals(line, Integer.parseInt(matcher.group(3)), parser.getTid());
+                assertEquals(line, matcher.group(4).charAt(0), parser.getLevel());
+                assertEquals(line, matcher.group(5).trim(), parser.getTag());
+                assertEquals(line, matcher.group(6), parser.getMessage());
+            } else if (legacyMatcher.matches()) {
+                assertTrue(line, parser.parse(line));
+                assertTrue(line, parser.isLegacy());
+                assertEquals(line, legacyMatcher.group(1), parser.getTimestamp());
+                assertEquals(line, legacyMatcher.group(2).charAt(0), parser.getLevel());
+                assertEquals(line, legacyMatcher.group(3).trim(), parser.getTag());
+                assertEquals(line, Integer.parseInt(legacyMatcher.group(4)), parser.getPid());
+                assertEquals(line, legacyMatcher.group(5), parser.getMessage());
+            } else {
+                assertFalse(line, parser.parse(line));
+            }
+        }
+    }
+}
@@ -0,0 +1,105 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package io.github.muntashirakon.AppManager.rules.compontents;
+
+import static android.content.pm.PackageManager.COMPONENT_ENABLED_STATE_DEFAULT;
+import static android.content.pm.PackageManager.COMPONENT_ENABLED_STATE_DISABLED;
+import static android.content.pm.PackageManager.COMPONENT_ENABLED_STATE_ENABLED;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import androidx.annotation.Nullable;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Objects;
+
+import io.github.muntashirakon.AppManager.rules.RuleType;
+import io.github.muntashirakon.AppManager.rules.struct.ComponentRule;
+import io.github.muntashirakon.io.AtomicExtendedFile;
+import io.github.muntashirakon.io.Paths;
+
+@RunWith(RobolectricTestRunner.class)
+public class ComponentsBlockerTest {
+    private File mRulesFile;
+
+    @Before
+    public void setUp() throws IOException {
+        mRulesFile = Files.createTempFile("sample.package", ".xml").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        mRulesFile.delete();
+    }
+
+    @Test
+    public void testMayBeApplied() {
+        // Applied rules
+        assertTrue(getChange(ComponentRule.COMPONENT_DISABLED, null, COMPONENT_ENABLED_STATE_DISABLED).mayBeApplied());
+        assertTrue(getChange(ComponentRule.COMPONENT_BLOCKED_IFW_DISABLE, null, COMPONENT_ENABLED_STATE_DISABLED)
+                .mayBeApplied());
+        assertTrue(getChange(ComponentRule.COMPONENT_ENABLED, null, COMPONENT_ENABLED_STATE_ENABLED).mayBeApplied());
+        assertFalse(getChange(ComponentRule.COMPONENT_DISABLED, null, COMPONENT_ENABLED_STATE_DEFAULT).mayBeApplied());
+        assertFalse(getChange(ComponentRule.COMPONENT_ENABLED, null, COMPONENT_ENABLED_STATE_DEFAULT).mayBeApplied());
+        // The state is never set for IFW only
+        assertFalse(getChange(ComponentRule.COMPONENT_BLOCKED_IFW, null, COMPONENT_ENABLED_STATE_DEFAULT)
+                .mayBeApplied());
+        // Pending rules depend on the last applied rule
+        assertFalse(getChange(ComponentRule.COMPONENT_TO_BE_DISABLED, null, COMPONENT_ENABLED_STATE_DISABLED)
+                .mayBeApplied());
+        assertTrue(getChange(ComponentRule.COMPONENT_TO_BE_DISABLED, ComponentRule.COMPONENT_DISABLED,
+                COMPONENT_ENABLED_STATE_DISABLED).mayBeApplied());
+        assertFalse(getChange(ComponentRule.COMPONENT_TO_BE_DISABLED, ComponentRule.COMPONENT_ENABLED,
+                COMPONENT_ENABLED_STATE_DISABLED).mayBeApplied());
+        assertTrue(getChange(ComponentRule.COMPONENT_TO_BE_ENABLED, ComponentRule.COMPONENT_ENABLED,
+                COMPONENT_ENABLED_STATE_ENABLED).mayBeApplied());
+        assertFalse(getChange(ComponentRule.COMPONENT_TO_BE_DEFAULTED, ComponentRule.COMPONENT_DISABLED,
+                COMPONENT_ENABLED_STATE_DEFAULT).mayBeApplied());
+        assertFalse(getChange(ComponentRule.COMPONENT_TO_BE_DISABLED, ComponentRule.COMPONENT_TO_BE_DISABLED,
+                COMPONENT_ENABLED_STATE_DISABLED).mayBeApplied());
+    }
+
+    @Test
+    public void testIsRulesFileUpToDate() throws IOException {
+        AtomicExtendedFile rulesFile = new AtomicExtendedFile(Objects.requireNonNull(Paths.get(mRulesFile).getFile()));
+        byte[] rules = ("<rules>\n<activity block=\"true\" log=\"false\">\n"
+                + "  <component-filter name=\"sample.package/sample.package.AdActivity\"/>\n"
+                + "</activity>\n</rules>").getBytes();
+        // Empty file
+        assertFalse(ComponentsBlocker.isRulesFileUpToDate(rulesFile, rules));
+        writeRules(rules);
+        assertTrue(ComponentsBlocker.isRulesFileUpToDate(rulesFile, rules));
+        // Same length, different content
+        byte[] otherRules = rules.clone();
+        otherRules[otherRules.length - 3] = 'X';
+        assertFalse(ComponentsBlocker.isRulesFileUpToDate(rulesFile, otherRules));
+        // Different length
+        assertFalse(ComponentsBlocker.isRulesFileUpToDate(rulesFile, "<rules>\n</rules>".getBytes()));
+        // Missing file
+        assertTrue(mRulesFile.delete());
+        assertFalse(ComponentsBlocker.isRulesFileUpToDate(rulesFile, rules));
+    }
+
+    private void writeRules(byte[] rules) throws IOException {
+        try (FileOutputStream fos = new FileOutputStream(mRulesFile)) {
+            fos.write(rules);
+        }
+    }
+
+    private static ComponentsBlocker.ComponentStateChange getChange(@ComponentRule.ComponentStatus String status,
+                                                                    @Nullable @ComponentRule.ComponentStatus String lastStatus,
+                                                                    int newState) {
+        ComponentRule rule = new ComponentRule("sample.package", "sample.package.AdActivity", RuleType.ACTIVITY, status);
+        rule.setLastComponentStatus(lastStatus);
+        return new ComponentsBlocker.ComponentStateChange(rule, newState, null);
+    }
+}
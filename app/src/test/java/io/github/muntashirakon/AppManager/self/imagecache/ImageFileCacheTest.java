@@ -0,0 +1,70 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package io.github.muntashirakon.AppManager.self.imagecache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import android.graphics.Bitmap;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import io.github.muntashirakon.io.Paths;
+
+@RunWith(RobolectricTestRunner.class)
+public class ImageFileCacheTest {
+    private static final String IMAGE_NAME = "test_icon";
+
+    private final ClassLoader classLoader = getClass().getClassLoader();
+    private ImageFileCache mImageFileCache;
+
+    @Before
+    public void setUp() throws IOException {
+        assert classLoader != null;
+        mImageFileCache = new ImageFileCache();
+        // 512x512
+        try (InputStream is = Paths.get(classLoader.getResource("images/test_icon.png").getFile()).openInputStream()) {
+            mImageFileCache.putImage(IMAGE_NAME, is);
+        }
+    }
+
+    @Test
+    public void testGetImageInFull() {
+        assertSize(512, mImageFileCache.getImage(IMAGE_NAME));
+        assertSize(512, mImageFileCache.getImage(IMAGE_NAME, 0));
+    }
+
+    @Test
+    public void testGetImageExactFit() {
+        assertSize(512, mImageFileCache.getImage(IMAGE_NAME, 512));
+        assertSize(256, mImageFileCache.getImage(IMAGE_NAME, 256));
+        assertSize(128, mImageFileCache.getImage(IMAGE_NAME, 128));
+    }
+
+    @Test
+    public void testGetImageDownsampled() {
+        // Never smaller than the target size
+        assertSize(512, mImageFileCache.getImage(IMAGE_NAME, 300));
+        assertSize(128, mImageFileCache.getImage(IMAGE_NAME, 100));
+        // Larger than the image
+        assertSize(512, mImageFileCache.getImage(IMAGE_NAME, 1024));
+    }
+
+    @Test
+    public void testGetMissingImage() {
+        assertNull(mImageFileCache.getImage("missing_icon", 100));
+    }
+
+    private static void assertSize(int size, Bitmap bitmap) {
+        assertNotNull(bitmap);
+        assertEquals(size, bitmap.getWidth());
+        assertEquals(size, bitmap.getHeight());
+    }
+}
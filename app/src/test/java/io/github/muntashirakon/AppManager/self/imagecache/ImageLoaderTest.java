@@ -0,0 +1,45 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package io.github.muntashirakon.AppManager.self.imagecache;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class ImageLoaderTest {
+    @Test
+    public void testCalculateSampleSizeExactFit() {
+        assertEquals(1, ImageLoader.calculateSampleSize(96, 96, 96));
+        // Exactly twice the target size
+        assertEquals(2, ImageLoader.calculateSampleSize(192, 192, 96));
+        assertEquals(4, ImageLoader.calculateSampleSize(384, 384, 96));
+        // Just below twice the target size
+        assertEquals(1, ImageLoader.calculateSampleSize(191, 191, 96));
+    }
+
+    @Test
+    public void testCalculateSampleSizeOneDimensionLarger() {
+        // The larger side is never smaller than the target size
+        assertEquals(2, ImageLoader.calculateSampleSize(200, 50, 100));
+        assertEquals(2, ImageLoader.calculateSampleSize(50, 200, 100));
+        assertEquals(1, ImageLoader.calculateSampleSize(199, 10, 100));
+        assertEquals(1, ImageLoader.calculateSampleSize(10, 199, 100));
+        assertEquals(8, ImageLoader.calculateSampleSize(1024, 768, 100));
+    }
+
+    @Test
+    public void testCalculateSampleSizeSmallerImage() {
+        assertEquals(1, ImageLoader.calculateSampleSize(48, 48, 96));
+        assertEquals(1, ImageLoader.calculateSampleSize(0, 0, 96));
+    }
+
+    @Test
+    public void testCalculateSampleSizeNoTargetSize() {
+        // The view is not laid out yet
+        assertEquals(1, ImageLoader.calculateSampleSize(1024, 1024, 0));
+        assertEquals(1, ImageLoader.calculateSampleSize(1024, 1024, -1));
+    }
+}
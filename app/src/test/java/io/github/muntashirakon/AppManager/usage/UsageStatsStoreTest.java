@@ -0,0 +1,138 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package io.github.muntashirakon.AppManager.usage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+import android.text.format.DateUtils;
+
+import androidx.collection.SparseArrayCompat;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+@RunWith(RobolectricTestRunner.class)
+public class UsageStatsStoreTest {
+    private static final int USER_ID = 0;
+
+    private Context mContext;
+    private File mStoreDir;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.getApplication();
+        mStoreDir = new File(mContext.getCacheDir(), "usage_stats");
+    }
+
+    @After
+    public void tearDown() {
+        UsageStatsStore.clearMemoryCache();
+        File[] files = mStoreDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+    }
+
+    @Test
+    public void testPutAndGet() {
+        TimeInterval day = getDay(10);
+        SparseArrayCompat<AppUsageStatsManager.DataUsage> mobileData = new SparseArrayCompat<>();
+        mobileData.put(10001, new AppUsageStatsManager.DataUsage(100, 200));
+        SparseArrayCompat<AppUsageStatsManager.DataUsage> wifiData = new SparseArrayCompat<>();
+        wifiData.put(10002, new AppUsageStatsManager.DataUsage(300, 400));
+        UsageStatsStore.PackageUsage packageUsage = new UsageStatsStore.PackageUsage("sample.package", 1000,
+                day.getStartTime() + 2000, 2, Arrays.asList(
+                new PackageUsageInfo.Entry(day.getStartTime(), day.getStartTime() + 500),
+                new PackageUsageInfo.Entry(day.getStartTime() + 1500, day.getStartTime() + 2000)));
+        UsageStatsStore.put(mContext, USER_ID, day, new UsageStatsStore.DayUsage(
+                Collections.singletonList(packageUsage), mobileData, wifiData));
+        // Read from the disk
+        UsageStatsStore.clearMemoryCache();
+        UsageStatsStore.DayUsage dayUsage = UsageStatsStore.get(mContext, USER_ID, day);
+        assertNotNull(dayUsage);
+        assertEquals(1, dayUsage.packages.size());
+        UsageStatsStore.PackageUsage storedUsage = dayUsage.packages.get(0);
+        assertEquals("sample.package", storedUsage.packageName);
+        assertEquals(1000, storedUsage.screenTime);
+        assertEquals(day.getStartTime() + 2000, storedUsage.lastUsed);
+        assertEquals(2, storedUsage.timesOpened);
+        assertEquals(2, storedUsage.entries.size());
+        assertEquals(day.getStartTime() + 1500, storedUsage.entries.get(1).startTime);
+        assertEquals(day.getStartTime() + 2000, storedUsage.entries.get(1).endTime);
+        assertNotNull(dayUsage.mobileData);
+        assertNotNull(dayUsage.wifiData);
+        assertEquals(100, dayUsage.mobileData.get(10001).getTx());
+        assertEquals(400, dayUsage.wifiData.get(10002).getRx());
+        // Other users and days are not affected
+        assertNull(UsageStatsStore.get(mContext, USER_ID + 1, day));
+        assertNull(UsageStatsStore.get(mContext, USER_ID, getDay(11)));
+    }
+
+    @Test
+    public void testEmptyDayIsStored() {
+        TimeInterval day = getDay(10);
+        UsageStatsStore.put(mContext, USER_ID, day, new UsageStatsStore.DayUsage(Collections.emptyList(),
+                new SparseArrayCompat<>(), new SparseArrayCompat<>()));
+        UsageStatsStore.clearMemoryCache();
+        UsageStatsStore.DayUsage dayUsage = UsageStatsStore.get(mContext, USER_ID, day);
+        assertNotNull(dayUsage);
+        assertTrue(dayUsage.packages.isEmpty());
+        assertNotNull(dayUsage.mobileData);
+    }
+
+    @Test
+    public void testNoTemporaryFilesLeft() {
+        TimeInterval day = getDay(10);
+        UsageStatsStore.DayUsage dayUsage = new UsageStatsStore.DayUsage(Collections.emptyList(), null, null);
+        UsageStatsStore.put(mContext, USER_ID, day, dayUsage);
+        UsageStatsStore.put(mContext, USER_ID, day, dayUsage);
+        String[] names = mStoreDir.list();
+        assertNotNull(names);
+        assertEquals(Collections.singletonList(USER_ID + "_" + day.getStartTime()), Arrays.asList(names));
+    }
+
+    @Test
+    public void testCorruptedFileIsDiscarded() throws IOException {
+        TimeInterval day = getDay(10);
+        File storeFile = new File(mStoreDir, USER_ID + "_" + day.getStartTime());
+        assertTrue(mStoreDir.isDirectory() || mStoreDir.mkdirs());
+        try (FileOutputStream fos = new FileOutputStream(storeFile)) {
+            // Correct version, but truncated
+            fos.write(new byte[]{0, 0, 0, 1, 0, 0});
+        }
+        assertNull(UsageStatsStore.get(mContext, USER_ID, day));
+        assertFalse(storeFile.exists());
+    }
+
+    @Test
+    public void testIsFinal() {
+        long now = System.currentTimeMillis();
+        assertFalse(UsageStatsStore.isFinal(UsageUtils.getDayBounds(now), now));
+        // Network stats of yesterday may still arrive
+        assertFalse(UsageStatsStore.isFinal(getDay(1), now));
+        assertTrue(UsageStatsStore.isFinal(getDay(2), now));
+    }
+
+    private static TimeInterval getDay(int daysAgo) {
+        long todayStart = UsageUtils.getDayBounds(System.currentTimeMillis()).getStartTime();
+        // Noon avoids the days with a DST transition
+        return UsageUtils.getDayBounds(todayStart - daysAgo * DateUtils.DAY_IN_MILLIS + DateUtils.HOUR_IN_MILLIS * 12);
+    }
+}
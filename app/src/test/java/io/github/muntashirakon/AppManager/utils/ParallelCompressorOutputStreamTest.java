@@ -0,0 +1,89 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package io.github.muntashirakon.AppManager.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import androidx.annotation.NonNull;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import io.github.muntashirakon.io.IoUtils;
+
+@RunWith(RobolectricTestRunner.class)
+public class ParallelCompressorOutputStreamTest {
+    @Test
+    public void testGzipMultipleBlocks() throws IOException {
+        byte[] data = getRandomText(ParallelCompressorOutputStream.GZIP_BLOCK_SIZE * 3 + 123);
+        assertArrayEquals(data, compressAndDecompress(data, TarUtils.TAR_GZIP));
+    }
+
+    @Test
+    public void testBzip2MultipleBlocks() throws IOException {
+        byte[] data = getRandomText(ParallelCompressorOutputStream.BZIP2_BLOCK_SIZE * 2 + 123);
+        assertArrayEquals(data, compressAndDecompress(data, TarUtils.TAR_BZIP2));
+    }
+
+    @Test
+    public void testEmptyInput() throws IOException {
+        assertArrayEquals(new byte[0], compressAndDecompress(new byte[0], TarUtils.TAR_GZIP));
+        assertArrayEquals(new byte[0], compressAndDecompress(new byte[0], TarUtils.TAR_BZIP2));
+    }
+
+    @Test
+    public void testManyStreamsShareThePool() throws Exception {
+        // More streams than the blocks allowed in flight, all of which must make progress
+        int streamCount = Runtime.getRuntime().availableProcessors() * 3;
+        ExecutorService executor = Executors.newFixedThreadPool(streamCount);
+        try {
+            List<byte[]> inputs = new ArrayList<>(streamCount);
+            List<Future<byte[]>> outputs = new ArrayList<>(streamCount);
+            for (int i = 0; i < streamCount; ++i) {
+                byte[] data = getRandomText(ParallelCompressorOutputStream.GZIP_BLOCK_SIZE * 3 + i);
+                inputs.add(data);
+                outputs.add(executor.submit(() -> compressAndDecompress(data, TarUtils.TAR_GZIP)));
+            }
+            for (int i = 0; i < streamCount; ++i) {
+                assertArrayEquals(inputs.get(i), outputs.get(i).get(2, TimeUnit.MINUTES));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @NonNull
+    private static byte[] compressAndDecompress(@NonNull byte[] data, @NonNull String type) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (OutputStream os = new ParallelCompressorOutputStream(compressed, type, 4)) {
+            os.write(data);
+        }
+        try (InputStream is = TarUtils.createDecompressedStream(new ByteArrayInputStream(compressed.toByteArray()), type)) {
+            return IoUtils.readFully(is, -1, true);
+        }
+    }
+
+    @NonNull
+    private static byte[] getRandomText(int length) {
+        Random random = new Random(length);
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; ++i) {
+            data[i] = (byte) ('a' + random.nextInt(16));
+        }
+        return data;
+    }
+}
@@ -0,0 +1,123 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package io.github.muntashirakon.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import androidx.annotation.NonNull;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+@RunWith(RobolectricTestRunner.class)
+public class AsyncOutputStreamTest {
+    @Test
+    public void testWriteAndClose() throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        AsyncOutputStream os = new AsyncOutputStream(baos, 2);
+        os.write(1);
+        os.write(new byte[]{2, 3, 4, 5}, 1, 2);
+        os.flush();
+        os.write(new byte[]{4}, 0, 0);
+        os.write(5);
+        os.close();
+        assertArrayEquals(new byte[]{1, 3, 4, 5}, baos.toByteArray());
+        assertThrows(IOException.class, () -> os.write(6));
+        // Closing again does nothing
+        os.close();
+    }
+
+    @Test
+    public void testErrorIsReported() throws IOException {
+        AsyncOutputStream os = new AsyncOutputStream(new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Disk full");
+            }
+        });
+        os.write(1);
+        assertThrows(IOException.class, os::close);
+    }
+
+    @Test(timeout = 10_000)
+    public void testInterruptedCloseWaitsForWriter() throws Exception {
+        BlockingOutputStream out = new BlockingOutputStream();
+        AsyncOutputStream os = new AsyncOutputStream(out);
+        os.write(1);
+        assertTrue(out.writing.await(5, TimeUnit.SECONDS));
+        AtomicReference<IOException> closeError = new AtomicReference<>();
+        AtomicBoolean interruptRestored = new AtomicBoolean();
+        Thread closingThread = new Thread(() -> {
+            try {
+                os.close();
+            } catch (IOException e) {
+                closeError.set(e);
+            }
+            interruptRestored.set(Thread.currentThread().isInterrupted());
+        });
+        closingThread.start();
+        closingThread.interrupt();
+        // Still waiting for the writer
+        closingThread.join(500);
+        assertTrue(closingThread.isAlive());
+        assertFalse(out.closed.get());
+        out.release.countDown();
+        closingThread.join();
+        assertTrue(closeError.get() instanceof InterruptedIOException);
+        assertTrue(interruptRestored.get());
+        assertTrue(out.closed.get());
+        assertFalse(out.closedWhileWriting.get());
+    }
+
+    private static class BlockingOutputStream extends OutputStream {
+        final CountDownLatch writing = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicBoolean isWriting = new AtomicBoolean();
+        final AtomicBoolean closed = new AtomicBoolean();
+        final AtomicBoolean closedWhileWriting = new AtomicBoolean();
+
+        @Override
+        public void write(int b) {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(@NonNull byte[] b, int off, int len) {
+            isWriting.set(true);
+            writing.countDown();
+            // Does not respond to interrupts, like most of the blocking I/O
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    release.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            isWriting.set(false);
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void close() {
+            closedWhileWriting.set(isWriting.get());
+            closed.set(true);
+        }
+    }
+}
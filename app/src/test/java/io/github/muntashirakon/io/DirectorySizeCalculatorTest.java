@@ -0,0 +1,78 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package io.github.muntashirakon.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+@RunWith(RobolectricTestRunner.class)
+public class DirectorySizeCalculatorTest {
+    private File mDir;
+
+    @Before
+    public void setUp() throws IOException {
+        mDir = Files.createTempDirectory("dir_size").toFile();
+        File subDir = new File(mDir, "a/b");
+        assertTrue(subDir.mkdirs());
+        writeFile(new File(mDir, "1"), 100);
+        writeFile(new File(mDir, "a/2"), 200);
+        writeFile(new File(subDir, "3"), 300);
+    }
+
+    @After
+    public void tearDown() {
+        deleteRecursively(mDir);
+    }
+
+    @Test
+    public void testCalculate() {
+        assertEquals(600, DirectorySizeCalculator.calculate(mDir.getAbsolutePath()));
+        assertEquals(300, DirectorySizeCalculator.calculate(new File(mDir, "a/b/3").getAbsolutePath()));
+        assertEquals(0, DirectorySizeCalculator.calculate(new File(mDir, "none").getAbsolutePath()));
+    }
+
+    @Test
+    public void testModifiedDirectoryIsRecalculated() throws IOException {
+        assertEquals(600, DirectorySizeCalculator.calculate(mDir.getAbsolutePath()));
+        File subDir = new File(mDir, "a/b");
+        writeFile(new File(subDir, "4"), 400);
+        // The modification time may not change within the same second
+        assertTrue(subDir.setLastModified(subDir.lastModified() + 10_000));
+        assertEquals(1000, DirectorySizeCalculator.calculate(mDir.getAbsolutePath()));
+    }
+
+    @Test
+    public void testCancelled() {
+        assertEquals(0, DirectorySizeCalculator.calculate(mDir.getAbsolutePath(), new AtomicBoolean(true)));
+        // A cancelled calculation does not leave anything partial behind
+        assertEquals(600, DirectorySizeCalculator.calculate(mDir.getAbsolutePath()));
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+
+    private static void writeFile(File file, int size) throws IOException {
+        try (FileOutputStream fos = new FileOutputStream(file)) {
+            fos.write(new byte[size]);
+        }
+    }
+}
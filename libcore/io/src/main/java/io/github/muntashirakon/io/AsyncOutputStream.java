@@ -0,0 +1,152 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package io.github.muntashirakon.io;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Writes to the underlying stream from a separate thread. Written data are handed over through a bounded queue, which
+ * allows the writer to keep producing data while the underlying stream is busy (e.g. encrypting or writing to disk).
+ * Errors in the underlying stream are reported on the next call to any of the methods of this stream.
+ */
+public class AsyncOutputStream extends OutputStream {
+    public static final int DEFAULT_QUEUE_CAPACITY = 16;
+
+    // Markers are compared by identity
+    private static final byte[] FLUSH = new byte[0];
+    private static final byte[] EOF = new byte[0];
+
+    @NonNull
+    private final OutputStream mOut;
+    @NonNull
+    private final BlockingQueue<byte[]> mQueue;
+    @NonNull
+    private final Thread mWriterThread;
+    @Nullable
+    private volatile Throwable mError;
+    private boolean mClosed;
+
+    public AsyncOutputStream(@NonNull OutputStream out) {
+        this(out, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    public AsyncOutputStream(@NonNull OutputStream out, int queueCapacity) {
+        mOut = out;
+        mQueue = new ArrayBlockingQueue<>(queueCapacity);
+        mWriterThread = new Thread(this::drain, "AsyncOutputStream");
+        mWriterThread.start();
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        enqueue(new byte[]{(byte) b});
+    }
+
+    @Override
+    public void write(@NonNull byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return;
+        }
+        enqueue(Arrays.copyOfRange(b, off, off + len));
+    }
+
+    @Override
+    public void flush() throws IOException {
+        enqueue(FLUSH);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (mClosed) {
+            return;
+        }
+        mClosed = true;
+        boolean interrupted = false;
+        try {
+            put(EOF);
+        } catch (InterruptedException e) {
+            // Abandon the queued data
+            interrupted = true;
+            mWriterThread.interrupt();
+        }
+        // The underlying stream cannot be closed while the writer thread may still be writing to it
+        while (true) {
+            try {
+                mWriterThread.join();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+                mWriterThread.interrupt();
+            }
+        }
+        try {
+            mOut.close();
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (interrupted) {
+            throw new InterruptedIOException("Interrupted while writing");
+        }
+        checkError();
+    }
+
+    private void enqueue(@NonNull byte[] bytes) throws IOException {
+        if (mClosed) {
+            throw new IOException("Stream closed");
+        }
+        checkError();
+        try {
+            put(bytes);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw (IOException) new InterruptedIOException("Interrupted while writing").initCause(e);
+        }
+    }
+
+    private void put(@NonNull byte[] bytes) throws InterruptedException {
+        mQueue.put(bytes);
+    }
+
+    private void checkError() throws IOException {
+        Throwable error = mError;
+        if (error == null) {
+            return;
+        }
+        if (error instanceof IOException) {
+            throw (IOException) error;
+        }
+        throw new IOException(error);
+    }
+
+    private void drain() {
+        try {
+            byte[] bytes;
+            while ((bytes = mQueue.take()) != EOF) {
+                if (mError != null) {
+                    // Keep draining so that the writer is never blocked
+                    continue;
+                }
+                try {
+                    if (bytes == FLUSH) {
+                        mOut.flush();
+                    } else {
+                        mOut.write(bytes);
+                    }
+                } catch (Throwable th) {
+                    mError = th;
+                }
+            }
+        } catch (InterruptedException ignore) {
+        }
+    }
+}
@@ -0,0 +1,190 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package io.github.muntashirakon.io;
+
+import android.os.Build;
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.OsConstants;
+import android.system.StructStat;
+import android.util.LruCache;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Calculate the total size of the regular files in a directory tree. Directories are walked in parallel by a small
+ * pool of threads, and the result of each directory is cached until its modification time changes. Unchanged
+ * directories therefore only cost a single {@code lstat(2)}.
+ * <p>
+ * Like {@link File#length()}, a symbolic link to a regular file is counted as the size of its target while other links
+ * are ignored. Note that a file modified in place does not alter the modification time of its directory, and its old
+ * size may be reported until anything else in the directory changes.
+ */
+final class DirectorySizeCalculator {
+    private static final int MAX_PARALLELISM = 4;
+    private static final int MAX_CACHED_DIRECTORIES = 20_000;
+
+    private static final ForkJoinPool sPool = new ForkJoinPool(Math.min(MAX_PARALLELISM,
+            Runtime.getRuntime().availableProcessors()));
+    private static final LruCache<String, DirectoryEntry> sDirectoryCache = new LruCache<>(MAX_CACHED_DIRECTORIES);
+
+    private static class DirectoryEntry {
+        public final long lastModified;
+        // Total size of the files directly under this directory
+        public final long filesSize;
+        @NonNull
+        public final String[] subdirectories;
+
+        DirectoryEntry(long lastModified, long filesSize, @NonNull String[] subdirectories) {
+            this.lastModified = lastModified;
+            this.filesSize = filesSize;
+            this.subdirectories = subdirectories;
+        }
+    }
+
+    /**
+     * Calculate the size of the given file or directory. Interrupting the calling thread stops the calculation, and
+     * {@code 0} is returned in that case.
+     */
+    public static long calculate(@NonNull String path) {
+        return calculate(path, new AtomicBoolean(false));
+    }
+
+    /**
+     * Same as {@link #calculate(String)}, but the calculation can also be stopped by setting {@code cancelled} from
+     * another thread. {@code 0} is returned if cancelled.
+     */
+    public static long calculate(@NonNull String path, @NonNull AtomicBoolean cancelled) {
+        StructStat stat = lstat(path);
+        if (stat == null) {
+            return 0;
+        }
+        if (!OsConstants.S_ISDIR(stat.st_mode)) {
+            return getFileSize(path, stat);
+        }
+        ForkJoinTask<Long> task = sPool.submit(new SizeTask(path, getLastModified(stat), cancelled));
+        try {
+            long size = task.get();
+            // Partial if cancelled
+            return cancelled.get() ? 0 : size;
+        } catch (InterruptedException e) {
+            cancelled.set(true);
+            Thread.currentThread().interrupt();
+            return 0;
+        } catch (ExecutionException e) {
+            return 0;
+        }
+    }
+
+    private static class SizeTask extends RecursiveTask<Long> {
+        @NonNull
+        private final String mPath;
+        private final long mLastModified;
+        @NonNull
+        private final AtomicBoolean mCancelled;
+
+        SizeTask(@NonNull String path, long lastModified, @NonNull AtomicBoolean cancelled) {
+            mPath = path;
+            mLastModified = lastModified;
+            mCancelled = cancelled;
+        }
+
+        @Override
+        protected Long compute() {
+            if (mCancelled.get()) {
+                return 0L;
+            }
+            DirectoryEntry entry = sDirectoryCache.get(mPath);
+            if (entry == null || entry.lastModified != mLastModified) {
+                entry = scanDirectory();
+                if (entry == null) {
+                    return 0L;
+                }
+                sDirectoryCache.put(mPath, entry);
+            }
+            List<SizeTask> subtasks = new ArrayList<>(entry.subdirectories.length);
+            for (String name : entry.subdirectories) {
+                String path = new File(mPath, name).getPath();
+                StructStat stat = lstat(path);
+                if (stat != null && OsConstants.S_ISDIR(stat.st_mode)) {
+                    subtasks.add(new SizeTask(path, getLastModified(stat), mCancelled));
+                }
+            }
+            long size = entry.filesSize;
+            for (SizeTask subtask : invokeAll(subtasks)) {
+                size += subtask.join();
+            }
+            return size;
+        }
+
+        @Nullable
+        private DirectoryEntry scanDirectory() {
+            String[] names = new File(mPath).list();
+            if (names == null) {
+                return null;
+            }
+            long filesSize = 0;
+            List<String> subdirectories = new ArrayList<>();
+            for (String name : names) {
+                if (mCancelled.get()) {
+                    // Incomplete
+                    return null;
+                }
+                String path = new File(mPath, name).getPath();
+                StructStat stat = lstat(path);
+                if (stat == null) {
+                    continue;
+                }
+                if (OsConstants.S_ISDIR(stat.st_mode)) {
+                    subdirectories.add(name);
+                } else {
+                    filesSize += getFileSize(path, stat);
+                }
+            }
+            return new DirectoryEntry(mLastModified, filesSize, subdirectories.toArray(new String[0]));
+        }
+    }
+
+    private static long getFileSize(@NonNull String path, @NonNull StructStat lstat) {
+        if (OsConstants.S_ISREG(lstat.st_mode)) {
+            return lstat.st_size;
+        }
+        if (OsConstants.S_ISLNK(lstat.st_mode)) {
+            try {
+                StructStat stat = Os.stat(path);
+                return OsConstants.S_ISREG(stat.st_mode) ? stat.st_size : 0;
+            } catch (ErrnoException e) {
+                // Broken link
+                return 0;
+            }
+        }
+        // Other types of files aren't supported
+        return 0;
+    }
+
+    private static long getLastModified(@NonNull StructStat stat) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O_MR1) {
+            return stat.st_mtim.tv_sec * 1_000_000_000 + stat.st_mtim.tv_nsec;
+        }
+        return stat.st_mtime * 1_000_000_000;
+    }
+
+    @Nullable
+    private static StructStat lstat(@NonNull String path) {
+        try {
+            return Os.lstat(path);
+        } catch (ErrnoException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package io.github.muntashirakon.io;
+
+import android.os.Build;
+import android.os.Parcel;
+import android.os.Parcelable;
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.OsConstants;
+import android.system.StructStat;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Attributes of a file as returned by a single {@code lstat(2)}. Like {@link java.io.File}, the size, the modification
+ * time and the file type are taken from the target of a symbolic link.
+ */
+public final class FileStat implements Parcelable {
+    @NonNull
+    public static FileStat get(@NonNull String path, @NonNull String name) throws ErrnoException {
+        StructStat lstat = Os.lstat(path);
+        StructStat stat = lstat;
+        if (OsConstants.S_ISLNK(lstat.st_mode)) {
+            try {
+                stat = Os.stat(path);
+            } catch (ErrnoException e) {
+                // Broken link
+                stat = null;
+            }
+        }
+        return new FileStat(name, lstat, stat);
+    }
+
+    @NonNull
+    public final String name;
+    public final int mode;
+    /**
+     * Mode of the file after following symbolic links, {@code 0} if the target does not exist
+     */
+    public final int targetMode;
+    public final int uid;
+    public final int gid;
+    public final long size;
+    public final long lastModified;
+    public final long lastAccess;
+    public final long creationTime;
+
+    private FileStat(@NonNull String name, @NonNull StructStat lstat, StructStat stat) {
+        this.name = name;
+        mode = lstat.st_mode;
+        uid = lstat.st_uid;
+        gid = lstat.st_gid;
+        lastAccess = lstat.st_atime * 1000;
+        creationTime = lstat.st_ctime * 1000;
+        if (stat != null) {
+            targetMode = stat.st_mode;
+            size = stat.st_size;
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O_MR1) {
+                lastModified = stat.st_mtim.tv_sec * 1000 + stat.st_mtim.tv_nsec / 1_000_000;
+            } else {
+                lastModified = stat.st_mtime * 1000;
+            }
+        } else {
+            // Same as java.io.File
+            targetMode = 0;
+            size = 0;
+            lastModified = 0;
+        }
+    }
+
+    protected FileStat(@NonNull Parcel in) {
+        name = in.readString();
+        mode = in.readInt();
+        targetMode = in.readInt();
+        uid = in.readInt();
+        gid = in.readInt();
+        size = in.readLong();
+        lastModified = in.readLong();
+        lastAccess = in.readLong();
+        creationTime = in.readLong();
+    }
+
+    public static final Creator<FileStat> CREATOR = new Creator<FileStat>() {
+        @Override
+        public FileStat createFromParcel(Parcel in) {
+            return new FileStat(in);
+        }
+
+        @Override
+        public FileStat[] newArray(int size) {
+            return new FileStat[size];
+        }
+    };
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    @Override
+    public void writeToParcel(@NonNull Parcel dest, int flags) {
+        dest.writeString(name);
+        dest.writeInt(mode);
+        dest.writeInt(targetMode);
+        dest.writeInt(uid);
+        dest.writeInt(gid);
+        dest.writeLong(size);
+        dest.writeLong(lastModified);
+        dest.writeLong(lastAccess);
+        dest.writeLong(creationTime);
+    }
+}
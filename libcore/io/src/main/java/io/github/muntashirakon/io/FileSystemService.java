@@ -21,12 +21,18 @@ import android.system.OsConstants;
 import android.system.StructStat;
 import android.util.LruCache;
 
+import androidx.annotation.GuardedBy;
+
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import aosp.android.content.pm.ParceledListSlice;
 import aosp.android.content.pm.StringParceledListSlice;
 import io.github.muntashirakon.compat.system.OsCompat;
 import io.github.muntashirakon.compat.system.StructTimespec;
@@ -37,6 +43,10 @@ class FileSystemService extends IFileSystemService.Stub {
 
     static final int PIPE_CAPACITY = 16 * 4096;
 
+    // Cancellation flags of the running size calculations
+    @GuardedBy("mSizeRequests")
+    private final LruCache<Long, AtomicBoolean> mSizeRequests = new LruCache<>(100);
+
     private final LruCache<String, File> mCache = new LruCache<String, File>(100) {
         @Override
         protected File create(String key) {
@@ -116,6 +126,55 @@ class FileSystemService extends IFileSystemService.Stub {
         return list != null ? new StringParceledListSlice(Arrays.asList(list)) : null;
     }
 
+    @Override
+    public ParceledListSlice<FileStat> listWithAttributes(String path) {
+        String[] list = mCache.get(path).list();
+        if (list == null) {
+            return null;
+        }
+        List<FileStat> stats = new ArrayList<>(list.length);
+        for (String name : list) {
+            try {
+                stats.add(FileStat.get(path + File.separatorChar + name, name));
+            } catch (ErrnoException ignore) {
+                // Deleted after listing
+            }
+        }
+        return new ParceledListSlice<>(stats);
+    }
+
+    @Override
+    public long size(String path, long requestId) {
+        AtomicBoolean cancelled;
+        synchronized (mSizeRequests) {
+            cancelled = mSizeRequests.get(requestId);
+            if (cancelled == null) {
+                cancelled = new AtomicBoolean(false);
+                mSizeRequests.put(requestId, cancelled);
+            }
+        }
+        try {
+            return DirectorySizeCalculator.calculate(path, cancelled);
+        } finally {
+            synchronized (mSizeRequests) {
+                mSizeRequests.remove(requestId);
+            }
+        }
+    }
+
+    @Override
+    public void cancelSize(long requestId) {
+        synchronized (mSizeRequests) {
+            AtomicBoolean cancelled = mSizeRequests.get(requestId);
+            if (cancelled != null) {
+                cancelled.set(true);
+            } else {
+                // May arrive before the request itself
+                mSizeRequests.put(requestId, new AtomicBoolean(true));
+            }
+        }
+    }
+
     @Override
     public boolean mkdir(String path) {
         return mCache.get(path).mkdir();
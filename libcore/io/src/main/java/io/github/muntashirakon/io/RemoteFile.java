@@ -14,14 +14,32 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import aosp.android.content.pm.ParceledListSlice;
 import aosp.android.content.pm.StringParceledListSlice;
 
 // Copyright 2022 John "topjohnwu" Wu
 // Copyright 2022 Muntashir Al-Islam
 class RemoteFile extends FileImpl<RemoteFile> {
+    private static final ExecutorService sSizeExecutor = Executors.newCachedThreadPool();
+    // Unique among the clients of the same remote process
+    private static final AtomicLong sSizeRequestIds = new AtomicLong(new Random().nextLong());
 
     private final IFileSystemService fs;
+    /**
+     * Attributes fetched while listing the parent directory. They are discarded as soon as the file is modified using
+     * this instance.
+     */
+    @Nullable
+    private volatile FileStat mStat;
 
     RemoteFile(IFileSystemService f, String path) {
         super(path);
@@ -33,6 +51,12 @@ class RemoteFile extends FileImpl<RemoteFile> {
         fs = f;
     }
 
+    private RemoteFile(IFileSystemService f, String parent, @NonNull FileStat stat) {
+        super(parent, stat.name);
+        fs = f;
+        mStat = stat;
+    }
+
     @Override
     protected RemoteFile create(String path) {
         return new RemoteFile(fs, path);
@@ -89,6 +113,10 @@ class RemoteFile extends FileImpl<RemoteFile> {
 
     @Override
     public boolean isDirectory() {
+        FileStat stat = mStat;
+        if (stat != null) {
+            return OsConstants.S_ISDIR(stat.targetMode);
+        }
         try {
             return fs.isDirectory(getPath());
         } catch (RemoteException e) {
@@ -98,6 +126,10 @@ class RemoteFile extends FileImpl<RemoteFile> {
 
     @Override
     public boolean isFile() {
+        FileStat stat = mStat;
+        if (stat != null) {
+            return OsConstants.S_ISREG(stat.targetMode);
+        }
         try {
             return fs.isFile(getPath());
         } catch (RemoteException e) {
@@ -107,6 +139,10 @@ class RemoteFile extends FileImpl<RemoteFile> {
 
     @Override
     public int getMode() throws ErrnoException {
+        FileStat stat = mStat;
+        if (stat != null) {
+            return stat.mode;
+        }
         try {
             return fs.getMode(getPath()).tryAndGetErrnoException();
         } catch (RemoteException e) {
@@ -116,6 +152,7 @@ class RemoteFile extends FileImpl<RemoteFile> {
 
     @Override
     public boolean setMode(int mode) throws ErrnoException {
+        mStat = null;
         try {
             fs.setMode(getPath(), mode).checkErrnoException();
             return true;
@@ -126,6 +163,10 @@ class RemoteFile extends FileImpl<RemoteFile> {
 
     @Override
     public UidGidPair getUidGid() throws ErrnoException {
+        FileStat stat = mStat;
+        if (stat != null) {
+            return new UidGidPair(stat.uid, stat.gid);
+        }
         try {
             return fs.getUidGid(getPath()).tryAndGetErrnoException();
         } catch (RemoteException e) {
@@ -135,6 +176,7 @@ class RemoteFile extends FileImpl<RemoteFile> {
 
     @Override
     public boolean setUidGid(int uid, int gid) throws ErrnoException {
+        mStat = null;
         try {
             fs.setUidGid(getPath(), uid, gid).checkErrnoException();
             return true;
@@ -227,6 +269,10 @@ class RemoteFile extends FileImpl<RemoteFile> {
 
     @Override
     public long lastModified() {
+        FileStat stat = mStat;
+        if (stat != null) {
+            return stat.lastModified;
+        }
         try {
             return fs.lastModified(getPath());
         } catch (RemoteException e) {
@@ -236,6 +282,10 @@ class RemoteFile extends FileImpl<RemoteFile> {
 
     @Override
     public long creationTime() {
+        FileStat stat = mStat;
+        if (stat != null) {
+            return stat.creationTime;
+        }
         try {
             return fs.creationTime(getPath()).tryAndGetErrnoException();
         } catch (RemoteException | ErrnoException e) {
@@ -245,6 +295,10 @@ class RemoteFile extends FileImpl<RemoteFile> {
 
     @Override
     public long lastAccess() {
+        FileStat stat = mStat;
+        if (stat != null) {
+            return stat.lastAccess;
+        }
         try {
             return fs.lastAccess(getPath()).tryAndGetErrnoException();
         } catch (RemoteException | ErrnoException e) {
@@ -254,6 +308,7 @@ class RemoteFile extends FileImpl<RemoteFile> {
 
     @Override
     public boolean setLastAccess(long millis) {
+        mStat = null;
         try {
             fs.setLastAccess(getPath(), millis).checkErrnoException();
             return true;
@@ -264,6 +319,10 @@ class RemoteFile extends FileImpl<RemoteFile> {
 
     @Override
     public long length() {
+        FileStat stat = mStat;
+        if (stat != null) {
+            return stat.size;
+        }
         try {
             return fs.length(getPath());
         } catch (RemoteException e) {
@@ -273,6 +332,7 @@ class RemoteFile extends FileImpl<RemoteFile> {
 
     @Override
     public boolean createNewFile() throws IOException {
+        mStat = null;
         try {
             return fs.createNewFile(getPath()).tryAndGet();
         } catch (RemoteException e) {
@@ -282,6 +342,7 @@ class RemoteFile extends FileImpl<RemoteFile> {
 
     @Override
     public boolean createNewLink(String existing) throws IOException {
+        mStat = null;
         try {
             return fs.createLink(getPath(), existing, false).tryAndGet();
         } catch (RemoteException e) {
@@ -291,6 +352,7 @@ class RemoteFile extends FileImpl<RemoteFile> {
 
     @Override
     public boolean createNewSymlink(String target) throws IOException {
+        mStat = null;
         try {
             return fs.createLink(getPath(), target, true).tryAndGet();
         } catch (RemoteException e) {
@@ -300,6 +362,7 @@ class RemoteFile extends FileImpl<RemoteFile> {
 
     @Override
     public boolean delete() {
+        mStat = null;
         try {
             return fs.delete(getPath());
         } catch (RemoteException e) {
@@ -322,8 +385,55 @@ class RemoteFile extends FileImpl<RemoteFile> {
         }
     }
 
+    @Nullable
+    @Override
+    public RemoteFile[] listFiles() {
+        List<FileStat> stats;
+        try {
+            //noinspection unchecked
+            ParceledListSlice<FileStat> list = fs.listWithAttributes(getPath());
+            if (list == null) {
+                return null;
+            }
+            stats = list.getList();
+        } catch (RemoteException e) {
+            return null;
+        }
+        int n = stats.size();
+        RemoteFile[] files = createArray(n);
+        for (int i = 0; i < n; ++i) {
+            files[i] = new RemoteFile(fs, getPath(), stats.get(i));
+        }
+        return files;
+    }
+
+    /**
+     * Calculate the total size of this file or directory in the remote process. The call is made from a separate
+     * thread so that interrupting the calling thread cancels the calculation in the remote process, in which case
+     * {@code 0} is returned.
+     *
+     * @see DirectorySizeCalculator#calculate(String, AtomicBoolean)
+     */
+    long calculateSize() {
+        long requestId = sSizeRequestIds.incrementAndGet();
+        Future<Long> future = sSizeExecutor.submit(() -> fs.size(getPath(), requestId));
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            try {
+                fs.cancelSize(requestId);
+            } catch (RemoteException ignore) {
+            }
+            Thread.currentThread().interrupt();
+            return 0L;
+        } catch (ExecutionException e) {
+            return 0L;
+        }
+    }
+
     @Override
     public boolean mkdir() {
+        mStat = null;
         try {
             return fs.mkdir(getPath());
         } catch (RemoteException e) {
@@ -333,6 +443,7 @@ class RemoteFile extends FileImpl<RemoteFile> {
 
     @Override
     public boolean mkdirs() {
+        mStat = null;
         try {
             return fs.mkdirs(getPath());
         } catch (RemoteException e) {
@@ -342,6 +453,7 @@ class RemoteFile extends FileImpl<RemoteFile> {
 
     @Override
     public boolean renameTo(@NonNull File dest) {
+        mStat = null;
         try {
             return fs.renameTo(getPath(), dest.getAbsolutePath());
         } catch (RemoteException e) {
@@ -351,6 +463,7 @@ class RemoteFile extends FileImpl<RemoteFile> {
 
     @Override
     public boolean setLastModified(long time) {
+        mStat = null;
         try {
             return fs.setLastModified(getPath(), time);
         } catch (RemoteException e) {
@@ -360,6 +473,7 @@ class RemoteFile extends FileImpl<RemoteFile> {
 
     @Override
     public boolean setReadOnly() {
+        mStat = null;
         try {
             return fs.setReadOnly(getPath());
         } catch (RemoteException e) {
@@ -369,6 +483,7 @@ class RemoteFile extends FileImpl<RemoteFile> {
 
     @Override
     public boolean setWritable(boolean writable, boolean ownerOnly) {
+        mStat = null;
         try {
             return fs.setWritable(getPath(), writable, ownerOnly);
         } catch (RemoteException e) {
@@ -378,6 +493,7 @@ class RemoteFile extends FileImpl<RemoteFile> {
 
     @Override
     public boolean setReadable(boolean readable, boolean ownerOnly) {
+        mStat = null;
         try {
             return fs.setReadable(getPath(), readable, ownerOnly);
         } catch (RemoteException e) {
@@ -387,6 +503,7 @@ class RemoteFile extends FileImpl<RemoteFile> {
 
     @Override
     public boolean setExecutable(boolean executable, boolean ownerOnly) {
+        mStat = null;
         try {
             return fs.setExecutable(getPath(), executable, ownerOnly);
         } catch (RemoteException e) {
@@ -439,6 +556,7 @@ class RemoteFile extends FileImpl<RemoteFile> {
     @NonNull
     @Override
     public FileOutputStream newOutputStream(boolean append) throws IOException {
+        mStat = null;
         ParcelFileDescriptor[] pipe = ParcelFileDescriptor.createPipe();
         try {
             fs.openWriteStream(getPath(), pipe[0], append).checkException();
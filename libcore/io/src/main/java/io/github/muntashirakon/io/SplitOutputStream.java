@@ -82,14 +82,32 @@ public class SplitOutputStream extends OutputStream {
             // Need to create a new stream
             Path newFile = getNextFile();
             mFiles.add(newFile);
-            mOutputStreams.add(newFile.openOutputStream());
+            mOutputStreams.add(openOutputStream(newFile));
             ++mCurrentIndex;
             mBytesWritten = 0;
         }
     }
 
+    /**
+     * Open the stream for a newly created part. Subclasses may override this in order to transform the data written to
+     * each part.
+     */
+    @WorkerThread
+    @NonNull
+    protected OutputStream openOutputStream(@NonNull Path file) throws IOException {
+        return file.openOutputStream();
+    }
+
+    /**
+     * Name of the part at the given index.
+     */
+    @NonNull
+    protected String getFileName(int index) {
+        return mBaseName + "." + index;
+    }
+
     @NonNull
     private Path getNextFile() throws IOException {
-        return mBasePath.createNewFile(mBaseName + "." + (mCurrentIndex + 1), null);
+        return mBasePath.createNewFile(getFileName(mCurrentIndex + 1), null);
     }
 }